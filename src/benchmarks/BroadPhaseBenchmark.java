@@ -0,0 +1,133 @@
+package benchmarks;
+
+import ethics.BroadPhase;
+import ethics.BruteForceBroadPhase;
+import ethics.DynamicAabbTree;
+import ethics.Entity;
+import ethics.RaycastHit;
+import ethics.Scene;
+import ethics.SpatialHash;
+import ethics.drawables.NullDrawing;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Compares the broadphases on the kinds of levels they are picked for. Each
+ * workload fills a scene with entities, then every tick moves a share of
+ * them and runs the collision, region and ray queries a game would. Every
+ * broadphase gets the same entities and moves, warms up first and is then
+ * timed. Run it with the number of entities as the only argument.
+ *
+ * @author Jonathan Cooper
+ */
+public class BroadPhaseBenchmark {
+
+	private static final int WORLD_SIZE = 8192;
+	private static final int WARMUP_TICKS = 200;
+	private static final int MEASURED_TICKS = 500;
+
+	/**
+	 * How entities are spread over the world.
+	 */
+	private enum Workload {
+		/**
+		 * Entities of 16 to 48 units spread evenly.
+		 */
+		UNIFORM,
+		/**
+		 * Entities of 16 to 48 units packed into a few small areas.
+		 */
+		CLUSTERED,
+		/**
+		 * Mostly tiny projectiles, with some platforms of up to 2048 units.
+		 */
+		MIXED
+	}
+
+	public static void main(String[] args) {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+		String[] names = {"SpatialHash", "DynamicAabbTree", "BruteForce"};
+		List<Supplier<BroadPhase>> broadPhases = Arrays.asList(
+				() -> new SpatialHash(128), DynamicAabbTree::new, BruteForceBroadPhase::new);
+		System.out.println("entities=" + count);
+		for (Workload workload : Workload.values()) {
+			for (int i = 0; i < names.length; ++i) {
+				if (broadPhases.get(i).get() instanceof BruteForceBroadPhase && count > 20000) {
+					continue;
+				}
+				Scene scene = createScene(workload, count, broadPhases.get(i).get());
+				run(scene, WARMUP_TICKS, new Random(7));
+				scene.resetCollisionCounters();
+				long start = System.nanoTime();
+				long checksum = run(scene, MEASURED_TICKS, new Random(11));
+				long elapsed = System.nanoTime() - start;
+				System.out.printf("%-10s %-16s %8.3f ms/tick %10d tests/tick checksum=%d%n", workload, names[i],
+						elapsed / 1e6 / MEASURED_TICKS, scene.getCollisionTests() / MEASURED_TICKS, checksum);
+			}
+		}
+	}
+
+	private static Scene createScene(Workload workload, int count, BroadPhase broadPhase) {
+		Random random = new Random(1);
+		Scene scene = new Scene();
+		scene.setBroadPhase(broadPhase);
+		double[] clusters = new double[16];
+		for (int i = 0; i < clusters.length; ++i) {
+			clusters[i] = random.nextDouble() * (WORLD_SIZE - 512);
+		}
+		for (int i = 0; i < count; ++i) {
+			int width, height;
+			double x, y;
+			if (workload == Workload.MIXED && i % 50 == 0) {
+				width = 256 + random.nextInt(1792);
+				height = 32 + random.nextInt(224);
+			} else if (workload == Workload.MIXED) {
+				width = 2 + random.nextInt(6);
+				height = width;
+			} else {
+				width = 16 + random.nextInt(32);
+				height = 16 + random.nextInt(32);
+			}
+			if (workload == Workload.CLUSTERED) {
+				int cluster = random.nextInt(clusters.length / 2) * 2;
+				x = clusters[cluster] + random.nextGaussian() * 128;
+				y = clusters[cluster + 1] + random.nextGaussian() * 128;
+			} else {
+				x = random.nextDouble() * (WORLD_SIZE - width);
+				y = random.nextDouble() * (WORLD_SIZE - height);
+			}
+			scene.addEntity(new Entity(new NullDrawing(), x, y, width, height));
+		}
+		return scene;
+	}
+
+	/**
+	 * Runs ticks of moving a tenth of the entities and querying around them.
+	 *
+	 * @return A count of what the queries found, so they can't be skipped.
+	 */
+	private static long run(Scene scene, int ticks, Random random) {
+		RaycastHit hit = new RaycastHit();
+		long[] found = {0};
+		int count = scene.getEntities().size();
+		for (int tick = 0; tick < ticks; ++tick) {
+			for (int i = 0; i < count / 10; ++i) {
+				Entity e = scene.getEntities().get(random.nextInt(count));
+				e.setPosition(e.getX() + random.nextInt(9) - 4, e.getY() + random.nextInt(9) - 4);
+				if (e.collidesWithAny()) {
+					++found[0];
+				}
+			}
+			for (int i = 0; i < 20; ++i) {
+				double x = random.nextDouble() * WORLD_SIZE, y = random.nextDouble() * WORLD_SIZE;
+				scene.queryRegion(x, y, 512, 288, Entity.ALL_CATEGORIES, e -> ++found[0]);
+				if (scene.raycast(x, y, random.nextGaussian(), random.nextGaussian(), 1024, Entity.ALL_CATEGORIES, hit)) {
+					++found[0];
+				}
+			}
+		}
+		return found[0];
+	}
+}
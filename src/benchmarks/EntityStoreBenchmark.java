@@ -0,0 +1,141 @@
+package benchmarks;
+
+import ethics.Entity;
+import ethics.EntityStore;
+import ethics.Scene;
+import ethics.drawables.NullDrawing;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+/**
+ * Times the passes that walk every entity, once over Entity objects and once
+ * over the arrays of an EntityStore. The scan workload finds the entities in
+ * wide strips of the world, the way a pass over most of a level would. The
+ * update workload runs whole scene updates where one entity in a hundred
+ * has collision events, so the scene has to pick those out every update.
+ * Entities are added in a shuffled order, so neither layout gets the benefit
+ * of objects that happen to sit next to each other in memory, and rounds of
+ * the two layouts take turns so both run on an equally warm heap. Run it
+ * with the number of entities as the only argument.
+ *
+ * @author Jonathan Cooper
+ */
+public class EntityStoreBenchmark {
+
+	private static final int WORLD_SIZE = 100000;
+	private static final int WARMUP_ROUNDS = 20;
+	private static final int MEASURED_ROUNDS = 50;
+	private static final int STRIPS = 20;
+
+	public static void main(String[] args) {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		System.out.println("entities=" + count);
+		ArrayList<Entity> objects = createEntities(count);
+		EntityStore store = new EntityStore(count);
+		for (Entity e : createEntities(count)) {
+			store.add(e);
+		}
+		for (int i = 0; i < WARMUP_ROUNDS; ++i) {
+			scanObjects(objects);
+			scanStore(store);
+		}
+		long objectsTime = 0, storeTime = 0, objectsFound = 0, storeFound = 0;
+		for (int i = 0; i < MEASURED_ROUNDS; ++i) {
+			long start = System.nanoTime();
+			objectsFound += scanObjects(objects);
+			long middle = System.nanoTime();
+			storeFound += scanStore(store);
+			objectsTime += middle - start;
+			storeTime += System.nanoTime() - middle;
+		}
+		report("scan", "objects", objectsTime, objectsFound);
+		report("scan", "store", storeTime, storeFound);
+		objects = null;
+		store.clear();
+
+		Scene plain = createScene(new Scene(), count);
+		Scene stored = createScene(new Scene(new EntityStore(count)), count);
+		for (int i = 0; i < WARMUP_ROUNDS; ++i) {
+			plain.update(1 / 60.0);
+			stored.update(1 / 60.0);
+		}
+		plain.resetCollisionCounters();
+		stored.resetCollisionCounters();
+		objectsTime = 0;
+		storeTime = 0;
+		for (int i = 0; i < MEASURED_ROUNDS; ++i) {
+			long start = System.nanoTime();
+			plain.update(1 / 60.0);
+			long middle = System.nanoTime();
+			stored.update(1 / 60.0);
+			objectsTime += middle - start;
+			storeTime += System.nanoTime() - middle;
+		}
+		report("update", "objects", objectsTime, plain.getCollisionTests());
+		report("update", "store", storeTime, stored.getCollisionTests());
+	}
+
+	private static ArrayList<Entity> createEntities(int count) {
+		Random random = new Random(1);
+		ArrayList<Entity> entities = new ArrayList<>();
+		for (int i = 0; i < count; ++i) {
+			entities.add(new Entity(new NullDrawing(), random.nextDouble() * WORLD_SIZE,
+					random.nextDouble() * WORLD_SIZE, 32, 32));
+		}
+		Collections.shuffle(entities, new Random(2));
+		return entities;
+	}
+
+	private static Scene createScene(Scene scene, int count) {
+		for (Entity e : createEntities(count)) {
+			scene.addEntity(e);
+		}
+		for (int i = 0; i < count; i += 100) {
+			scene.getEntities().get(i).setCollisionEvents(true);
+		}
+		return scene;
+	}
+
+	/**
+	 * Finds the collidable entities in each strip by reading every object.
+	 *
+	 * @return Number of entities found.
+	 */
+	private static long scanObjects(ArrayList<Entity> entities) {
+		long found = 0;
+		for (int strip = 0; strip < STRIPS; ++strip) {
+			double minX = strip * (WORLD_SIZE / STRIPS), maxX = minX + WORLD_SIZE / STRIPS;
+			for (int i = 0; i < entities.size(); ++i) {
+				Entity e = entities.get(i);
+				if (e.isCollidable() && e.getX() < maxX && e.getX() + e.getWidth() > minX
+						&& e.getY() < WORLD_SIZE / 2 && e.getY() + e.getHeight() > 0) {
+					++found;
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Finds the collidable entities in each strip through the arrays of the
+	 * store.
+	 *
+	 * @return Number of entities found.
+	 */
+	private static long scanStore(EntityStore store) {
+		ArrayList<Entity> out = new ArrayList<>();
+		long found = 0;
+		for (int strip = 0; strip < STRIPS; ++strip) {
+			double minX = strip * (WORLD_SIZE / STRIPS), maxX = minX + WORLD_SIZE / STRIPS;
+			out.clear();
+			found += store.query(minX, 0, maxX, WORLD_SIZE / 2, Entity.ALL_CATEGORIES, out);
+		}
+		return found;
+	}
+
+	private static void report(String workload, String layout, long elapsed, long checksum) {
+		System.out.printf("%-8s %-8s %8.3f ms/round checksum=%d%n", workload, layout,
+				elapsed / 1e6 / MEASURED_ROUNDS, checksum);
+	}
+}
@@ -0,0 +1,87 @@
+package benchmarks;
+
+import ethics.imagetools.ImageLoader;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+
+/**
+ * Compares how fast images are drawn as ImageIO reads them and after
+ * ImageLoader.toCompatibleImage has converted them. A tile of up to 64 by 64
+ * pixels is cut out of each of the demo's images and drawn over and over
+ * into a buffer the size of the demo's view. Both forms of a tile warm up,
+ * then take turns being timed so neither gets a warmer JIT. Run it from the
+ * project directory, optionally with the milliseconds each round lasts.
+ *
+ * @author Jonathan Cooper
+ */
+public class ImageBlitBenchmark {
+
+	private static final String[] IMAGES = {
+		"images/mage/mage_walking.png", "images/ground/tiles.png", "images/random/Flag.png"
+	};
+	private static final int TILE_SIZE = 64;
+	private static final int VIEW_WIDTH = 512;
+	private static final int VIEW_HEIGHT = 288;
+	private static final int WARMUP_ROUNDS = 2;
+	private static final int MEASURED_ROUNDS = 4;
+	private static final int BATCH = 200;
+
+	public static void main(String[] args) throws IOException {
+		long roundNanos = (args.length > 0 ? Long.parseLong(args[0]) : 500) * 1000000L;
+		BufferedImage view = new BufferedImage(VIEW_WIDTH, VIEW_HEIGHT, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = view.createGraphics();
+		for (String path : IMAGES) {
+			BufferedImage raw = cutTile(ImageIO.read(new File(path)));
+			BufferedImage compatible = ImageLoader.toCompatibleImage(raw);
+			for (int i = 0; i < WARMUP_ROUNDS; ++i) {
+				blit(g, raw, roundNanos);
+				blit(g, compatible, roundNanos);
+			}
+			double rawRate = 0, compatibleRate = 0;
+			for (int i = 0; i < MEASURED_ROUNDS; ++i) {
+				rawRate += blit(g, raw, roundNanos) / MEASURED_ROUNDS;
+				compatibleRate += blit(g, compatible, roundNanos) / MEASURED_ROUNDS;
+			}
+			System.out.printf("%-30s %dx%d raw type=%-2d %10.0f blits/s compatible type=%-2d %10.0f blits/s x%.2f%n",
+					path, raw.getWidth(), raw.getHeight(), raw.getType(), rawRate,
+					compatible.getType(), compatibleRate, compatibleRate / rawRate);
+		}
+		g.dispose();
+	}
+
+	/**
+	 * Copies the top left tile of an image into an image of the same type, so
+	 * the raw tile keeps the format ImageIO gave it.
+	 */
+	private static BufferedImage cutTile(BufferedImage image) {
+		int width = Math.min(TILE_SIZE, image.getWidth());
+		int height = Math.min(TILE_SIZE, image.getHeight());
+		BufferedImage tile = new BufferedImage(image.getColorModel(),
+				image.getRaster().createCompatibleWritableRaster(width, height),
+				image.isAlphaPremultiplied(), null);
+		tile.setData(image.getSubimage(0, 0, width, height).getData());
+		return tile;
+	}
+
+	/**
+	 * Draws an image all over the view for about a round.
+	 *
+	 * @return Images drawn per second.
+	 */
+	private static double blit(Graphics2D g, BufferedImage image, long roundNanos) {
+		int maxX = VIEW_WIDTH - image.getWidth(), maxY = VIEW_HEIGHT - image.getHeight();
+		long drawn = 0;
+		long start = System.nanoTime(), elapsed;
+		do {
+			for (int i = 0; i < BATCH; ++i) {
+				g.drawImage(image, (i * 37) % maxX, (i * 11) % maxY, null);
+			}
+			drawn += BATCH;
+			elapsed = System.nanoTime() - start;
+		} while (elapsed < roundNanos);
+		return drawn / (elapsed / 1e9);
+	}
+}
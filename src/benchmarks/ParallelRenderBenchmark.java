@@ -0,0 +1,79 @@
+package benchmarks;
+
+import ethics.Entity;
+import ethics.HeadlessRunner;
+import ethics.Scene;
+import ethics.TileMap;
+import ethics.drawables.StaticImage;
+import ethics.imagetools.Tilesheet;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Measures how banded parallel rendering scales with the number of render
+ * threads. A 1920 by 1080 scene of a TileMap and 5000 sprites is rendered
+ * headless through a HeadlessRunner once for every thread count from one up
+ * to the number of available processors. Each count warms up, then renders a
+ * fixed number of frames, and the last frame is compared with the one drawn
+ * by a single thread, which must be identical. Run it from the project
+ * directory, optionally with the number of measured frames, the camera zoom
+ * and the most threads to try instead of the number of processors.
+ *
+ * @author Jonathan Cooper
+ */
+public class ParallelRenderBenchmark {
+
+	private static final int WIDTH = 1920;
+	private static final int HEIGHT = 1080;
+	private static final int SPRITES = 5000;
+	private static final int TILE_SIZE = 32;
+	private static final int WARMUP_FRAMES = 20;
+
+	public static void main(String[] args) throws IOException {
+		int frames = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		double zoom = args.length > 1 ? Double.parseDouble(args[1]) : 1;
+		int processors = Runtime.getRuntime().availableProcessors();
+		int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : processors;
+		System.out.println("processors=" + processors + " frames=" + frames + " zoom=" + zoom);
+		int[] reference = null;
+		double serialFps = 0;
+		for (int threads = 1; threads <= maxThreads; ++threads) {
+			Scene scene = createScene(zoom);
+			scene.setRenderThreads(threads);
+			HeadlessRunner runner = new HeadlessRunner(null, scene, WIDTH, HEIGHT);
+			runner.run(WARMUP_FRAMES);
+			runner.resetStatistics();
+			runner.run(frames);
+			double fps = runner.getFramesPerSecond();
+			int[] pixels = ((BufferedImage) runner.getImage()).getRGB(0, 0, WIDTH, HEIGHT, null, 0, WIDTH);
+			if (reference == null) {
+				reference = pixels;
+				serialFps = fps;
+			}
+			System.out.printf("threads=%-3d %8.1f fps x%.2f identical=%b%n", threads, fps, fps / serialFps,
+					Arrays.equals(pixels, reference));
+		}
+	}
+
+	private static Scene createScene(double zoom) throws IOException {
+		Scene scene = new Scene();
+		Random random = new Random(1);
+		Tilesheet tiles = new Tilesheet("images/ground/tiles.png", TILE_SIZE, TILE_SIZE);
+		int columns = WIDTH / TILE_SIZE + 20, rows = HEIGHT / TILE_SIZE + 6;
+		TileMap map = new TileMap(tiles, 0, 0, columns, rows);
+		for (int row = 0; row < rows; ++row) {
+			for (int column = 0; column < columns; ++column) {
+				map.setTile(column, row, (row * columns + column) * 7 % 4);
+			}
+		}
+		scene.addEntity(map);
+		for (int i = 0; i < SPRITES; ++i) {
+			scene.addEntity(new Entity(new StaticImage(tiles.getTile(random.nextInt(4))),
+					random.nextInt(WIDTH - TILE_SIZE), random.nextInt(HEIGHT - TILE_SIZE), TILE_SIZE, TILE_SIZE));
+		}
+		scene.getCamera().setZoom(zoom);
+		return scene;
+	}
+}
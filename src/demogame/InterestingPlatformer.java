@@ -6,6 +6,7 @@ import ethics.events.GameKeyEvent;
 import ethics.events.GameListener;
 import ethics.events.GameMouseEvent;
 import java.awt.Color;
+import static java.awt.event.KeyEvent.VK_F3;
 import java.io.IOException;
 
 /**
@@ -43,6 +44,12 @@ public class InterestingPlatformer implements GameListener {
 
 	@Override
 	public void onKeyInput(GameKeyEvent event) {
+		if (event.getKeyCode() == VK_F3) {
+			if (event.isDown()) {
+				display.getFrameStats().toggleShowingOverlay();
+			}
+			return;
+		}
 		currentLevel.onKeyInput(event);
 	}
 
@@ -51,6 +58,7 @@ public class InterestingPlatformer implements GameListener {
 		scene.setBackgroundColor(Color.LIGHT_GRAY);
 		display = Display.createWindow("Interesting platformer", 16 * 32, 9 * 32, false);
 		display.setGameListener(this);
+		display.setGameLoopEnabled(true);
 		display.setScene(scene);
 		loadLevels();
 		display.start();
@@ -62,6 +70,8 @@ public class InterestingPlatformer implements GameListener {
 
 	private void nextLevel(int index) {
 		scene.setBackgroundColor(Color.LIGHT_GRAY);
+		scene.getCamera().setPosition(0, 0);
+		scene.setDamageTracking(false);
 		if (index < levels.length && levels[index] != null) {
 			scene.clearScene();
 			currentLevel = levels[index];
@@ -9,6 +9,15 @@ import ethics.events.GameListener;
  * @author Jonathan Cooper
  */
 public abstract class Level implements GameListener {
+	/**
+	 * Cached layer for level geometry that doesn't move.
+	 */
+	static final String TERRAIN_LAYER = "terrain";
+	/**
+	 * Cached layer drawn over everything else for HUD text.
+	 */
+	static final String HUD_LAYER = "hud";
+
 	public Level(Scene scene) {}
 	public Level(Display display, Scene scene) {this(scene);}
     public abstract boolean levelOver();
@@ -9,7 +9,6 @@ import demogame.actors.Flag;
 import demogame.actors.Spike;
 import demogame.actors.SpookyMage;
 import java.io.IOException;
-import java.util.ArrayList;
 import static java.awt.event.KeyEvent.*;
 
 /**
@@ -20,8 +19,7 @@ import static java.awt.event.KeyEvent.*;
 public class Level1 extends Level {
 
 	private Scene scene;
-	private ArrayList<Entity> groundPieces = new ArrayList<>();
-	private ArrayList<Entity> spikes = new ArrayList<>();
+	private Spike spike;
 	private Flag flag;
 	private int movementDirection = 0;
 	private SpookyMage player;
@@ -44,35 +42,35 @@ public class Level1 extends Level {
 	@Override
 	public void onUpdate() {
 		try {
-			player.generateGround(groundPieces, scene, 8 * 32);
+			player.generateGround(scene, 8 * 32);
 		} catch (IOException ex) {
 			System.exit(-1);
 		}
-		player.move(movementDirection, groundPieces, spikes, flag, true);
+		player.move(movementDirection, scene.getCamera());
 	}
 
 	@Override
 	public void onLoad() {
+		scene.addLayer(HUD_LAYER, 100, true);
+		scene.setDespawnMargin(64);
 		try {
-			groundPieces.clear();
-			spikes.clear();
 			player = new SpookyMage(128, 64);
-			spikes.add(new Spike(32 * 20, 7 * 32));
+			spike = new Spike(32 * 20, 7 * 32);
 			flag = new Flag(32 * 35, 6 * 32);
 		} catch (IOException ex) {
 			System.exit(-1);
 		}
-		scene.addEntity(spikes.get(0));
+		scene.addEntity(spike);
 		scene.addEntity(flag);
 		movementDirection = 0;
-		scene.addEntity(new Entity(new TextDrawable("Controls", 12, true), 5, 5, 0, 0));
-		scene.addEntity(new Entity(new TextDrawable("left/right arrows = move", 12, true), 5, 17, 0, 0));
-		scene.addEntity(new Entity(new TextDrawable("up arrow = jump", 12, true), 5, 29, 5, 0));
-		scene.addEntity(new Entity(new TextDrawable("~ = show bounding boxes", 12, true), 5, 41, 0, 0));
+		addHudText(new TextDrawable("Controls", 12, true), 5, 5, 0, 0);
+		addHudText(new TextDrawable("left/right arrows = move", 12, true), 5, 17, 0, 0);
+		addHudText(new TextDrawable("up arrow = jump", 12, true), 5, 29, 5, 0);
+		addHudText(new TextDrawable("~ = show bounding boxes", 12, true), 5, 41, 0, 0);
 		Entity demoNotice = new Entity(new TextDrawable("This game is a demo for the Ethics Engine", true), 20, 90, 0, 0);
+		demoNotice.setCollidable(false);
 		scene.addEntity(demoNotice);
 		scene.addEntity(player);
-		groundPieces.add(demoNotice);
 	}
 
 	@Override
@@ -100,4 +98,10 @@ public class Level1 extends Level {
 		}
 	}
 
+	private void addHudText(TextDrawable text, double x, double y, int width, int height) {
+		Entity entity = new Entity(text, x, y, width, height);
+		entity.setScreenSpace(true);
+		entity.setCollidable(false);
+		scene.addEntity(entity, HUD_LAYER);
+	}
 }
@@ -1,11 +1,14 @@
 package demogame;
 
+import ethics.CollisionGrid;
 import ethics.Entity;
 import ethics.Scene;
+import ethics.TileMap;
 import ethics.drawables.TextDrawable;
 import ethics.events.GameKeyEvent;
 import ethics.events.GameMouseEvent;
-import demogame.actors.Block;
+import ethics.imagetools.Tilesheet;
+import demogame.actors.CollisionCategories;
 import demogame.actors.Flag;
 import demogame.actors.Spike;
 import demogame.actors.SpookyMage;
@@ -15,18 +18,17 @@ import static java.awt.event.KeyEvent.VK_LEFT;
 import static java.awt.event.KeyEvent.VK_RIGHT;
 import static java.awt.event.KeyEvent.VK_UP;
 import java.io.IOException;
-import java.util.ArrayList;
 
 /**
- * The 2nd level in the demo game.
+ * The 2nd level in the demo game. The ground is a TileMap with a
+ * CollisionGrid over the same cells instead of an entity per block.
  *
  * @author Jonathan Cooper
  */
 public class Level2 extends Level {
 
 	private Scene scene;
-	private ArrayList<Entity> groundPieces = new ArrayList<>();
-	private ArrayList<Entity> spikes = new ArrayList<>();
+	private Spike spike;
 	private Flag flag;
 	private int movementDirection = 0;
 	private SpookyMage player;
@@ -51,30 +53,30 @@ public class Level2 extends Level {
 		if (player.getY() > 9 * 32) {
 			fell = true;
 		}
-		player.move(movementDirection, groundPieces, spikes, flag, false);
+		player.move(movementDirection, null);
 	}
 
 	public void onLoad() {
 		scene.setBackgroundColor(new Color(50, 50, 50));
+		scene.addLayer(TERRAIN_LAYER, -10, true);
+		scene.addLayer(HUD_LAYER, 100, true);
 		fell = false;
-		groundPieces.clear();
-		spikes.clear();
 		try {
 			player = new SpookyMage(32, 64);
-			spikes.add(new Spike(32 * 4, 7 * 32));
+			spike = new Spike(32 * 4, 7 * 32);
 			flag = new Flag(14 * 32, 4 * 32);
-			createBlockGround();
+			createGround();
 		} catch (IOException ex) {
 			System.exit(-1);
 		}
-		scene.addEntity(spikes.get(0));
+		scene.addEntity(spike);
 		scene.addEntity(flag);
 		scene.addEntity(player);
 		movementDirection = 0;
-		scene.addEntity(new Entity(new TextDrawable("Controls", 12, true), 5, 5, 0, 0));
-		scene.addEntity(new Entity(new TextDrawable("left/right arrows = move", 12, true), 5, 17, 0, 0));
-		scene.addEntity(new Entity(new TextDrawable("up arrow = jump", 12, true), 5, 29, 5, 0));
-		scene.addEntity(new Entity(new TextDrawable("~ = show bounding boxes", 12, true), 5, 41, 0, 0));
+		addHudText(new TextDrawable("Controls", 12, true), 5, 5, 0, 0);
+		addHudText(new TextDrawable("left/right arrows = move", 12, true), 5, 17, 0, 0);
+		addHudText(new TextDrawable("up arrow = jump", 12, true), 5, 29, 5, 0);
+		addHudText(new TextDrawable("~ = show bounding boxes", 12, true), 5, 41, 0, 0);
 	}
 
 	@Override
@@ -103,23 +105,30 @@ public class Level2 extends Level {
 		}
 	}
 
-	private void createBlockGround() throws IOException {
-		for (int i = 64; i < 15 * 32; i += 32) {
-			Block b;
-			if (i == 64) {
-				b = new Block(i, 7 * 32);
-			} else if (i == 96) {
-				b = new Block(i, 6 * 32);
-			} else if (i == 13 * 32) {
-				b = new Block(i, 7 * 32);
-			} else if (i == 14 * 32) {
-				b = new Block(i, 6 * 32);
+	private void createGround() throws IOException {
+		TileMap ground = new TileMap(new Tilesheet("images/ground/tiles.png", 32, 32), 0, 0, 15, 9);
+		CollisionGrid grid = new CollisionGrid(0, 0, 15, 9, 32, 32);
+		grid.setCollisionCategory(CollisionCategories.SOLID);
+		for (int column = 2; column < 15; ++column) {
+			int row;
+			if (column == 2 || column == 13) {
+				row = 7;
+			} else if (column == 3 || column == 14) {
+				row = 6;
 			} else {
-				b = new Block(i, 8 * 32);
+				row = 8;
 			}
-			scene.addEntity(b);
-			groundPieces.add(b);
+			ground.setTile(column, row, 0);
+			grid.setCell(column, row, CollisionGrid.SOLID);
 		}
+		scene.addEntity(ground, TERRAIN_LAYER);
+		scene.setCollisionGrid(grid);
 	}
 
+	private void addHudText(TextDrawable text, double x, double y, int width, int height) {
+		Entity entity = new Entity(text, x, y, width, height);
+		entity.setScreenSpace(true);
+		entity.setCollidable(false);
+		scene.addEntity(entity, HUD_LAYER);
+	}
 }
@@ -46,6 +46,7 @@ public class LevelGameWon extends Level {
 	@Override
 	public void onLoad() {
 		scene.setBackgroundColor(Color.BLACK);
+		scene.setDamageTracking(true);
 		try {
 			over = false;
 			TextDrawable clickAnywhere = new TextDrawable("Click anywhere to restart");
@@ -53,6 +54,7 @@ public class LevelGameWon extends Level {
 			clickAnywhere.setColor(new Color(255, 100, 100));
 			clickAnywhere.setShadowColor(new Color(150, 50, 50));
 			clickAnywhere.setShadow(true);
+			clickAnywhere.updateBuffer();
 			scene.addEntity(new Entity(new StaticImage("images/screens/won.bmp"), 0, 50, 0, 0));
 			scene.addEntity(new Entity(clickAnywhere, 100, 200, 0, 0));
 		} catch (IOException ex) {
@@ -14,6 +14,8 @@ import java.io.IOException;
 public class Block extends Entity {
 	public Block(double x, double y) throws IOException {
 		super(null, x, y, 32, 32);
+		setCollisionCategory(CollisionCategories.SOLID);
+		setStatic(true);
 		super.setDrawable(createDrawable());
 	}
 
@@ -0,0 +1,34 @@
+package demogame.actors;
+
+/**
+ * Collision categories of the things in the demo game. The mage only stops
+ * on solid ground, and tells hazards and goals apart by their categories when
+ * it starts touching them.
+ *
+ * @author Jonathan Cooper
+ */
+public final class CollisionCategories {
+
+	/**
+	 * Ground that can be stood on.
+	 */
+	public static final int SOLID = 1;
+
+	/**
+	 * Things that kill the mage when touched.
+	 */
+	public static final int HAZARD = 1 << 1;
+
+	/**
+	 * The end of a level.
+	 */
+	public static final int GOAL = 1 << 2;
+
+	/**
+	 * The mage.
+	 */
+	public static final int PLAYER = 1 << 3;
+
+	private CollisionCategories() {
+	}
+}
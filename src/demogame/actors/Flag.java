@@ -16,6 +16,8 @@ public class Flag extends Entity {
 
 	public Flag(double x, double y) throws IOException {
 		super(null, x, y, 32, 64);
+		setCollisionCategory(CollisionCategories.GOAL);
+		setTrigger(true);
 		setDrawable(createDrawable());
 	}
 
@@ -6,7 +6,9 @@ import ethics.drawables.Drawable;
 import java.io.IOException;
 
 /**
- * A ground piece for use in the demo game.
+ * A ground piece for use in the demo game. Grass tiles are taken from an
+ * EntityPool and despawn once they scroll out of view, so they are reused
+ * rather than created for every step of the ground.
  *
  * @author Jonathan Cooper
  */
@@ -14,16 +16,43 @@ public class GrassTile extends Entity {
 
 	private static int creationCounter = 0;
 
-	public GrassTile(double x, double y) throws IOException {
-		super(null, x, y, 32, 32);
+	/**
+	 * Creates a plain tile at the origin, for an EntityPool to hand out.
+	 *
+	 * @throws IOException If the tile images are unable to be loaded.
+	 */
+	public GrassTile() throws IOException {
+		super(null, 0, 0, 32, 32);
+		setCollisionCategory(CollisionCategories.SOLID);
+		setStatic(true);
+		setDespawnable(true);
 		super.setDrawable(createDrawable());
 	}
 
+	public GrassTile(double x, double y) throws IOException {
+		this();
+		setPosition(x, y);
+		pickLook();
+	}
+
+	/**
+	 * Picks the look of the tile each time it is placed, so the ground has
+	 * the same pattern whether tiles are new or reused.
+	 */
+	@Override
+	protected void onAcquire() {
+		pickLook();
+	}
+
+	private void pickLook() {
+		((AnimatedSprite) getDrawable()).playAnimation(creationCounter++ % 3 == 0 ? "ground_weird" : "ground_normal");
+	}
+
 	private Drawable createDrawable() throws IOException {
 		AnimatedSprite sprite = new AnimatedSprite("images/ground/tiles.png", 32, 32);
 		sprite.addAnimation("ground_normal", new int[]{2});
 		sprite.addAnimation("ground_weird", new int[]{3});
-		sprite.playAnimation(creationCounter++ % 3 == 0 ? "ground_weird" : "ground_normal");
+		sprite.playAnimation("ground_normal");
 		return sprite;
 	}
 }
@@ -15,6 +15,8 @@ public class Spike extends Entity {
 	
 	public Spike(double x, double y) throws IOException {
 		super(null, x, y, 32, 32);
+		setCollisionCategory(CollisionCategories.HAZARD);
+		setTrigger(true);
 		super.setDrawable(createDrawable());
 	}
 	
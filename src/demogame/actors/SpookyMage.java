@@ -1,10 +1,14 @@
 package demogame.actors;
 
+import ethics.Camera;
 import ethics.Entity;
+import ethics.EntityPool;
 import ethics.Scene;
 import ethics.drawables.AnimatedSprite;
 import ethics.drawables.Drawable;
-import ethics.imagetools.TilesheetGenerator;
+import ethics.imagetools.AtlasRegion;
+import ethics.imagetools.TextureAtlas;
+import ethics.imagetools.Tilesheet;
 import java.io.IOException;
 import java.util.ArrayList;
 
@@ -22,8 +26,8 @@ public class SpookyMage extends Entity {
 	private static final int GRAVITY_INFLUENCE = 10;
 	private static final int JUMP_POWER = 21;
 
-	private ArrayList<Entity> groundTiles = new ArrayList<>();
-	private ArrayList<Entity> spikes = new ArrayList<>();
+	private final EntityPool<GrassTile> groundPool = new EntityPool<>(GrassTile::new);
+	private double groundEnd = -32;
 	private boolean won = false;
 	private boolean dead = false;
 	private int deadFrames = 0;
@@ -35,6 +39,9 @@ public class SpookyMage extends Entity {
 
 	public SpookyMage(double x, double y) throws IOException {
 		super(null, x, y, 64, 64);
+		setCollisionCategory(CollisionCategories.PLAYER);
+		setCollisionMask(CollisionCategories.SOLID | CollisionCategories.HAZARD | CollisionCategories.GOAL);
+		setCollisionEvents(true);
 		setDrawable(createDrawable());
 	}
 
@@ -49,7 +56,13 @@ public class SpookyMage extends Entity {
 		}
 	}
 
-	public void move(int direction, ArrayList<Entity> groundPieces, ArrayList<Entity> spikes, Entity flag, boolean moveScene) {
+	/**
+	 * Moves the mage for one tick.
+	 *
+	 * @param direction -1 for left, 1 for right and 0 for standing still.
+	 * @param camera If not null, the camera follows the mage horizontally.
+	 */
+	public void move(int direction, Camera camera) {
 		if (dead) {
 			++deadFrames;
 			return;
@@ -57,9 +70,7 @@ public class SpookyMage extends Entity {
 		if (won) {
 			++wonFrames;
 		}
-		checkSpikeCollision(spikes);
-		checkFlagCollision(flag, moveScene, direction);
-		gravity(groundPieces);
+		gravity();
 		if (direction == 0) {
 			if (lastDirection == 1) {
 				((AnimatedSprite) getDrawable()).playAnimation("facing_right");
@@ -70,11 +81,11 @@ public class SpookyMage extends Entity {
 			if (lastDirection != direction) {
 				((AnimatedSprite) getDrawable()).playAnimation(direction == 1 ? "walking_right" : "walking_left");
 			}
-			if (moveScene) {
-				moveSceneObjects(groundPieces, -direction * MOVE_SPEED);
-				moveSceneObjects(spikes, -direction * MOVE_SPEED);
+			if (camera != null) {
+				setPosition(getX() + direction * MOVE_SPEED, getY());
+				camera.move(direction * MOVE_SPEED, 0);
 			} else {
-				moveToUntilCollision(groundPieces, direction * MOVE_SPEED, 0);
+				moveToUntilCollision(CollisionCategories.SOLID, direction * MOVE_SPEED, 0);
 			}
 		}
 		lastDirection = direction;
@@ -84,21 +95,17 @@ public class SpookyMage extends Entity {
 		return won && wonFrames > 40;
 	}
 
-	public void generateGround(ArrayList<Entity> groundPieces, Scene scene, int y) throws IOException {
-		double maxX = -32;
-		for (Entity groundPiece : groundPieces) {
-			maxX = Math.max(maxX, groundPiece.getX());
-		}
-		while (maxX < 16 * 32) {
-			maxX += 32;
-			GrassTile temp = new GrassTile(maxX, y);
-			groundPieces.add(temp);
-			scene.addEntity(temp);
+	public void generateGround(Scene scene, int y) throws IOException {
+		while (groundEnd < scene.getCamera().getX() + 16 * 32) {
+			groundEnd += 32;
+			GrassTile tile = groundPool.acquire();
+			tile.setPosition(groundEnd, y);
+			scene.addEntity(tile);
 		}
 	}
 
-	private void gravity(ArrayList<Entity> groundPieces) {
-		if (!super.moveToUntilCollision(groundPieces, 0, GRAVITY_INFLUENCE - jumpPower)) {
+	private void gravity() {
+		if (!super.moveToUntilCollision(CollisionCategories.SOLID, 0, GRAVITY_INFLUENCE - jumpPower)) {
 			doneJumping = true;
 		}
 		if (jumpPower > 0.1) {
@@ -106,49 +113,41 @@ public class SpookyMage extends Entity {
 		}
 	}
 
-	private void moveSceneObjects(ArrayList<Entity> entities, double offsetX) {
-		for (Entity e : entities) {
-			e.setPosition(e.getX() + offsetX, e.getY());
-		}
-	}
-
-	private void checkSpikeCollision(ArrayList<Entity> spikes) {
-		for (Entity spike : spikes) {
-			if (collidesWith(spike)) {
-				dead = true;
-				((AnimatedSprite) getDrawable()).playAnimationFromStart("dieing");
-				((Spike) spike).setBloodied(true);
-			}
+	@Override
+	protected void onCollisionEnter(Entity other) {
+		if (dead) {
+			return;
 		}
-	}
-
-	private void checkFlagCollision(Entity flag, boolean movesScene, int direction) {
-		if (flag != null) {
-			if (movesScene) {
-				flag.setPosition(flag.getX() - direction * MOVE_SPEED, flag.getY());
-			}
-			if (flag.collidesWith(this)) {
-				won = true;
-				((Flag) flag).fall();
-			}
+		if ((other.getCollisionCategory() & CollisionCategories.HAZARD) != 0) {
+			dead = true;
+			((AnimatedSprite) getDrawable()).playAnimationFromStart("dieing");
+			((Spike) other).setBloodied(true);
+		} else if ((other.getCollisionCategory() & CollisionCategories.GOAL) != 0) {
+			won = true;
+			((Flag) other).fall();
 		}
 	}
 
 	private Drawable createDrawable() throws IOException {
-		TilesheetGenerator generator = new TilesheetGenerator(64, 64);
+		TextureAtlas atlas = new TextureAtlas();
+		ArrayList<AtlasRegion> frames = new ArrayList<>();
+		Tilesheet walking = new Tilesheet("images/mage/mage_walking.png", 64, 64);
+		Tilesheet casting = new Tilesheet("images/mage/mage_casting.png", 64, 64);
+		Tilesheet falling = new Tilesheet("images/mage/mage_falling.png", 64, 64);
 		for (int i = 9; i < 18; ++i) {
-			generator.addFromTilesheet("images/mage/mage_walking.png", i);
+			frames.add(atlas.addFromTilesheet(walking, i));
 		}
 		for (int i = 27; i < 36; ++i) {
-			generator.addFromTilesheet("images/mage/mage_walking.png", i);
+			frames.add(atlas.addFromTilesheet(walking, i));
 		}
 		for (int i = 27; i < 36; ++i) {
-			generator.addFromTilesheet("images/mage/mage_casting.png", i);
+			frames.add(atlas.addFromTilesheet(casting, i));
 		}
 		for (int i = 0; i < 6; ++i) {
-			generator.addFromTilesheet("images/mage/mage_falling.png", i);
+			frames.add(atlas.addFromTilesheet(falling, i));
 		}
-		AnimatedSprite sprite = new AnimatedSprite(generator.generateImage(), 64, 64);
+		atlas.pack();
+		AnimatedSprite sprite = new AnimatedSprite(frames.toArray(new AtlasRegion[frames.size()]));
 		sprite.addAnimation("walking_left", new int[]{0, 1, 2, 3, 4, 5, 6, 7, 8});
 		sprite.addAnimation("walking_right", new int[]{9, 10, 11, 12, 13, 14, 15, 16, 17});
 		sprite.addAnimation("facing_right", new int[]{9});
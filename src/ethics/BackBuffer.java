@@ -0,0 +1,182 @@
+package ethics;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+
+/**
+ * A persistent off screen image that a Display renders each frame to before
+ * it is scaled onto the screen. When a graphics configuration is available
+ * the buffer is a VolatileImage so it can live in video memory, otherwise a
+ * plain BufferedImage is used. The image and its graphics object are only
+ * recreated when the contents are lost or the graphics configuration changes,
+ * so rendering a frame does not allocate a new image. A buffer can also be
+ * kept in main memory, so its pixels can be drawn to from several threads.
+ *
+ * @author Jonathan Cooper
+ */
+class BackBuffer {
+
+	private final int width;
+	private final int height;
+	private VolatileImage volatileImage = null;
+	private BufferedImage bufferedImage = null;
+	private Graphics2D graphics = null;
+	private boolean fresh = false;
+	private boolean restored = false;
+	private boolean software = false;
+	private boolean rasterRequired = false;
+
+	/**
+	 * Creates a new back buffer. No image is created until the first frame.
+	 *
+	 * @param width Width of the buffer in pixels.
+	 * @param height Height of the buffer in pixels.
+	 */
+	BackBuffer(int width, int height) {
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Keeps the buffer in a BufferedImage even when a graphics configuration
+	 * is available.
+	 *
+	 * @param software True to use a BufferedImage.
+	 */
+	void setSoftware(boolean software) {
+		if (software != this.software) {
+			this.software = software;
+			dispose();
+		}
+	}
+
+	/**
+	 * Asks for the buffer to always be a BufferedImage of type TYPE_INT_RGB,
+	 * for when its pixels are read directly after a frame is rendered.
+	 *
+	 * @param rasterRequired True if the pixels must be readable.
+	 */
+	void setRasterRequired(boolean rasterRequired) {
+		this.rasterRequired = rasterRequired;
+	}
+
+	boolean isRasterRequired() {
+		return rasterRequired;
+	}
+
+	/**
+	 * Prepares the buffer for a new frame, restoring or recreating the image
+	 * if needed.
+	 *
+	 * @param gc Graphics configuration of the target, or null if unknown.
+	 * @return Graphics object to draw the frame with.
+	 */
+	Graphics2D beginFrame(GraphicsConfiguration gc) {
+		fresh = restored;
+		restored = false;
+		if (gc == null || software) {
+			if (bufferedImage == null) {
+				disposeGraphics();
+				volatileImage = null;
+				bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+				graphics = bufferedImage.createGraphics();
+				fresh = true;
+			}
+			return graphics;
+		}
+		bufferedImage = null;
+		int status = volatileImage == null ? VolatileImage.IMAGE_INCOMPATIBLE : volatileImage.validate(gc);
+		if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+			disposeGraphics();
+			volatileImage = gc.createCompatibleVolatileImage(width, height, Transparency.OPAQUE);
+			volatileImage.validate(gc);
+			fresh = true;
+		} else if (status == VolatileImage.IMAGE_RESTORED) {
+			fresh = true;
+		}
+		if (graphics == null) {
+			graphics = volatileImage.createGraphics();
+		}
+		return graphics;
+	}
+
+	/**
+	 * Returns true if the buffer was created or restored by the last call to
+	 * beginFrame, meaning nothing of earlier frames is left in it.
+	 *
+	 * @return True if the whole frame has to be drawn.
+	 */
+	boolean isFresh() {
+		return fresh;
+	}
+
+	/**
+	 * Returns true if the buffer holds a complete frame that can be shown.
+	 *
+	 * @param gc Graphics configuration of the target, or null if unknown.
+	 * @return False if a frame has to be rendered before showing the buffer.
+	 */
+	boolean isValid(GraphicsConfiguration gc) {
+		if (gc == null || software) {
+			return bufferedImage != null;
+		}
+		if (volatileImage == null) {
+			return false;
+		}
+		int status = volatileImage.validate(gc);
+		if (status == VolatileImage.IMAGE_RESTORED) {
+			restored = true;
+		}
+		return status == VolatileImage.IMAGE_OK;
+	}
+
+	/**
+	 * Returns true if the contents rendered since beginFrame were lost and
+	 * the frame has to be rendered again.
+	 *
+	 * @return True if the frame must be redrawn.
+	 */
+	boolean contentsLost() {
+		return volatileImage != null && volatileImage.contentsLost();
+	}
+
+	/**
+	 * Gets the image holding the last rendered frame.
+	 *
+	 * @return Image of the buffer.
+	 */
+	Image getImage() {
+		return volatileImage != null ? volatileImage : bufferedImage;
+	}
+
+	int getWidth() {
+		return width;
+	}
+
+	int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Releases the buffer. A new image is created on the next frame.
+	 */
+	void dispose() {
+		disposeGraphics();
+		if (volatileImage != null) {
+			volatileImage.flush();
+			volatileImage = null;
+		}
+		bufferedImage = null;
+	}
+
+	private void disposeGraphics() {
+		if (graphics != null) {
+			graphics.dispose();
+			graphics = null;
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package ethics;
+
+import java.util.ArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Finds the entities near a rectangle, point or ray without testing every
+ * entity of a Scene. The scene keeps its broadphase up to date and uses it to
+ * cull entities outside the view, to narrow down collision tests and to
+ * answer queries from game code. Only world entities with a size are kept in
+ * it. SpatialHash suits levels of similar sized entities, DynamicAabbTree
+ * suits levels mixing tiny and huge ones, and BruteForceBroadPhase is the
+ * reference the others are checked against.
+ *
+ * Bounds are the exact positions and sizes of the entities. Rectangles
+ * overlap when they share more than an edge, and an entity covers a point on
+ * its left or top edge but not on its right or bottom edge. Sinks may run
+ * further queries, but must not add or remove entities.
+ *
+ * @author Jonathan Cooper
+ */
+public interface BroadPhase {
+
+	/**
+	 * Adds an entity that is not in the broadphase yet.
+	 *
+	 * @param e Entity to add.
+	 */
+	void insert(Entity e);
+
+	/**
+	 * Removes an entity of the broadphase.
+	 *
+	 * @param e Entity to remove.
+	 */
+	void remove(Entity e);
+
+	/**
+	 * Brings an entity of the broadphase up to date after it moved or changed
+	 * size.
+	 *
+	 * @param e Entity that changed.
+	 */
+	void update(Entity e);
+
+	/**
+	 * Removes every entity.
+	 */
+	void clear();
+
+	/**
+	 * Finds every entity in one of the given collision categories whose
+	 * bounds overlap a rectangle, each once.
+	 *
+	 * @param minX Left of the rectangle.
+	 * @param minY Top of the rectangle.
+	 * @param maxX Right of the rectangle.
+	 * @param maxY Bottom of the rectangle.
+	 * @param categories Collision categories to find.
+	 * @param out List the entities found are added to.
+	 */
+	void query(double minX, double minY, double maxX, double maxY, int categories, ArrayList<Entity> out);
+
+	/**
+	 * Passes every entity in one of the given collision categories whose
+	 * bounds overlap a rectangle to a sink, each once.
+	 *
+	 * @param minX Left of the rectangle.
+	 * @param minY Top of the rectangle.
+	 * @param maxX Right of the rectangle.
+	 * @param maxY Bottom of the rectangle.
+	 * @param categories Collision categories to find.
+	 * @param sink Receives the entities found.
+	 * @return Number of entities found.
+	 */
+	int query(double minX, double minY, double maxX, double maxY, int categories, Consumer<? super Entity> sink);
+
+	/**
+	 * Passes every entity in one of the given collision categories that
+	 * covers a point to a sink.
+	 *
+	 * @param x X coordinate of the point.
+	 * @param y Y coordinate of the point.
+	 * @param categories Collision categories to find.
+	 * @param sink Receives the entities found.
+	 * @return Number of entities found.
+	 */
+	int queryPoint(double x, double y, int categories, Consumer<? super Entity> sink);
+
+	/**
+	 * Finds the first entity a ray enters that can block movement and is in
+	 * one of the given categories. Entities the origin is inside of are not
+	 * hit, and ties go to the entity added to the scene first. RaycastHit.offer
+	 * does the test for a single entity.
+	 *
+	 * @param originX X coordinate the ray starts at.
+	 * @param originY Y coordinate the ray starts at.
+	 * @param dX X part of the direction, which has a length of 1.
+	 * @param dY Y part of the direction.
+	 * @param maxDistance Furthest distance to look, finite.
+	 * @param categories Collision categories that can be hit.
+	 * @param hit Filled in with the hit, or cleared if there is none.
+	 * @return True if an entity was hit.
+	 */
+	boolean raycast(double originX, double originY, double dX, double dY, double maxDistance,
+			int categories, RaycastHit hit);
+}
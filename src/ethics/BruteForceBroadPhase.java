@@ -0,0 +1,95 @@
+package ethics;
+
+import java.util.ArrayList;
+import java.util.function.Consumer;
+
+/**
+ * A broadphase that keeps its entities in a plain list and tests every one of
+ * them on each query. Adding, moving and removing cost nothing, so it can win
+ * for a handful of entities, but it is mostly the reference the other
+ * broadphases are measured and checked against.
+ *
+ * @author Jonathan Cooper
+ */
+public class BruteForceBroadPhase implements BroadPhase {
+
+	private final ArrayList<Entity> entities = new ArrayList<>();
+
+	@Override
+	public void insert(Entity e) {
+		e.proxy = entities.size();
+		entities.add(e);
+	}
+
+	@Override
+	public void remove(Entity e) {
+		Entity last = entities.remove(entities.size() - 1);
+		if (last != e) {
+			entities.set(e.proxy, last);
+			last.proxy = e.proxy;
+		}
+		e.proxy = -1;
+	}
+
+	@Override
+	public void update(Entity e) {
+	}
+
+	@Override
+	public void clear() {
+		entities.clear();
+	}
+
+	@Override
+	public void query(double minX, double minY, double maxX, double maxY, int categories, ArrayList<Entity> out) {
+		for (int i = 0; i < entities.size(); ++i) {
+			Entity e = entities.get(i);
+			if ((e.getCollisionCategory() & categories) != 0 && overlaps(e, minX, minY, maxX, maxY)) {
+				out.add(e);
+			}
+		}
+	}
+
+	@Override
+	public int query(double minX, double minY, double maxX, double maxY, int categories, Consumer<? super Entity> sink) {
+		int found = 0;
+		for (int i = 0; i < entities.size(); ++i) {
+			Entity e = entities.get(i);
+			if ((e.getCollisionCategory() & categories) != 0 && overlaps(e, minX, minY, maxX, maxY)) {
+				sink.accept(e);
+				++found;
+			}
+		}
+		return found;
+	}
+
+	@Override
+	public int queryPoint(double x, double y, int categories, Consumer<? super Entity> sink) {
+		int found = 0;
+		for (int i = 0; i < entities.size(); ++i) {
+			Entity e = entities.get(i);
+			if ((e.getCollisionCategory() & categories) != 0
+					&& e.getX() <= x && x < e.getX() + e.getWidth() && e.getY() <= y && y < e.getY() + e.getHeight()) {
+				sink.accept(e);
+				++found;
+			}
+		}
+		return found;
+	}
+
+	@Override
+	public boolean raycast(double originX, double originY, double dX, double dY, double maxDistance,
+			int categories, RaycastHit hit) {
+		hit.clear();
+		double best = maxDistance;
+		for (int i = 0; i < entities.size(); ++i) {
+			best = hit.offer(entities.get(i), categories, originX, originY, dX, dY, best);
+		}
+		return hit.isHit();
+	}
+
+	private static boolean overlaps(Entity e, double minX, double minY, double maxX, double maxY) {
+		return e.getX() < maxX && e.getX() + e.getWidth() > minX
+				&& e.getY() < maxY && e.getY() + e.getHeight() > minY;
+	}
+}
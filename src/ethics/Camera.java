@@ -0,0 +1,135 @@
+package ethics;
+
+/**
+ * The view into a Scene. Entities are positioned in world coordinates and the
+ * camera decides which part of the world is shown, so scrolling only changes
+ * the camera instead of moving every entity. The camera position is the world
+ * coordinate shown at the top left of the display. A zoom above 1 magnifies
+ * the world.
+ *
+ * @author Jonathan Cooper
+ */
+public class Camera {
+
+	private double x = 0;
+	private double y = 0;
+	private double zoom = 1;
+	private int viewWidth = 0;
+	private int viewHeight = 0;
+
+	/**
+	 * Moves the camera so a world coordinate is at the top left of the view.
+	 *
+	 * @param x World X coordinate.
+	 * @param y World Y coordinate.
+	 */
+	public void setPosition(double x, double y) {
+		this.x = x;
+		this.y = y;
+	}
+
+	/**
+	 * Moves the camera relative to its current position.
+	 *
+	 * @param dX Change in X.
+	 * @param dY Change in Y.
+	 */
+	public void move(double dX, double dY) {
+		setPosition(x + dX, y + dY);
+	}
+
+	/**
+	 * Changes the zoom of the camera.
+	 *
+	 * @param zoom Scale applied to the world, must be positive.
+	 */
+	public void setZoom(double zoom) {
+		if (zoom <= 0) {
+			throw new IllegalArgumentException("Zoom must be positive");
+		}
+		this.zoom = zoom;
+	}
+
+	/**
+	 * Sets the size of the display area the camera is drawn to.
+	 *
+	 * @param viewWidth Width of the view in pixels.
+	 * @param viewHeight Height of the view in pixels.
+	 */
+	void setViewSize(int viewWidth, int viewHeight) {
+		this.viewWidth = viewWidth;
+		this.viewHeight = viewHeight;
+	}
+
+	/**
+	 * Gets the width of the display area, or 0 if the camera hasn't been
+	 * drawn to a display yet.
+	 *
+	 * @return Width of the view in pixels.
+	 */
+	public int getViewWidth() {
+		return viewWidth;
+	}
+
+	/**
+	 * Gets the height of the display area, or 0 if the camera hasn't been
+	 * drawn to a display yet.
+	 *
+	 * @return Height of the view in pixels.
+	 */
+	public int getViewHeight() {
+		return viewHeight;
+	}
+
+	public double getX() {
+		return x;
+	}
+
+	public double getY() {
+		return y;
+	}
+
+	public double getZoom() {
+		return zoom;
+	}
+
+	/**
+	 * Converts an X coordinate on the display to a world coordinate.
+	 *
+	 * @param screenX X coordinate on the display.
+	 * @return World X coordinate.
+	 */
+	public double screenToWorldX(double screenX) {
+		return x + screenX / zoom;
+	}
+
+	/**
+	 * Converts a Y coordinate on the display to a world coordinate.
+	 *
+	 * @param screenY Y coordinate on the display.
+	 * @return World Y coordinate.
+	 */
+	public double screenToWorldY(double screenY) {
+		return y + screenY / zoom;
+	}
+
+	/**
+	 * Converts a world X coordinate to a coordinate on the display.
+	 *
+	 * @param worldX World X coordinate.
+	 * @return X coordinate on the display.
+	 */
+	public double worldToScreenX(double worldX) {
+		return (worldX - x) * zoom;
+	}
+
+	/**
+	 * Converts a world Y coordinate to a coordinate on the display.
+	 *
+	 * @param worldY World Y coordinate.
+	 * @return Y coordinate on the display.
+	 */
+	public double worldToScreenY(double worldY) {
+		return (worldY - y) * zoom;
+	}
+}
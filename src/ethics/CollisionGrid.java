@@ -0,0 +1,265 @@
+package ethics;
+
+/**
+ * Collision for terrain laid out on a regular grid, kept as one byte of
+ * flags per cell instead of an entity per tile. A scene with a collision grid
+ * tests movement against the cells a movement passes over by looking them up
+ * directly, and against other entities through its broadphase as usual, so
+ * the cost of the terrain does not depend on the size of the level. Solid
+ * cells block from every side, one way cells only block entities landing on
+ * them from above, and hazard cells never block but can be looked up with
+ * getFlags. The grid is usually drawn by a TileMap over the same cells.
+ *
+ * @author Jonathan Cooper
+ */
+public class CollisionGrid {
+
+	/**
+	 * Flags of a cell that nothing happens in.
+	 */
+	public static final int EMPTY = 0;
+
+	/**
+	 * Flag of a cell that blocks movement from every side.
+	 */
+	public static final int SOLID = 1;
+
+	/**
+	 * Flag of a cell that only blocks movement down onto its top, like a
+	 * platform that can be jumped through from below.
+	 */
+	public static final int ONE_WAY = 2;
+
+	/**
+	 * Flag of a cell that hurts what touches it. Hazards do not block.
+	 */
+	public static final int HAZARD = 4;
+
+	private static final int ALL_FLAGS = SOLID | ONE_WAY | HAZARD;
+
+	private final double x;
+	private final double y;
+	private final int columns;
+	private final int rows;
+	private final int cellWidth;
+	private final int cellHeight;
+	private final byte[] cells;
+	private int collisionCategory = Entity.DEFAULT_CATEGORY;
+
+	/**
+	 * Creates a new collision grid with every cell empty.
+	 *
+	 * @param x X coordinate of the top left of the grid.
+	 * @param y Y coordinate of the top left of the grid.
+	 * @param columns Width of the grid in cells.
+	 * @param rows Height of the grid in cells.
+	 * @param cellWidth Width of a cell.
+	 * @param cellHeight Height of a cell.
+	 */
+	public CollisionGrid(double x, double y, int columns, int rows, int cellWidth, int cellHeight) {
+		if (columns <= 0 || rows <= 0) {
+			throw new IllegalArgumentException("A collision grid needs at least one row and column");
+		}
+		if (cellWidth <= 0 || cellHeight <= 0) {
+			throw new IllegalArgumentException("Bad cell dimensions");
+		}
+		this.x = x;
+		this.y = y;
+		this.columns = columns;
+		this.rows = rows;
+		this.cellWidth = cellWidth;
+		this.cellHeight = cellHeight;
+		cells = new byte[columns * rows];
+	}
+
+	/**
+	 * Gets the flags of a cell.
+	 *
+	 * @param column Column of the cell.
+	 * @param row Row of the cell.
+	 * @return Flags of the cell, EMPTY if it has none.
+	 */
+	public int getCell(int column, int row) {
+		checkCell(column, row);
+		return cells[row * columns + column];
+	}
+
+	/**
+	 * Changes the flags of a cell.
+	 *
+	 * @param column Column of the cell.
+	 * @param row Row of the cell.
+	 * @param flags SOLID, ONE_WAY and HAZARD combined, or EMPTY.
+	 */
+	public void setCell(int column, int row, int flags) {
+		checkCell(column, row);
+		if ((flags & ~ALL_FLAGS) != 0) {
+			throw new IllegalArgumentException("Unknown cell flags " + flags);
+		}
+		cells[row * columns + column] = (byte) flags;
+	}
+
+	/**
+	 * Sets every cell of a rectangle to the same flags.
+	 *
+	 * @param column Leftmost column.
+	 * @param row Top row.
+	 * @param width Number of columns.
+	 * @param height Number of rows.
+	 * @param flags SOLID, ONE_WAY and HAZARD combined, or EMPTY.
+	 */
+	public void fill(int column, int row, int width, int height, int flags) {
+		for (int r = row; r < row + height; ++r) {
+			for (int c = column; c < column + width; ++c) {
+				setCell(c, r, flags);
+			}
+		}
+	}
+
+	/**
+	 * Gets the flags of every cell a rectangle overlaps combined, so game
+	 * code can find out if an entity stands in a hazard. Cells only touching
+	 * the edge of the rectangle are not counted.
+	 *
+	 * @param x Left of the rectangle.
+	 * @param y Top of the rectangle.
+	 * @param width Width of the rectangle.
+	 * @param height Height of the rectangle.
+	 * @return Flags of the cells combined, EMPTY if there are none.
+	 */
+	public int getFlags(double x, double y, double width, double height) {
+		int firstColumn = Math.max(columnAt(x), 0);
+		int firstRow = Math.max(rowAt(y), 0);
+		int lastColumn = Math.min(columnBefore(x + width), columns - 1);
+		int lastRow = Math.min(rowBefore(y + height), rows - 1);
+		int flags = EMPTY;
+		for (int row = firstRow; row <= lastRow; ++row) {
+			for (int column = firstColumn; column <= lastColumn; ++column) {
+				flags |= cells[row * columns + column];
+			}
+		}
+		return flags;
+	}
+
+	/**
+	 * Sets the collision categories the cells of the grid belong to. A
+	 * movement is only blocked by the grid if its mask includes them.
+	 *
+	 * @param collisionCategory Bits of the categories.
+	 */
+	public void setCollisionCategory(int collisionCategory) {
+		this.collisionCategory = collisionCategory;
+	}
+
+	public int getCollisionCategory() {
+		return collisionCategory;
+	}
+
+	public double getX() {
+		return x;
+	}
+
+	public double getY() {
+		return y;
+	}
+
+	public int getColumns() {
+		return columns;
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	public int getCellWidth() {
+		return cellWidth;
+	}
+
+	public int getCellHeight() {
+		return cellHeight;
+	}
+
+	/**
+	 * Returns true if a bounding box overlaps a solid cell.
+	 *
+	 * @param x Left of the box.
+	 * @param y Top of the box.
+	 * @param width Width of the box.
+	 * @param height Height of the box.
+	 * @param mask Categories that block for this test.
+	 * @return True if the box is inside a solid cell.
+	 */
+	boolean overlapsSolid(int x, int y, int width, int height, int mask) {
+		if ((collisionCategory & mask) == 0) {
+			return false;
+		}
+		return (getFlags(x, y, width, height) & SOLID) != 0;
+	}
+
+	/**
+	 * Tests a sweep against the solid and one way cells under the area the
+	 * movement passes over.
+	 *
+	 * @param sweeper Sweep that was begun for the mover.
+	 * @param mover Entity that moves.
+	 * @param mask Categories that block the mover.
+	 * @param dX Change in X.
+	 * @param dY Change in Y.
+	 */
+	void sweep(SweptAabb sweeper, Entity mover, int mask, double dX, double dY) {
+		if ((collisionCategory & mask) == 0) {
+			return;
+		}
+		double moverBottom = mover.getY() + mover.getHeight();
+		double minX = Math.min(mover.getX(), mover.getX() + dX), minY = Math.min(mover.getY(), mover.getY() + dY);
+		double maxX = Math.max(mover.getX(), mover.getX() + dX) + mover.getWidth();
+		double maxY = Math.max(mover.getY(), mover.getY() + dY) + mover.getHeight();
+		int firstColumn = Math.max(columnAt(minX), 0);
+		int firstRow = Math.max(rowAt(minY), 0);
+		int lastColumn = Math.min(columnAt(maxX), columns - 1);
+		int lastRow = Math.min(rowAt(maxY), rows - 1);
+		for (int row = firstRow; row <= lastRow; ++row) {
+			double top = y + row * cellHeight;
+			for (int column = firstColumn; column <= lastColumn; ++column) {
+				int flags = cells[row * columns + column];
+				if ((flags & SOLID) != 0) {
+					double left = x + column * cellWidth;
+					if (sweeper.testBox(left, top, left + cellWidth, top + cellHeight)) {
+						sweeper.acceptTile(flags);
+					}
+				} else if ((flags & ONE_WAY) != 0 && dY > 0 && moverBottom <= top) {
+					double left = x + column * cellWidth;
+					if (sweeper.testBox(left, top, left + cellWidth, top + cellHeight)
+							&& sweeper.getCandidateNormalY() < 0) {
+						sweeper.acceptTile(flags);
+					}
+				}
+			}
+		}
+	}
+
+	private int columnAt(double worldX) {
+		return (int) Math.floor((worldX - x) / cellWidth);
+	}
+
+	private int rowAt(double worldY) {
+		return (int) Math.floor((worldY - y) / cellHeight);
+	}
+
+	/**
+	 * Gets the last column a span ending at worldX reaches into.
+	 */
+	private int columnBefore(double worldX) {
+		return (int) Math.ceil((worldX - x) / cellWidth) - 1;
+	}
+
+	private int rowBefore(double worldY) {
+		return (int) Math.ceil((worldY - y) / cellHeight) - 1;
+	}
+
+	private void checkCell(int column, int row) {
+		if (column < 0 || column >= columns || row < 0 || row >= rows) {
+			throw new IllegalArgumentException("Cell " + column + "," + row + " is outside of the collision grid");
+		}
+	}
+}
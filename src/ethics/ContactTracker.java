@@ -0,0 +1,173 @@
+package ethics;
+
+import ethics.events.CollisionListener;
+import java.util.ArrayList;
+
+/**
+ * Finds the pairs of touching entities of a Scene once per update and
+ * compares them with the pairs of the update before to send collision
+ * events. Only entities with collision events look for contacts, through the
+ * scene's broadphase, so a pair costs one query no matter how many kinds of
+ * things an entity cares about. Pairs are kept sorted by the order their
+ * entities were added, which makes the order of the events the same on every
+ * run.
+ *
+ * @author Jonathan Cooper
+ */
+final class ContactTracker {
+
+	private static final int ENTER = 0;
+	private static final int STAY = 1;
+	private static final int EXIT = 2;
+
+	private final Scene scene;
+	private final ArrayList<CollisionListener> listeners = new ArrayList<>();
+	private ArrayList<Contact> current = new ArrayList<>();
+	private ArrayList<Contact> previous = new ArrayList<>();
+	private final ArrayList<Contact> spare = new ArrayList<>();
+	private final ArrayList<Entity> touching = new ArrayList<>();
+	private final ArrayList<Entity> reporting = new ArrayList<>();
+
+	/**
+	 * A pair of touching entities, with the sequence numbers they had when
+	 * the contact was found.
+	 */
+	private static class Contact {
+
+		Entity a, b;
+		long sequenceA, sequenceB;
+
+		int compareTo(Contact other) {
+			int first = Long.compare(sequenceA, other.sequenceA);
+			return first != 0 ? first : Long.compare(sequenceB, other.sequenceB);
+		}
+	}
+
+	ContactTracker(Scene scene) {
+		this.scene = scene;
+	}
+
+	void addListener(CollisionListener listener) {
+		listeners.add(listener);
+	}
+
+	void removeListener(CollisionListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Finds the contacts of this update and sends the events for them. If
+	 * the scene has an EntityStore, the entities with collision events are
+	 * picked out by scanning its flags, so the entities without them are
+	 * never touched. Entities of the store that are not in the scene are
+	 * skipped. Contacts are sorted afterwards, so the order they are found in
+	 * does not matter.
+	 *
+	 * @param entities Entities of the scene.
+	 */
+	void update(ArrayList<Entity> entities) {
+		EntityStore store = scene.getEntityStore();
+		if (store != null) {
+			store.collectFlagged(EntityStore.COLLISION_EVENTS | EntityStore.TRIGGER, reporting);
+			entities = reporting;
+		}
+		for (int i = 0; i < entities.size(); ++i) {
+			Entity e = entities.get(i);
+			if (!e.hasCollisionEvents() || e.scene != scene) {
+				continue;
+			}
+			scene.collectCollisions(e, e.getCollisionMask(), touching);
+			for (int j = 0; j < touching.size(); ++j) {
+				Entity other = touching.get(j);
+				if (other.hasCollisionEvents() && other.sequence < e.sequence) {
+					continue;
+				}
+				addContact(e, other);
+			}
+			touching.clear();
+		}
+		reporting.clear();
+		current.sort(Contact::compareTo);
+
+		int i = 0, j = 0;
+		while (i < current.size() || j < previous.size()) {
+			int order;
+			if (i == current.size()) {
+				order = 1;
+			} else if (j == previous.size()) {
+				order = -1;
+			} else {
+				order = current.get(i).compareTo(previous.get(j));
+			}
+			if (order < 0) {
+				dispatch(ENTER, current.get(i++));
+			} else if (order > 0) {
+				dispatch(EXIT, previous.get(j++));
+			} else {
+				dispatch(STAY, current.get(i++));
+				++j;
+			}
+		}
+
+		for (int k = 0; k < previous.size(); ++k) {
+			Contact contact = previous.get(k);
+			contact.a = null;
+			contact.b = null;
+			spare.add(contact);
+		}
+		previous.clear();
+		ArrayList<Contact> swap = previous;
+		previous = current;
+		current = swap;
+	}
+
+	/**
+	 * Forgets every contact without sending exit events.
+	 */
+	void clear() {
+		for (int k = 0; k < previous.size(); ++k) {
+			previous.get(k).a = null;
+			previous.get(k).b = null;
+		}
+		spare.addAll(previous);
+		previous.clear();
+	}
+
+	private void addContact(Entity e, Entity other) {
+		Contact contact = spare.isEmpty() ? new Contact() : spare.remove(spare.size() - 1);
+		boolean first = e.sequence < other.sequence;
+		contact.a = first ? e : other;
+		contact.b = first ? other : e;
+		contact.sequenceA = contact.a.sequence;
+		contact.sequenceB = contact.b.sequence;
+		current.add(contact);
+	}
+
+	private void dispatch(int kind, Contact contact) {
+		Entity a = contact.a, b = contact.b;
+		switch (kind) {
+			case ENTER:
+				a.onCollisionEnter(b);
+				b.onCollisionEnter(a);
+				break;
+			case STAY:
+				a.onCollisionStay(b);
+				b.onCollisionStay(a);
+				break;
+			default:
+				a.onCollisionExit(b);
+				b.onCollisionExit(a);
+				break;
+		}
+		for (int i = 0; i < listeners.size(); ++i) {
+			CollisionListener listener = listeners.get(i);
+			if (kind == ENTER) {
+				listener.onCollisionEnter(a, b);
+			} else if (kind == STAY) {
+				listener.onCollisionStay(a, b);
+			} else {
+				listener.onCollisionExit(a, b);
+			}
+		}
+	}
+}
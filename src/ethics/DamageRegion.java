@@ -0,0 +1,132 @@
+package ethics;
+
+/**
+ * The parts of a display that changed since the last frame, kept as a small
+ * number of rectangles in screen coordinates. Overlapping rectangles are
+ * merged, and once the limit is reached new rectangles are merged into the one
+ * that grows the least. The whole view can also be marked as damaged.
+ *
+ * @author Jonathan Cooper
+ */
+class DamageRegion {
+
+	private static final int MAX_RECTANGLES = 8;
+
+	private final int[] minX = new int[MAX_RECTANGLES];
+	private final int[] minY = new int[MAX_RECTANGLES];
+	private final int[] maxX = new int[MAX_RECTANGLES];
+	private final int[] maxY = new int[MAX_RECTANGLES];
+	private int count = 0;
+	private boolean full = true;
+
+	/**
+	 * Marks a rectangle as damaged.
+	 *
+	 * @param x Left of the rectangle.
+	 * @param y Top of the rectangle.
+	 * @param width Width of the rectangle.
+	 * @param height Height of the rectangle.
+	 */
+	void add(int x, int y, int width, int height) {
+		if (full || width <= 0 || height <= 0) {
+			return;
+		}
+		int x1 = x, y1 = y, x2 = x + width, y2 = y + height;
+		for (int i = 0; i < count; ++i) {
+			if (x1 <= maxX[i] && minX[i] <= x2 && y1 <= maxY[i] && minY[i] <= y2) {
+				x1 = Math.min(x1, minX[i]);
+				y1 = Math.min(y1, minY[i]);
+				x2 = Math.max(x2, maxX[i]);
+				y2 = Math.max(y2, maxY[i]);
+				removeAt(i);
+				i = -1;
+			}
+		}
+		if (count == MAX_RECTANGLES) {
+			int best = 0;
+			long bestGrowth = Long.MAX_VALUE;
+			for (int i = 0; i < count; ++i) {
+				long merged = (long) (Math.max(x2, maxX[i]) - Math.min(x1, minX[i]))
+						* (Math.max(y2, maxY[i]) - Math.min(y1, minY[i]));
+				long growth = merged - (long) (maxX[i] - minX[i]) * (maxY[i] - minY[i]);
+				if (growth < bestGrowth) {
+					bestGrowth = growth;
+					best = i;
+				}
+			}
+			x1 = Math.min(x1, minX[best]);
+			y1 = Math.min(y1, minY[best]);
+			x2 = Math.max(x2, maxX[best]);
+			y2 = Math.max(y2, maxY[best]);
+			removeAt(best);
+			add(x1, y1, x2 - x1, y2 - y1);
+			return;
+		}
+		minX[count] = x1;
+		minY[count] = y1;
+		maxX[count] = x2;
+		maxY[count] = y2;
+		++count;
+	}
+
+	/**
+	 * Marks everything as damaged.
+	 */
+	void addAll() {
+		full = true;
+		count = 0;
+	}
+
+	/**
+	 * Forgets all damage, called once a frame has been drawn.
+	 */
+	void clear() {
+		full = false;
+		count = 0;
+	}
+
+	boolean isFull() {
+		return full;
+	}
+
+	boolean isEmpty() {
+		return !full && count == 0;
+	}
+
+	int getCount() {
+		return count;
+	}
+
+	int getX(int i) {
+		return minX[i];
+	}
+
+	int getY(int i) {
+		return minY[i];
+	}
+
+	int getWidth(int i) {
+		return maxX[i] - minX[i];
+	}
+
+	int getHeight(int i) {
+		return maxY[i] - minY[i];
+	}
+
+	/**
+	 * Returns true if a rectangle overlaps a damaged rectangle.
+	 *
+	 * @param i Index of the damaged rectangle.
+	 */
+	boolean intersects(int i, int x, int y, int width, int height) {
+		return x < maxX[i] && minX[i] < x + width && y < maxY[i] && minY[i] < y + height;
+	}
+
+	private void removeAt(int i) {
+		--count;
+		minX[i] = minX[count];
+		minY[i] = minY[count];
+		maxX[i] = maxX[count];
+		maxY[i] = maxY[count];
+	}
+}
@@ -3,10 +3,13 @@ package ethics;
 import ethics.events.GameKeyEvent;
 import ethics.events.GameListener;
 import ethics.events.GameMouseEvent;
-import java.awt.Color;
+import java.awt.BorderLayout;
+import java.awt.Canvas;
+import java.awt.Component;
 import java.awt.Container;
 import java.awt.Dimension;
 import java.awt.Graphics;
+import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
@@ -14,7 +17,8 @@ import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
-import java.awt.image.BufferedImage;
+import java.awt.image.BufferStrategy;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import javax.swing.JFrame;
 import javax.swing.Timer;
 
@@ -22,23 +26,55 @@ import javax.swing.Timer;
  * Contains all windowing. This class controls how the game should be
  * shown to the user and handles user input. It routes regular swing input
  * through a game listener. This class has built-in double buffering and
- * relies on a Scene object to know what to draw.
+ * relies on a Scene object to know what to draw. Frames are rendered to a
+ * persistent back buffer that is only recreated when its contents are lost.
+ * The back buffer has the resolution of the game and is scaled onto the
+ * window according to a ScalingMode. Mouse coordinates are converted to the
+ * resolution of the game the same way.
+ * 
+ * By default updates and repaints are driven by a swing timer. When the game
+ * loop is enabled, a dedicated GameLoop thread updates the game at a fixed
+ * rate and renders independently of it, and the event dispatch thread only
+ * delivers input, which is queued until the next update.
  * 
  * @author Jonathan Cooper
  */
 public class Display extends Container implements ActionListener, MouseListener, MouseMotionListener, KeyListener {
-	private Color DEFAULT_BACKGROUND = new Color(0, 0, 0);
-	
     private JFrame jframe;
     private int resolutionX;
     private int resolutionY;
     private Scene scene = null;
+    private BackBuffer backBuffer;
+    private Canvas canvas = null;
+	
+	/**
+	 * Scales the back buffer onto the window.
+	 */
+    private final OutputScaler scaler;
 	
 	/**
 	 * Used to manage game repainting at a fairly consistent rate.
 	 */
     private Timer refreshTimer;
 	
+	/**
+	 * Used instead of the refresh timer when the game loop is enabled. The
+	 * loop renders actively to the canvas.
+	 */
+    private GameLoop gameLoop;
+    private boolean gameLoopEnabled = false;
+	
+	/**
+	 * Input received on the event dispatch thread while the game loop is
+	 * running. Delivered to the game listener at the start of each update.
+	 */
+    private ConcurrentLinkedQueue<Object> pendingInput = new ConcurrentLinkedQueue<>();
+	
+	/**
+	 * Timing of updates and frames.
+	 */
+    private final FrameStats frameStats = new FrameStats();
+	
 	/**
 	 * 
 	 */
@@ -56,7 +92,10 @@ public class Display extends Container implements ActionListener, MouseListener,
         resolutionX = width;
         resolutionY = height;
         setPreferredSize(new Dimension(width, height));
+        backBuffer = new BackBuffer(width, height);
+        scaler = new OutputScaler(width, height);
         refreshTimer = new Timer(40, this);
+        gameLoop = new GameLoop(this, 25, 60);
     }
     
 	/**
@@ -96,24 +135,74 @@ public class Display extends Container implements ActionListener, MouseListener,
     }
     
 	/**
-	 * Paints the display using the associated scene.
+	 * Sets how frames are scaled onto the window.
+	 * 
+	 * @param scalingMode New scaling mode.
+	 */
+    public void setScalingMode(ScalingMode scalingMode) {
+        scaler.setMode(scalingMode);
+        backBuffer.setRasterRequired(scaler.needsRaster());
+        repaint();
+    }
+    
+	/**
+	 * Gets how frames are scaled onto the window.
+	 * 
+	 * @return Scaling mode, STRETCH unless set otherwise.
+	 */
+    public ScalingMode getScalingMode() {
+        return scaler.getMode();
+    }
+    
+	/**
+	 * Gets the timing statistics of this display.
+	 * 
+	 * @return Frame statistics.
+	 */
+    public FrameStats getFrameStats() {
+        return frameStats;
+    }
+    
+	/**
+	 * Paints the display by scaling the back buffer onto it. The frame is
+	 * normally rendered by the refresh timer, but is rendered here if the
+	 * back buffer has nothing to show. While the game loop is running, frames
+	 * are shown by the loop instead.
 	 * 
 	 * @param g Graphics object to paint to.
 	 */
     @Override
     public void paint(Graphics g) {
-        BufferedImage buffer = new BufferedImage(resolutionX, resolutionY, BufferedImage.TYPE_INT_ARGB);
-        Graphics graphics = buffer.getGraphics();
-        Color oldColor = graphics.getColor();
-		if (scene != null)
-			graphics.setColor(scene.getBackgroundColor());
-		else
-			graphics.setColor(DEFAULT_BACKGROUND);
-        graphics.fillRect(0, 0, resolutionX, resolutionY);
-        graphics.setColor(oldColor);
-        if (scene != null)
-            scene.draw(graphics);
-        g.drawImage(buffer, 0, 0, getWidth(), getHeight(), null);
+        if (gameLoop.isRunning())
+            return;
+        do {
+            if (!backBuffer.isValid(getGraphicsConfiguration()))
+                FramePipeline.render(backBuffer, getGraphicsConfiguration(), scene, frameStats);
+            long start = System.nanoTime();
+            scaler.present(g, backBuffer.getImage(), getWidth(), getHeight());
+            frameStats.record(FramePhase.PRESENT, System.nanoTime() - start);
+        } while (backBuffer.contentsLost());
+    }
+    
+	/**
+	 * Repaints the part of the display that changed in the last frame. The
+	 * whole display is repainted unless the scene tracks damage.
+	 */
+    private void repaintDamage() {
+        if (scene == null || !scene.isDamageTracking()) {
+            jframe.repaint();
+            return;
+        }
+        if (scene.getDamagedWidth() == 0 || scene.getDamagedHeight() == 0)
+            return;
+        scaler.layout(getWidth(), getHeight());
+        double scaleX = (double) scaler.getDestWidth() / resolutionX;
+        double scaleY = (double) scaler.getDestHeight() / resolutionY;
+        int x = scaler.getDestX() + (int) Math.floor(scene.getDamagedX() * scaleX);
+        int y = scaler.getDestY() + (int) Math.floor(scene.getDamagedY() * scaleY);
+        int right = scaler.getDestX() + (int) Math.ceil((scene.getDamagedX() + scene.getDamagedWidth()) * scaleX);
+        int bottom = scaler.getDestY() + (int) Math.ceil((scene.getDamagedY() + scene.getDamagedHeight()) * scaleY);
+        repaint(x, y, right - x, bottom - y);
     }
     
 	/**
@@ -126,10 +215,26 @@ public class Display extends Container implements ActionListener, MouseListener,
 	 * @return New display
 	 */
     public static Display createWindow(String title, int width, int height, boolean fullscreen) {
+        return createWindow(title, width, height, fullscreen, ScalingMode.STRETCH);
+    }
+    
+	/**
+	 * Creates a new display that scales the game view onto the window in a
+	 * given way.
+	 * 
+	 * @param title The window caption for the new window.
+	 * @param width The width of the game view.
+	 * @param height The height of the game view.
+	 * @param fullscreen If the window should be a full screen window.
+	 * @param scalingMode How the game view is scaled onto the window.
+	 * @return New display
+	 */
+    public static Display createWindow(String title, int width, int height, boolean fullscreen, ScalingMode scalingMode) {
         Display display;
         JFrame frame = new JFrame();
         frame.setTitle(title);
         display = new Display(frame, width, height);
+        display.setScalingMode(scalingMode);
         frame.setContentPane(display);
         if (fullscreen) {
             frame.setUndecorated(true);
@@ -142,31 +247,184 @@ public class Display extends Container implements ActionListener, MouseListener,
         return display;
     }
     
+	/**
+	 * Loads the game and shows the window. With the game loop enabled, the
+	 * display is covered by a canvas that is rendered to actively through a
+	 * page flipping buffer strategy.
+	 */
     public void start() {
         if (gameListener != null)
             gameListener.onLoad();
+        if (gameLoopEnabled) {
+            canvas = new Canvas();
+            canvas.setIgnoreRepaint(true);
+            canvas.setPreferredSize(getPreferredSize());
+            setLayout(new BorderLayout());
+            add(canvas, BorderLayout.CENTER);
+        }
         jframe.setVisible(true);
-        requestFocus();
-        addMouseListener(this);
-        addMouseMotionListener(this);
-        addKeyListener(this);
-        refreshTimer.start();
+        Component inputSource = canvas != null ? canvas : this;
+        inputSource.requestFocus();
+        inputSource.addMouseListener(this);
+        inputSource.addMouseMotionListener(this);
+        inputSource.addKeyListener(this);
+        updateTargetFrameTime();
+        if (canvas != null) {
+            canvas.createBufferStrategy(2);
+            gameLoop.start();
+        } else {
+            refreshTimer.start();
+        }
+    }
+    
+	/**
+	 * Tells the frame statistics how often frames should be rendered by
+	 * whichever of the timer or the game loop drives the display.
+	 */
+    private void updateTargetFrameTime() {
+        if (gameLoopEnabled)
+            frameStats.setTargetFrameNanos(gameLoop.getRenderInterval());
+        else
+            frameStats.setTargetFrameNanos(refreshTimer.getDelay() * 1000000L);
     }
     
 	/**
-	 * Adjusts the internal timer to the desired FPS.
+	 * Chooses between the swing timer and the dedicated game loop thread.
+	 * Must be called before start().
+	 * 
+	 * @param gameLoopEnabled If true, the game loop thread drives the game.
+	 */
+    public void setGameLoopEnabled(boolean gameLoopEnabled) {
+        this.gameLoopEnabled = gameLoopEnabled;
+    }
+    
+	/**
+	 * Gets the game loop used when the game loop is enabled.
+	 * 
+	 * @return Game loop of this display.
+	 */
+    public GameLoop getGameLoop() {
+        return gameLoop;
+    }
+    
+	/**
+	 * Adjusts the internal timer to the desired FPS. Sets both the update
+	 * rate and the render rate of the game loop.
 	 * 
 	 * @param fps New FPS
 	 */
     public void setFPS(int fps) {
         refreshTimer.setDelay(1000/fps);
+        setUpdateRate(fps);
+        setRenderRate(fps);
+        updateTargetFrameTime();
+    }
+    
+	/**
+	 * Sets how many fixed updates per second the game loop runs.
+	 * 
+	 * @param updateRate Updates per second.
+	 */
+    public void setUpdateRate(int updateRate) {
+        gameLoop.setUpdateRate(updateRate);
+    }
+    
+	/**
+	 * Sets the maximum frames per second rendered by the game loop.
+	 * 
+	 * @param renderRate Frames per second, zero or less for no cap.
+	 */
+    public void setRenderRate(int renderRate) {
+        gameLoop.setRenderRate(renderRate);
+        updateTargetFrameTime();
     }
     
     @Override
     public void actionPerformed(ActionEvent evt) {
-        if (gameListener != null)
-            gameListener.onUpdate();
-        jframe.repaint();
+        update();
+        FramePipeline.render(backBuffer, getGraphicsConfiguration(), scene, frameStats);
+        repaintDamage();
+    }
+    
+	/**
+	 * Runs a single game update, delivering any input queued by the game
+	 * loop first.
+	 */
+    void update() {
+        Object input;
+        while ((input = pendingInput.poll()) != null) {
+            if (gameListener == null)
+                continue;
+            if (input instanceof GameMouseEvent)
+                gameListener.onMouseInput((GameMouseEvent) input);
+            else
+                gameListener.onKeyInput((GameKeyEvent) input);
+        }
+        double dt = gameLoopEnabled ? gameLoop.getStepSeconds() : refreshTimer.getDelay() / 1000.0;
+        FramePipeline.update(gameListener, scene, frameStats, dt);
+    }
+    
+	/**
+	 * Renders a frame from the game loop thread to the canvas using its
+	 * buffer strategy.
+	 * 
+	 * @param alpha How far between the last and next update this frame is.
+	 */
+    void render(double alpha) {
+        if (scene != null)
+            scene.setInterpolation(alpha);
+        BufferStrategy strategy = canvas != null ? canvas.getBufferStrategy() : null;
+        if (strategy == null)
+            return;
+        do {
+            long start;
+            do {
+                FramePipeline.render(backBuffer, canvas.getGraphicsConfiguration(), scene, frameStats);
+                start = System.nanoTime();
+                Graphics g = strategy.getDrawGraphics();
+                scaler.present(g, backBuffer.getImage(), canvas.getWidth(), canvas.getHeight());
+                g.dispose();
+            } while (strategy.contentsRestored() || backBuffer.contentsLost());
+            strategy.show();
+            Toolkit.getDefaultToolkit().sync();
+            frameStats.record(FramePhase.PRESENT, System.nanoTime() - start);
+        } while (strategy.contentsLost());
+    }
+    
+	/**
+	 * Delivers a mouse event now, or queues it for the next update when the
+	 * game loop is running.
+	 */
+    private void dispatchMouseInput(GameMouseEvent event) {
+        if (gameLoop.isRunning())
+            pendingInput.add(event);
+        else if (gameListener != null)
+            gameListener.onMouseInput(event);
+    }
+    
+	/**
+	 * Delivers a key event now, or queues it for the next update when the
+	 * game loop is running.
+	 */
+    private void dispatchKeyInput(GameKeyEvent event) {
+        if (gameLoop.isRunning())
+            pendingInput.add(event);
+        else if (gameListener != null)
+            gameListener.onKeyInput(event);
+    }
+
+	/**
+	 * Converts the x coordinate of a mouse event to the game view.
+	 */
+    private int toViewX(MouseEvent e) {
+        return scaler.toSourceX(e.getX(), e.getComponent().getWidth(), e.getComponent().getHeight());
+    }
+    
+	/**
+	 * Converts the y coordinate of a mouse event to the game view.
+	 */
+    private int toViewY(MouseEvent e) {
+        return scaler.toSourceY(e.getY(), e.getComponent().getWidth(), e.getComponent().getHeight());
     }
 
     @Override
@@ -174,14 +432,12 @@ public class Display extends Container implements ActionListener, MouseListener,
 
     @Override
     public void mousePressed(MouseEvent e) {
-        if (gameListener != null)
-            gameListener.onMouseInput(GameMouseEvent.createMouseEvent(e.getButton(), true, e.getX(), e.getY()));
+        dispatchMouseInput(GameMouseEvent.createMouseEvent(e.getButton(), true, toViewX(e), toViewY(e)));
     }
 
     @Override
     public void mouseReleased(MouseEvent e) {
-        if (gameListener != null)
-            gameListener.onMouseInput(GameMouseEvent.createMouseEvent(e.getButton(), false, e.getX(), e.getY()));
+        dispatchMouseInput(GameMouseEvent.createMouseEvent(e.getButton(), false, toViewX(e), toViewY(e)));
     }
 
     @Override
@@ -192,14 +448,12 @@ public class Display extends Container implements ActionListener, MouseListener,
 
     @Override
     public void mouseDragged(MouseEvent e) {
-        if (gameListener != null)
-            gameListener.onMouseInput(GameMouseEvent.createMouseMotionEvent(e.getX(), e.getY()));
+        dispatchMouseInput(GameMouseEvent.createMouseMotionEvent(toViewX(e), toViewY(e)));
     }
 
     @Override
     public void mouseMoved(MouseEvent e) {
-        if (gameListener != null)
-            gameListener.onMouseInput(GameMouseEvent.createMouseMotionEvent(e.getX(), e.getY()));
+        dispatchMouseInput(GameMouseEvent.createMouseMotionEvent(toViewX(e), toViewY(e)));
     }
 
     @Override
@@ -207,13 +461,11 @@ public class Display extends Container implements ActionListener, MouseListener,
 
     @Override
     public void keyPressed(KeyEvent e) {
-        if (gameListener != null)
-            gameListener.onKeyInput(new GameKeyEvent(e.getKeyCode(), true));
+        dispatchKeyInput(new GameKeyEvent(e.getKeyCode(), true));
     }
 
     @Override
     public void keyReleased(KeyEvent e) {
-        if (gameListener != null)
-            gameListener.onKeyInput(new GameKeyEvent(e.getKeyCode(), false));
+        dispatchKeyInput(new GameKeyEvent(e.getKeyCode(), false));
     }
 }
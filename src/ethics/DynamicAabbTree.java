@@ -0,0 +1,481 @@
+package ethics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * A broadphase that keeps its entities in a balanced binary tree of bounding
+ * boxes. Each entity is a leaf holding its bounds grown by a margin, so an
+ * entity that moves a little stays inside its leaf and costs nothing to
+ * update. Leaves are inserted next to the sibling that grows the tree the
+ * least and the tree is rebalanced with rotations on the way back up, like
+ * an AVL tree. Unlike a grid, a query only looks at subtrees near it no
+ * matter how the sizes of the entities vary, which makes the tree the better
+ * choice for levels that mix tiny projectiles with screen sized platforms.
+ *
+ * Nodes are kept in parallel arrays and reused through a free list, so
+ * moving entities around does not allocate.
+ *
+ * @author Jonathan Cooper
+ */
+public class DynamicAabbTree implements BroadPhase {
+
+	private static final int NULL = -1;
+
+	private final double margin;
+	private double[] minX, minY, maxX, maxY;
+	private int[] parent, child1, child2, height;
+	private Entity[] entities;
+	private int root = NULL;
+	private int free = NULL;
+
+	/**
+	 * State of the ray being cast, read by castNode.
+	 */
+	private double rayX, rayY, rayDX, rayDY;
+	private int rayCategories;
+	private RaycastHit rayHit;
+
+	/**
+	 * Creates a tree whose leaves are 4 units larger than their entities on
+	 * every side.
+	 */
+	public DynamicAabbTree() {
+		this(4);
+	}
+
+	/**
+	 * Creates a tree.
+	 *
+	 * @param margin How far the box of a leaf reaches past its entity on
+	 * every side. Larger margins make moving cheaper and queries less exact.
+	 */
+	public DynamicAabbTree(double margin) {
+		if (margin < 0) {
+			throw new IllegalArgumentException("Margin can't be negative");
+		}
+		this.margin = margin;
+		minX = new double[0];
+		minY = new double[0];
+		maxX = new double[0];
+		maxY = new double[0];
+		parent = new int[0];
+		child1 = new int[0];
+		child2 = new int[0];
+		height = new int[0];
+		entities = new Entity[0];
+		grow(16);
+	}
+
+	/**
+	 * Gets the height of the tree, 0 for a single leaf.
+	 *
+	 * @return Height of the root, or -1 if the tree is empty.
+	 */
+	public int getHeight() {
+		return root == NULL ? -1 : height[root];
+	}
+
+	@Override
+	public void insert(Entity e) {
+		int leaf = allocate();
+		entities[leaf] = e;
+		fatten(leaf, e);
+		e.proxy = leaf;
+		insertLeaf(leaf);
+	}
+
+	@Override
+	public void remove(Entity e) {
+		removeLeaf(e.proxy);
+		release(e.proxy);
+		e.proxy = NULL;
+	}
+
+	/**
+	 * Moves the leaf of an entity if it left the box of its leaf. Moves that
+	 * stay inside the margin only cost this check.
+	 */
+	@Override
+	public void update(Entity e) {
+		int leaf = e.proxy;
+		double x = e.getX(), y = e.getY();
+		if (minX[leaf] <= x && minY[leaf] <= y
+				&& x + e.getWidth() <= maxX[leaf] && y + e.getHeight() <= maxY[leaf]) {
+			return;
+		}
+		removeLeaf(leaf);
+		fatten(leaf, e);
+		insertLeaf(leaf);
+	}
+
+	@Override
+	public void clear() {
+		root = NULL;
+		free = NULL;
+		for (int node = parent.length - 1; node >= 0; --node) {
+			entities[node] = null;
+			parent[node] = free;
+			height[node] = -1;
+			free = node;
+		}
+	}
+
+	@Override
+	public void query(double minX, double minY, double maxX, double maxY, int categories, ArrayList<Entity> out) {
+		if (root != NULL) {
+			queryNode(root, minX, minY, maxX, maxY, categories, out);
+		}
+	}
+
+	private void queryNode(int node, double qMinX, double qMinY, double qMaxX, double qMaxY, int categories,
+			ArrayList<Entity> out) {
+		if (maxX[node] < qMinX || minX[node] > qMaxX || maxY[node] < qMinY || minY[node] > qMaxY) {
+			return;
+		}
+		Entity e = entities[node];
+		if (e == null) {
+			queryNode(child1[node], qMinX, qMinY, qMaxX, qMaxY, categories, out);
+			queryNode(child2[node], qMinX, qMinY, qMaxX, qMaxY, categories, out);
+		} else if ((e.getCollisionCategory() & categories) != 0
+				&& e.getX() < qMaxX && e.getX() + e.getWidth() > qMinX
+				&& e.getY() < qMaxY && e.getY() + e.getHeight() > qMinY) {
+			out.add(e);
+		}
+	}
+
+	@Override
+	public int query(double minX, double minY, double maxX, double maxY, int categories, Consumer<? super Entity> sink) {
+		return root == NULL ? 0 : queryNode(root, minX, minY, maxX, maxY, categories, sink);
+	}
+
+	private int queryNode(int node, double qMinX, double qMinY, double qMaxX, double qMaxY, int categories,
+			Consumer<? super Entity> sink) {
+		if (maxX[node] < qMinX || minX[node] > qMaxX || maxY[node] < qMinY || minY[node] > qMaxY) {
+			return 0;
+		}
+		Entity e = entities[node];
+		if (e == null) {
+			return queryNode(child1[node], qMinX, qMinY, qMaxX, qMaxY, categories, sink)
+					+ queryNode(child2[node], qMinX, qMinY, qMaxX, qMaxY, categories, sink);
+		}
+		if ((e.getCollisionCategory() & categories) != 0
+				&& e.getX() < qMaxX && e.getX() + e.getWidth() > qMinX
+				&& e.getY() < qMaxY && e.getY() + e.getHeight() > qMinY) {
+			sink.accept(e);
+			return 1;
+		}
+		return 0;
+	}
+
+	@Override
+	public int queryPoint(double x, double y, int categories, Consumer<? super Entity> sink) {
+		return root == NULL ? 0 : queryPointNode(root, x, y, categories, sink);
+	}
+
+	private int queryPointNode(int node, double x, double y, int categories, Consumer<? super Entity> sink) {
+		if (x < minX[node] || x > maxX[node] || y < minY[node] || y > maxY[node]) {
+			return 0;
+		}
+		Entity e = entities[node];
+		if (e == null) {
+			return queryPointNode(child1[node], x, y, categories, sink)
+					+ queryPointNode(child2[node], x, y, categories, sink);
+		}
+		if ((e.getCollisionCategory() & categories) != 0
+				&& e.getX() <= x && x < e.getX() + e.getWidth() && e.getY() <= y && y < e.getY() + e.getHeight()) {
+			sink.accept(e);
+			return 1;
+		}
+		return 0;
+	}
+
+	/**
+	 * Finds the first entity a ray enters. Subtrees are visited nearest
+	 * first and skipped once the ray reaches their box later than the best
+	 * hit so far.
+	 */
+	@Override
+	public boolean raycast(double originX, double originY, double dX, double dY, double maxDistance,
+			int categories, RaycastHit hit) {
+		hit.clear();
+		if (root != NULL) {
+			rayX = originX;
+			rayY = originY;
+			rayDX = dX;
+			rayDY = dY;
+			rayCategories = categories;
+			rayHit = hit;
+			castNode(root, maxDistance);
+			rayHit = null;
+		}
+		return hit.isHit();
+	}
+
+	private double castNode(int node, double best) {
+		Entity e = entities[node];
+		if (e != null) {
+			return rayHit.offer(e, rayCategories, rayX, rayY, rayDX, rayDY, best);
+		}
+		int first = child1[node], second = child2[node];
+		double firstEntry = entry(first), secondEntry = entry(second);
+		if (secondEntry < firstEntry) {
+			int swap = first;
+			first = second;
+			second = swap;
+			double swapEntry = firstEntry;
+			firstEntry = secondEntry;
+			secondEntry = swapEntry;
+		}
+		if (firstEntry <= best) {
+			best = castNode(first, best);
+		}
+		if (secondEntry <= best) {
+			best = castNode(second, best);
+		}
+		return best;
+	}
+
+	/**
+	 * Gets how far along the ray it enters the box of a node, 0 if it starts
+	 * inside, or infinity if it misses.
+	 */
+	private double entry(int node) {
+		double near = 0, far = Double.POSITIVE_INFINITY;
+		if (rayDX == 0) {
+			if (rayX < minX[node] || rayX > maxX[node]) {
+				return Double.POSITIVE_INFINITY;
+			}
+		} else {
+			double a = (minX[node] - rayX) / rayDX, b = (maxX[node] - rayX) / rayDX;
+			near = Math.max(near, Math.min(a, b));
+			far = Math.min(far, Math.max(a, b));
+		}
+		if (rayDY == 0) {
+			if (rayY < minY[node] || rayY > maxY[node]) {
+				return Double.POSITIVE_INFINITY;
+			}
+		} else {
+			double a = (minY[node] - rayY) / rayDY, b = (maxY[node] - rayY) / rayDY;
+			near = Math.max(near, Math.min(a, b));
+			far = Math.min(far, Math.max(a, b));
+		}
+		return near <= far ? near : Double.POSITIVE_INFINITY;
+	}
+
+	private void fatten(int leaf, Entity e) {
+		minX[leaf] = e.getX() - margin;
+		minY[leaf] = e.getY() - margin;
+		maxX[leaf] = e.getX() + e.getWidth() + margin;
+		maxY[leaf] = e.getY() + e.getHeight() + margin;
+	}
+
+	/**
+	 * Puts a leaf next to the node it adds the least perimeter to, counting
+	 * the growth of every node above it.
+	 */
+	private void insertLeaf(int leaf) {
+		if (root == NULL) {
+			root = leaf;
+			parent[leaf] = NULL;
+			return;
+		}
+		int index = root;
+		while (entities[index] == null) {
+			double area = perimeter(index);
+			double combined = unionPerimeter(index, leaf);
+			double cost = 2 * combined;
+			double inheritance = 2 * (combined - area);
+			double cost1 = childCost(child1[index], leaf) + inheritance;
+			double cost2 = childCost(child2[index], leaf) + inheritance;
+			if (cost < cost1 && cost < cost2) {
+				break;
+			}
+			index = cost1 < cost2 ? child1[index] : child2[index];
+		}
+		int sibling = index;
+		int oldParent = parent[sibling];
+		int newParent = allocate();
+		parent[newParent] = oldParent;
+		setUnion(newParent, leaf, sibling);
+		height[newParent] = height[sibling] + 1;
+		child1[newParent] = sibling;
+		child2[newParent] = leaf;
+		parent[sibling] = newParent;
+		parent[leaf] = newParent;
+		if (oldParent == NULL) {
+			root = newParent;
+		} else if (child1[oldParent] == sibling) {
+			child1[oldParent] = newParent;
+		} else {
+			child2[oldParent] = newParent;
+		}
+		refit(parent[leaf]);
+	}
+
+	private double childCost(int child, int leaf) {
+		double combined = unionPerimeter(child, leaf);
+		return entities[child] != null ? combined : combined - perimeter(child);
+	}
+
+	/**
+	 * Takes a leaf out of the tree. Its parent is dropped and the leaf's
+	 * sibling takes the parent's place.
+	 */
+	private void removeLeaf(int leaf) {
+		if (leaf == root) {
+			root = NULL;
+			return;
+		}
+		int oldParent = parent[leaf];
+		int grandParent = parent[oldParent];
+		int sibling = child1[oldParent] == leaf ? child2[oldParent] : child1[oldParent];
+		if (grandParent == NULL) {
+			root = sibling;
+			parent[sibling] = NULL;
+			release(oldParent);
+			return;
+		}
+		if (child1[grandParent] == oldParent) {
+			child1[grandParent] = sibling;
+		} else {
+			child2[grandParent] = sibling;
+		}
+		parent[sibling] = grandParent;
+		release(oldParent);
+		refit(grandParent);
+	}
+
+	/**
+	 * Balances the nodes from a node up to the root and brings their boxes
+	 * and heights up to date.
+	 */
+	private void refit(int index) {
+		while (index != NULL) {
+			index = balance(index);
+			int a = child1[index], b = child2[index];
+			height[index] = 1 + Math.max(height[a], height[b]);
+			setUnion(index, a, b);
+			index = parent[index];
+		}
+	}
+
+	/**
+	 * Rotates the taller child of a node above it if the heights of its
+	 * children differ by more than one.
+	 *
+	 * @return The node now in the place of the given one.
+	 */
+	private int balance(int a) {
+		if (entities[a] != null || height[a] < 2) {
+			return a;
+		}
+		int b = child1[a], c = child2[a];
+		int difference = height[c] - height[b];
+		if (difference > 1) {
+			return rotateUp(a, c, b, false);
+		}
+		if (difference < -1) {
+			return rotateUp(a, b, c, true);
+		}
+		return a;
+	}
+
+	/**
+	 * Moves a child up into the place of its parent. The taller child of the
+	 * one moved up stays with it and the shorter one goes to the old parent.
+	 *
+	 * @param a Parent that is moved down.
+	 * @param up Child of a that is moved up.
+	 * @param other The other child of a, which stays with it.
+	 * @param upIsFirst True if up is the first child of a.
+	 * @return The child that was moved up.
+	 */
+	private int rotateUp(int a, int up, int other, boolean upIsFirst) {
+		int f = child1[up], g = child2[up];
+		child1[up] = a;
+		parent[up] = parent[a];
+		parent[a] = up;
+		if (parent[up] == NULL) {
+			root = up;
+		} else if (child1[parent[up]] == a) {
+			child1[parent[up]] = up;
+		} else {
+			child2[parent[up]] = up;
+		}
+		int kept = height[f] > height[g] ? f : g;
+		int moved = kept == f ? g : f;
+		child2[up] = kept;
+		if (upIsFirst) {
+			child1[a] = moved;
+		} else {
+			child2[a] = moved;
+		}
+		parent[moved] = a;
+		setUnion(a, other, moved);
+		height[a] = 1 + Math.max(height[other], height[moved]);
+		setUnion(up, a, kept);
+		height[up] = 1 + Math.max(height[a], height[kept]);
+		return up;
+	}
+
+	private void setUnion(int node, int a, int b) {
+		minX[node] = Math.min(minX[a], minX[b]);
+		minY[node] = Math.min(minY[a], minY[b]);
+		maxX[node] = Math.max(maxX[a], maxX[b]);
+		maxY[node] = Math.max(maxY[a], maxY[b]);
+	}
+
+	private double perimeter(int node) {
+		return 2 * ((maxX[node] - minX[node]) + (maxY[node] - minY[node]));
+	}
+
+	private double unionPerimeter(int a, int b) {
+		double spanX = Math.max(maxX[a], maxX[b]) - Math.min(minX[a], minX[b]);
+		double spanY = Math.max(maxY[a], maxY[b]) - Math.min(minY[a], minY[b]);
+		return 2 * (spanX + spanY);
+	}
+
+	private int allocate() {
+		if (free == NULL) {
+			grow(parent.length * 2);
+		}
+		int node = free;
+		free = parent[node];
+		parent[node] = NULL;
+		child1[node] = NULL;
+		child2[node] = NULL;
+		height[node] = 0;
+		entities[node] = null;
+		return node;
+	}
+
+	private void release(int node) {
+		entities[node] = null;
+		height[node] = -1;
+		parent[node] = free;
+		free = node;
+	}
+
+	/**
+	 * Makes room for more nodes and adds the new ones to the free list.
+	 */
+	private void grow(int capacity) {
+		int oldCapacity = parent.length;
+		minX = Arrays.copyOf(minX, capacity);
+		minY = Arrays.copyOf(minY, capacity);
+		maxX = Arrays.copyOf(maxX, capacity);
+		maxY = Arrays.copyOf(maxY, capacity);
+		parent = Arrays.copyOf(parent, capacity);
+		child1 = Arrays.copyOf(child1, capacity);
+		child2 = Arrays.copyOf(child2, capacity);
+		height = Arrays.copyOf(height, capacity);
+		entities = Arrays.copyOf(entities, capacity);
+		for (int node = capacity - 1; node >= oldCapacity; --node) {
+			height[node] = -1;
+			parent[node] = free;
+			free = node;
+		}
+	}
+}
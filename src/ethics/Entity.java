@@ -2,25 +2,110 @@ package ethics;
 
 import ethics.drawables.Drawable;
 import java.awt.Graphics;
+import java.awt.Image;
 import java.util.ArrayList;
 
 /**
  * A screen object. All things in drawn to a display are attached to an Entity
  * as a Drawable. AABB collision is supported by using BoundBox objects
  * internally in each Entity. An entity may be set to non-collidable and make it
- * not have any effect for collisions.
+ * not have any effect for collisions. Entities also belong to collision
+ * categories, given as bits, and carry a mask of the categories they collide
+ * with. Two entities only collide if each one's category is in the other's
+ * mask, so the scene can skip pairs that can't collide before comparing their
+ * bounds. Entities can be told when they start touching, keep touching and
+ * stop touching others through collision events, and triggers are entities
+ * that get those events without ever blocking movement.
  *
  * @author Jonathan Cooper
  */
 public class Entity {
 
+	/**
+	 * Category entities belong to unless set otherwise.
+	 */
+	public static final int DEFAULT_CATEGORY = 1;
+
+	/**
+	 * Mask of every collision category.
+	 */
+	public static final int ALL_CATEGORIES = -1;
+
 	private double x;
 	private double y;
 	private int width;
 	private int height;
 	private Drawable drawable;
-	private BoundingBox boundingBox;
 	private boolean collidable = true;
+	private int collisionCategory = DEFAULT_CATEGORY;
+	private int collisionMask = ALL_CATEGORIES;
+	private boolean screenSpace = false;
+	private boolean trigger = false;
+	private boolean staticGeometry = false;
+
+	/**
+	 * Whether collision events were turned on for the entity itself, apart
+	 * from it being a trigger. A store copies it when the entity joins it.
+	 */
+	boolean collisionEvents = false;
+
+	/**
+	 * Scene this entity was added to, kept up to date by the scene.
+	 */
+	Scene scene = null;
+	RenderLayer layer = null;
+	long sequence;
+
+	/**
+	 * Store holding the values of the entity instead of its own fields, and
+	 * the entity's index in it.
+	 */
+	EntityStore store = null;
+	int id = -1;
+
+	/**
+	 * Pool the entity was taken from and whether it is back in it.
+	 */
+	EntityPool<?> pool = null;
+	boolean pooled = false;
+	private boolean despawnable = false;
+
+	/**
+	 * Place of the entity in its scene's list of despawnable entities, or -1
+	 * if it is not in it.
+	 */
+	int despawnSlot = -1;
+
+	/**
+	 * Whether the scene keeps the entity in its broadphase, and the state the
+	 * broadphases of this package keep in it: the spatial hash cells it is
+	 * listed in, and its node or slot in a tree or list.
+	 */
+	boolean indexed = false;
+	int cellMinX, cellMinY, cellMaxX, cellMaxY;
+	int queryStamp;
+	int proxy = -1;
+
+	/**
+	 * Stamp of the last list-restricted query of the scene that listed this
+	 * entity, so membership of the list is checked without searching it.
+	 */
+	int amongStamp;
+
+	/**
+	 * Chunk of the scene's static colliders the entity was baked into, or
+	 * null if it is not baked.
+	 */
+	StaticColliders.Chunk staticChunk = null;
+
+	/**
+	 * Where the entity was last drawn and the image it drew, used by scenes
+	 * that track damage.
+	 */
+	boolean drawn = false;
+	boolean redraw = false;
+	int drawnX, drawnY, drawnWidth, drawnHeight;
+	Image drawnImage = null;
 
 	/**
 	 * Creates a new entity for use in a scene.
@@ -37,7 +122,6 @@ public class Entity {
 		this.y = y;
 		this.width = width;
 		this.height = height;
-		boundingBox = new BoundingBox((int) x, (int) y, height, width);
 	}
 
 	/**
@@ -56,6 +140,9 @@ public class Entity {
 	 */
 	public void setDrawable(Drawable drawable) {
 		this.drawable = drawable;
+		if (scene != null) {
+			scene.entityChanged(this);
+		}
 	}
 
 	/**
@@ -65,7 +152,150 @@ public class Entity {
 	 * @param collidable If collision should be on for this entity.
 	 */
 	public void setCollidable(boolean collidable) {
-		this.collidable = collidable;
+		if (store != null) {
+			setFlag(EntityStore.COLLIDABLE, collidable);
+		} else {
+			this.collidable = collidable;
+		}
+		collisionChanged();
+	}
+
+	/**
+	 * Turns the entity into a trigger or back. A trigger never blocks the
+	 * movement of other entities and is not counted by collidesWithAny, but
+	 * still gets collision events, like an area that ends the level once the
+	 * player walks into it.
+	 *
+	 * @param trigger If true, the entity is a trigger.
+	 */
+	public void setTrigger(boolean trigger) {
+		if (store != null) {
+			setFlag(EntityStore.TRIGGER, trigger);
+		} else {
+			this.trigger = trigger;
+		}
+		collisionChanged();
+	}
+
+	/**
+	 * Returns true if the entity is a trigger.
+	 *
+	 * @return True if the entity never blocks movement.
+	 */
+	public boolean isTrigger() {
+		return store != null ? (store.flags[id] & EntityStore.TRIGGER) != 0 : trigger;
+	}
+
+	/**
+	 * Turns collision events on or off for the entity. While on, the scene
+	 * finds what the entity touches on every update and calls
+	 * onCollisionEnter, onCollisionStay and onCollisionExit on both entities
+	 * of each pair. Triggers always get collision events.
+	 *
+	 * @param collisionEvents If true, contacts of the entity are reported.
+	 */
+	public void setCollisionEvents(boolean collisionEvents) {
+		if (store != null) {
+			setFlag(EntityStore.COLLISION_EVENTS, collisionEvents);
+		} else {
+			this.collisionEvents = collisionEvents;
+		}
+	}
+
+	/**
+	 * Returns true if the scene reports the contacts of this entity.
+	 *
+	 * @return True if collision events are on or the entity is a trigger.
+	 */
+	public boolean hasCollisionEvents() {
+		if (store != null) {
+			return (store.flags[id] & (EntityStore.COLLISION_EVENTS | EntityStore.TRIGGER)) != 0;
+		}
+		return collisionEvents || trigger;
+	}
+
+	/**
+	 * Lets the scene despawn the entity once it is far enough outside the
+	 * view. A despawned entity taken from an EntityPool is given back to it,
+	 * others are only removed from the scene.
+	 *
+	 * @param despawnable If true, the entity can be despawned.
+	 */
+	public void setDespawnable(boolean despawnable) {
+		if (despawnable != this.despawnable) {
+			this.despawnable = despawnable;
+			if (scene != null) {
+				scene.despawnableChanged(this);
+			}
+		}
+	}
+
+	public boolean isDespawnable() {
+		return despawnable;
+	}
+
+	/**
+	 * Marks the entity as static level geometry that never moves, like the
+	 * blocks of a floor. The scene merges touching static entities of the
+	 * same collision category and mask into larger boxes, and blocking tests
+	 * against them go through those boxes. A static entity can still be
+	 * moved or removed, but that bakes the boxes around it again.
+	 *
+	 * @param staticGeometry If true, the entity is static.
+	 */
+	public void setStatic(boolean staticGeometry) {
+		this.staticGeometry = staticGeometry;
+		collisionChanged();
+	}
+
+	public boolean isStatic() {
+		return staticGeometry;
+	}
+
+	/**
+	 * Sets the collision categories the entity belongs to.
+	 *
+	 * @param collisionCategory Bits of the categories, usually a single bit.
+	 */
+	public void setCollisionCategory(int collisionCategory) {
+		if (store != null) {
+			store.category[id] = collisionCategory;
+		} else {
+			this.collisionCategory = collisionCategory;
+		}
+		collisionChanged();
+	}
+
+	/**
+	 * Gets the collision categories the entity belongs to.
+	 *
+	 * @return Bits of the categories.
+	 */
+	public int getCollisionCategory() {
+		return store != null ? store.category[id] : collisionCategory;
+	}
+
+	/**
+	 * Sets the collision categories the entity collides with.
+	 *
+	 * @param collisionMask Bits of the categories, ALL_CATEGORIES by default.
+	 */
+	public void setCollisionMask(int collisionMask) {
+		if (store != null) {
+			store.mask[id] = collisionMask;
+		} else {
+			this.collisionMask = collisionMask;
+		}
+		collisionChanged();
+	}
+
+	/**
+	 * Gets the collision categories the entity collides with.
+	 *
+	 * @return Bits of the categories.
+	 */
+	public int getCollisionMask() {
+		return store != null ? store.mask[id] : collisionMask;
 	}
 
 	/**
@@ -75,10 +305,16 @@ public class Entity {
 	 * @param y The new Y coordinate for the entity.
 	 */
 	public void setPosition(double x, double y) {
-		this.x = x;
-		this.y = y;
-		boundingBox.setX((int) x);
-		boundingBox.setY((int) y);
+		if (store != null) {
+			store.x[id] = x;
+			store.y[id] = y;
+		} else {
+			this.x = x;
+			this.y = y;
+		}
+		if (scene != null) {
+			scene.entityChanged(this);
+		}
 	}
 
 	/**
@@ -88,8 +324,16 @@ public class Entity {
 	 * @param height New height of the entity.
 	 */
 	public void setDimensions(int width, int height) {
-		this.width = width;
-		this.height = height;
+		if (store != null) {
+			store.width[id] = width;
+			store.height[id] = height;
+		} else {
+			this.width = width;
+			this.height = height;
+		}
+		if (scene != null) {
+			scene.entityChanged(this);
+		}
 	}
 
 	/**
@@ -99,12 +343,94 @@ public class Entity {
 	 * @return True if collision is enabled.
 	 */
 	public boolean isCollidable() {
-		return collidable;
+		return store != null ? (store.flags[id] & EntityStore.COLLIDABLE) != 0 : collidable;
+	}
+
+	/**
+	 * Places the entity in screen space. Screen space entities are drawn at
+	 * their position on the display and ignore the scene camera, which is
+	 * useful for HUD elements.
+	 *
+	 * @param screenSpace If true, the camera is not applied to this entity.
+	 */
+	public void setScreenSpace(boolean screenSpace) {
+		if (store != null) {
+			setFlag(EntityStore.SCREEN_SPACE, screenSpace);
+		} else {
+			this.screenSpace = screenSpace;
+		}
+		if (scene != null) {
+			scene.damageAll();
+			scene.entityChanged(this);
+		}
+	}
+
+	/**
+	 * Returns true if the entity is drawn in screen coordinates.
+	 *
+	 * @return True if the camera is ignored.
+	 */
+	public boolean isScreenSpace() {
+		return store != null ? (store.flags[id] & EntityStore.SCREEN_SPACE) != 0 : screenSpace;
+	}
+
+	/**
+	 * Overridable method that is invoked once per game update by the scene,
+	 * before anything is drawn. Game logic of an entity belongs here.
+	 *
+	 * @param dt Seconds since the last update.
+	 */
+	protected void update(double dt) {
+	}
+
+	/**
+	 * Overridable method that is invoked on the update where this entity
+	 * starts touching another. Only called for pairs where at least one of
+	 * the entities has collision events.
+	 *
+	 * @param other Entity touched.
+	 */
+	protected void onCollisionEnter(Entity other) {
+	}
+
+	/**
+	 * Overridable method that is invoked on every following update where
+	 * this entity still touches another.
+	 *
+	 * @param other Entity touched.
+	 */
+	protected void onCollisionStay(Entity other) {
+	}
+
+	/**
+	 * Overridable method that is invoked on the first update where this
+	 * entity no longer touches another, including when one of them was
+	 * removed from the scene.
+	 *
+	 * @param other Entity that was touched.
+	 */
+	protected void onCollisionExit(Entity other) {
+	}
+
+	/**
+	 * Overridable method that is invoked when the entity is taken from an
+	 * EntityPool, including right after the pool created it. Should put the
+	 * entity back in the state of a new one.
+	 */
+	protected void onAcquire() {
+	}
+
+	/**
+	 * Overridable method that is invoked when the entity is given back to an
+	 * EntityPool, after it was removed from its scene.
+	 */
+	protected void onRelease() {
 	}
 
 	/**
-	 * Overridable method that is invoked before paint is invoked. Can be used
-	 * in subclasses for a callback that happens before an entity is drawn.
+	 * Overridable method that is invoked at the start of every update of the
+	 * scene, before any entity is updated and before the drawable of the
+	 * entity is advanced. Drawing never calls it.
 	 */
 	protected void beforeUpdate() {
 	}
@@ -115,33 +441,231 @@ public class Entity {
 	 * @param g Graphics object to draw to.
 	 */
 	public void draw(Graphics g) {
-		beforeUpdate();
-		g.drawImage(drawable.getImage(), (int) x, (int) y, null);
+		Image image = drawable.getImage();
+		int drawX = (int) getX(), drawY = (int) getY();
+		drawable.draw(g, image, drawX, drawY);
+		drawn = true;
+		drawnX = drawX;
+		drawnY = drawY;
+		drawnWidth = image.getWidth(null);
+		drawnHeight = image.getHeight(null);
+		drawnImage = image;
 	}
 
 	/**
-	 * Moves the entity until it collides or reaches its goal.
+	 * Returns true if the entity would draw something else than it did the
+	 * last time it was drawn, going by the image of its drawable.
 	 *
-	 * @param entities List of entities in a scene
+	 * @return True if the frame of the entity changed.
+	 */
+	boolean hasNewFrame() {
+		return drawable.getImage() != drawnImage || drawable.hasNewFrame();
+	}
+
+	/**
+	 * Gets the size of what the entity draws next, used to find the area it
+	 * covers on the screen.
+	 *
+	 * @return Width in pixels.
+	 */
+	int getFrameWidth() {
+		return drawable.getImage().getWidth(null);
+	}
+
+	int getFrameHeight() {
+		return drawable.getImage().getHeight(null);
+	}
+
+	/**
+	 * Moves the entity until it collides with another entity of its scene or
+	 * reaches its goal.
+	 *
+	 * @param dX Change in X
+	 * @param dY Change in Y
+	 * @return Returns true if it doesn't collide with anything
+	 */
+	public boolean moveToUntilCollision(double dX, double dY) {
+		return moveToUntilCollision(getCollisionMask(), dX, dY);
+	}
+
+	/**
+	 * Moves the entity until it collides with an entity of its scene in one
+	 * of the given categories, or reaches its goal.
+	 *
+	 * @param mask Categories that block the movement
+	 * @param dX Change in X
+	 * @param dY Change in Y
+	 * @return Returns true if it doesn't collide with anything
+	 */
+	public boolean moveToUntilCollision(int mask, double dX, double dY) {
+		SweepResult result = sweep(mask, dX, dY);
+		setPosition(result.getX(), result.getY());
+		return !result.isHit();
+	}
+
+	/**
+	 * Moves the entity until it collides or reaches its goal. The movement is
+	 * swept in one go, and a blocked entity is left touching what blocked it.
+	 * A list is searched as sweep(ArrayList, double, double) describes.
+	 *
+	 * @param entities List of entities in a scene, or null for the whole scene
 	 * @param dX Change in X
 	 * @param dY Change in Y
 	 * @return Returns true if it doesn't collide with anything
 	 */
 	public boolean moveToUntilCollision(ArrayList<Entity> entities, double dX, double dY) {
-		double longestDistance = Math.max(Math.abs(dX), Math.abs(dY));
-		double fraction = 1.0 / longestDistance;
-		double startX = x, startY = y;
-		for (float i = 0; i <= 1; i += fraction) {
-			if (!setPositionUnlessCollides(entities, startX + dX * i, startY + dY * i)) {
-				return false;
+		SweepResult result = sweep(entities, dX, dY);
+		setPosition(result.getX(), result.getY());
+		return !result.isHit();
+	}
+
+	/**
+	 * Finds how far the entity can move before touching another entity of
+	 * its scene, without moving it.
+	 *
+	 * @param dX Change in X
+	 * @param dY Change in Y
+	 * @return Time, position, normal and entity of the first contact.
+	 */
+	public SweepResult sweep(double dX, double dY) {
+		return sweep(getCollisionMask(), dX, dY);
+	}
+
+	/**
+	 * Finds how far the entity can move before touching an entity of its
+	 * scene in one of the given categories, without moving it.
+	 *
+	 * @param mask Categories that block the movement
+	 * @param dX Change in X
+	 * @param dY Change in Y
+	 * @return Time, position, normal and entity of the first contact.
+	 */
+	public SweepResult sweep(int mask, double dX, double dY) {
+		return sweepAmong(null, mask, dX, dY);
+	}
+
+	/**
+	 * Finds how far the entity can move before touching an entity of a list,
+	 * without moving it. The time of impact is worked out directly from the
+	 * bounds, so the cost does not depend on the distance moved. Entities the
+	 * entity already overlaps do not block it. While the entity is in a
+	 * scene, only entities of the list near the path are tested. Static
+	 * entities of the list are tested one by one rather than through the
+	 * boxes they are merged into, and the collision grid of the scene never
+	 * blocks, since its cells are not entities of the list.
+	 *
+	 * @param entities Entities that can block the movement, or null for the
+	 * whole scene
+	 * @param dX Change in X
+	 * @param dY Change in Y
+	 * @return Time, position, normal and entity of the first contact.
+	 */
+	public SweepResult sweep(ArrayList<Entity> entities, double dX, double dY) {
+		return sweepAmong(entities, getCollisionMask(), dX, dY);
+	}
+
+	private SweepResult sweepAmong(ArrayList<Entity> entities, int mask, double dX, double dY) {
+		if (scene != null) {
+			return scene.sweep(this, entities, mask, dX, dY);
+		}
+		SweptAabb sweeper = new SweptAabb();
+		sweeper.begin(this, mask, dX, dY);
+		if (entities != null) {
+			for (Entity e : entities) {
+				if (sweeper.test(e)) {
+					sweeper.accept(e);
+				}
 			}
 		}
-		return true;
+		return sweeper.end();
+	}
+
+	/**
+	 * Moves the entity, sliding along whatever it hits instead of stopping.
+	 *
+	 * @param dX Change in X
+	 * @param dY Change in Y
+	 * @return The first contact made, or an unblocked result if nothing was
+	 * hit.
+	 */
+	public SweepResult moveAndSlide(double dX, double dY) {
+		return slide(null, getCollisionMask(), dX, dY);
+	}
+
+	/**
+	 * Moves the entity, sliding along entities of its scene in the given
+	 * categories instead of stopping.
+	 *
+	 * @param mask Categories that block the movement
+	 * @param dX Change in X
+	 * @param dY Change in Y
+	 * @return The first contact made, or an unblocked result if nothing was
+	 * hit.
+	 */
+	public SweepResult moveAndSlide(int mask, double dX, double dY) {
+		return slide(null, mask, dX, dY);
+	}
+
+	/**
+	 * Moves the entity, sliding along whatever it hits instead of stopping.
+	 * When the movement is blocked, the part of it along the surface that was
+	 * hit continues from the point of contact, so falling onto the ground
+	 * while walking keeps the entity walking. A list is searched as
+	 * sweep(ArrayList, double, double) describes.
+	 *
+	 * @param entities Entities that can block the movement, or null for the
+	 * whole scene
+	 * @param dX Change in X
+	 * @param dY Change in Y
+	 * @return The first contact made, or an unblocked result if nothing was
+	 * hit.
+	 */
+	public SweepResult moveAndSlide(ArrayList<Entity> entities, double dX, double dY) {
+		return slide(entities, getCollisionMask(), dX, dY);
+	}
+
+	private SweepResult slide(ArrayList<Entity> entities, int mask, double dX, double dY) {
+		SweepResult first = null;
+		for (int i = 0; i < 2; ++i) {
+			SweepResult result = sweepAmong(entities, mask, dX, dY);
+			setPosition(result.getX(), result.getY());
+			if (first == null) {
+				first = result;
+			}
+			if (!result.isHit()) {
+				break;
+			}
+			double remaining = 1 - result.getTime();
+			if (result.getNormalX() != 0) {
+				dX = 0;
+				dY *= remaining;
+			} else {
+				dX *= remaining;
+				dY = 0;
+			}
+			if (dX == 0 && dY == 0) {
+				break;
+			}
+		}
+		return first;
 	}
 
 	/**
 	 * Changes the position of the entity if the new position doesn't cause
-	 * collisions.
+	 * collisions with another entity of its scene.
+	 *
+	 * @param x New x
+	 * @param y New y
+	 * @return Returns true if position was changed and didn't collide with
+	 * anything
+	 */
+	public boolean setPositionUnlessCollides(double x, double y) {
+		return setPositionUnlessCollides(null, x, y);
+	}
+
+	/**
+	 * Changes the position of the entity if the new position doesn't cause
+	 * collisions. A list is searched as collidesWithAny(ArrayList) describes.
 	 *
 	 * @param entities List of entities in a scene
 	 * @param x New x
@@ -150,8 +674,8 @@ public class Entity {
 	 * anything
 	 */
 	public boolean setPositionUnlessCollides(ArrayList<Entity> entities, double x, double y) {
-		double startingX = this.x;
-		double startingY = this.y;
+		double startingX = getX();
+		double startingY = getY();
 		setPosition(x, y);
 		if (collidesWithAny(entities)) {
 			setPosition(startingX, startingY);
@@ -160,16 +684,71 @@ public class Entity {
 		return true;
 	}
 
+	/**
+	 * Determines if this entity collides with any other entity of its scene.
+	 * Only entities near this one are tested, using the scene's broadphase.
+	 *
+	 * @return True if the entity collides with another, false if it is not
+	 * in a scene.
+	 */
+	public boolean collidesWithAny() {
+		return collidesWithAny(getCollisionMask());
+	}
+
+	/**
+	 * Determines if this entity collides with an entity of its scene in one
+	 * of the given categories. Entities in other categories are skipped
+	 * without looking at their bounds.
+	 *
+	 * @param mask Categories to test against, for example only solid ground
+	 * or only hazards.
+	 * @return True if the entity collides with such an entity, false if it
+	 * is not in a scene.
+	 */
+	public boolean collidesWithAny(int mask) {
+		return scene != null && scene.collidesWithAny(this, null, mask);
+	}
+
+	/**
+	 * Finds every entity of this entity's scene in the given categories that
+	 * it collides with, triggers included.
+	 *
+	 * @param mask Categories to test against.
+	 * @param out List the entities found are added to.
+	 */
+	public void collectCollisions(int mask, ArrayList<Entity> out) {
+		if (scene != null) {
+			scene.collectCollisions(this, mask, out);
+		}
+	}
+
 	/**
 	 * Determines if this entity collides with any entity in the supplied array
 	 * list. An entity can only collide if both entities overlap and both are
-	 * set as collidable.
+	 * set as collidable. Triggers are skipped. While this entity is in a
+	 * scene, the scene's broadphase finds the entities near it and only those
+	 * are tested, so the list should only hold entities of the same scene.
+	 * Static entities of the list are tested one by one rather than through
+	 * the boxes they are merged into, and the solid cells of the scene's
+	 * collision grid are not counted. Otherwise every entity in the list is
+	 * tested.
 	 *
-	 * @param entities
-	 * @return
+	 * @param entities Entities to test against, or null for the whole scene.
+	 * @return True if the entity collides with an entity of the list.
 	 */
 	public boolean collidesWithAny(ArrayList<Entity> entities) {
-		return entities.stream().anyMatch((e) -> collidesWith(e));
+		if (scene != null) {
+			return scene.collidesWithAny(this, entities, getCollisionMask());
+		}
+		if (entities == null) {
+			return false;
+		}
+		for (Entity e : entities) {
+			if (!e.isTrigger() && collidesWith(e)) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	/**
@@ -180,37 +759,110 @@ public class Entity {
 	 * @return True if the bounding box overlaps with this entity.
 	 */
 	public boolean collidesWith(BoundingBox other) {
-		return boundingBox.collidesWith(other);
+		return overlaps(other.getX(), other.getY(), other.getWidth(), other.getHeight());
 	}
 
 	/**
 	 * Determines if this entity collides with the supplied entity. An entity
-	 * can only collide if both entities overlap and both are set as collidable.
-	 * If the entity supplied is the same as this entity, false is returned.
+	 * can only collide if both entities overlap, both are set as collidable
+	 * and each one's category is in the other's mask. If the entity supplied
+	 * is the same as this entity, false is returned.
 	 *
 	 * @param other Entity to check for collision with.
 	 * @return True if the entities are different and overlap.
 	 */
 	public boolean collidesWith(Entity other) {
-		if (other == this) {
-			return false;
+		return canCollideWith(other, getCollisionMask())
+				&& other.overlaps((int) getX(), (int) getY(), getWidth(), getHeight());
+	}
+
+	/**
+	 * Returns true if this entity could collide with another entity at all,
+	 * looking only at their flags and categories.
+	 *
+	 * @param other Entity to check.
+	 * @param mask Categories this entity collides with for this check.
+	 * @return True if the pair is not filtered out.
+	 */
+	boolean canCollideWith(Entity other, int mask) {
+		return other != this && isCollidable() && other.isCollidable()
+				&& (other.getCollisionCategory() & mask) != 0 && (getCollisionCategory() & other.getCollisionMask()) != 0;
+	}
+
+	/**
+	 * Returns true if another entity can stop this one from moving: the pair
+	 * can collide and the other entity is not a trigger.
+	 *
+	 * @param other Entity to check.
+	 * @param mask Categories that block this entity.
+	 * @return True if the other entity blocks this one.
+	 */
+	boolean canBeBlockedBy(Entity other, int mask) {
+		return !other.isTrigger() && canCollideWith(other, mask);
+	}
+
+	private void collisionChanged() {
+		if (scene != null) {
+			scene.collisionChanged(this);
 		}
-		return this.collidable && other.isCollidable() && other.collidesWith(boundingBox);
+	}
+
+	private void setFlag(int flag, boolean set) {
+		if (set) {
+			store.flags[id] |= flag;
+		} else {
+			store.flags[id] &= ~flag;
+		}
+	}
+
+	/**
+	 * Copies the values of the entity out of its store into its own fields,
+	 * called when the store lets go of it.
+	 */
+	void leaveStore() {
+		x = store.x[id];
+		y = store.y[id];
+		width = store.width[id];
+		height = store.height[id];
+		collidable = (store.flags[id] & EntityStore.COLLIDABLE) != 0;
+		screenSpace = (store.flags[id] & EntityStore.SCREEN_SPACE) != 0;
+		trigger = (store.flags[id] & EntityStore.TRIGGER) != 0;
+		collisionEvents = (store.flags[id] & EntityStore.COLLISION_EVENTS) != 0;
+		collisionCategory = store.category[id];
+		collisionMask = store.mask[id];
+		store = null;
+		id = -1;
+	}
+
+	/**
+	 * Returns true if the bounding box of the entity, on whole pixels,
+	 * overlaps a rectangle. Nothing is written, so it can be called from
+	 * several threads at once.
+	 *
+	 * @param x Left of the rectangle.
+	 * @param y Top of the rectangle.
+	 * @param width Width of the rectangle.
+	 * @param height Height of the rectangle.
+	 * @return True if the box and the rectangle overlap.
+	 */
+	boolean overlaps(int x, int y, int width, int height) {
+		int left = (int) getX(), top = (int) getY();
+		return left < x + width && x < left + getWidth() && top < y + height && y < top + getHeight();
 	}
 
 	public double getX() {
-		return x;
+		return store != null ? store.x[id] : x;
 	}
 
 	public double getY() {
-		return y;
+		return store != null ? store.y[id] : y;
 	}
 
 	public int getWidth() {
-		return width;
+		return store != null ? store.width[id] : width;
 	}
 
 	public int getHeight() {
-		return height;
+		return store != null ? store.height[id] : height;
 	}
 }
@@ -0,0 +1,133 @@
+package ethics;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Keeps entities that are no longer needed so they can be used again instead
+ * of creating new ones, for things that come and go all the time like the
+ * ground of an endless level. An entity taken from the pool has onAcquire
+ * called on it, which should set it up as if it was new, and onRelease is
+ * called when it is given back. A Scene that despawns entities gives pooled
+ * entities back to their pool.
+ *
+ * @param <T> Type of the entities in the pool.
+ * @author Jonathan Cooper
+ */
+public class EntityPool<T extends Entity> {
+
+	/**
+	 * Creates the entities of a pool when it has none left to hand out.
+	 *
+	 * @param <T> Type of the entities.
+	 */
+	public interface Factory<T extends Entity> {
+
+		/**
+		 * Creates a new entity.
+		 *
+		 * @return The entity.
+		 * @throws IOException If a resource of the entity is unable to be
+		 * loaded.
+		 */
+		T create() throws IOException;
+	}
+
+	private final Factory<T> factory;
+	private final int maxIdle;
+	private final ArrayList<T> idle = new ArrayList<>();
+	private int created = 0;
+
+	/**
+	 * Creates a pool that keeps any number of released entities.
+	 *
+	 * @param factory Creates entities when the pool is empty.
+	 */
+	public EntityPool(Factory<T> factory) {
+		this(factory, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Creates a pool.
+	 *
+	 * @param factory Creates entities when the pool is empty.
+	 * @param maxIdle Most released entities kept, extra ones are dropped.
+	 */
+	public EntityPool(Factory<T> factory, int maxIdle) {
+		if (maxIdle < 0) {
+			throw new IllegalArgumentException("Idle limit can't be negative");
+		}
+		this.factory = factory;
+		this.maxIdle = maxIdle;
+	}
+
+	/**
+	 * Takes an entity out of the pool, creating one if the pool is empty.
+	 *
+	 * @return Entity ready to be set up and added to a scene.
+	 * @throws IOException If a new entity is unable to be created.
+	 */
+	public T acquire() throws IOException {
+		T e;
+		if (idle.isEmpty()) {
+			e = factory.create();
+			++created;
+		} else {
+			e = idle.remove(idle.size() - 1);
+		}
+		e.pool = this;
+		e.pooled = false;
+		e.onAcquire();
+		return e;
+	}
+
+	/**
+	 * Gives an entity back to the pool, removing it from its scene first.
+	 *
+	 * @param e Entity taken from this pool.
+	 */
+	public void release(T e) {
+		if (e.pool != this) {
+			throw new IllegalArgumentException("Entity was not taken from this pool");
+		}
+		if (e.pooled) {
+			throw new IllegalStateException("Entity was already released");
+		}
+		if (e.scene != null) {
+			e.scene.removeEntity(e);
+		}
+		e.pooled = true;
+		e.onRelease();
+		if (idle.size() < maxIdle) {
+			idle.add(e);
+		}
+	}
+
+	/**
+	 * Gives back an entity known to be from this pool.
+	 *
+	 * @param e Entity whose pool is this one.
+	 */
+	@SuppressWarnings("unchecked")
+	void recycle(Entity e) {
+		release((T) e);
+	}
+
+	/**
+	 * Gets how many released entities wait to be used again.
+	 *
+	 * @return Number of idle entities.
+	 */
+	public int getIdleCount() {
+		return idle.size();
+	}
+
+	/**
+	 * Gets how many entities the pool has created in total.
+	 *
+	 * @return Number of entities created.
+	 */
+	public int getCreatedCount() {
+		return created;
+	}
+}
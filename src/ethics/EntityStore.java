@@ -0,0 +1,220 @@
+package ethics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Keeps the positions, sizes, flags and collision categories of many entities
+ * in parallel arrays of primitives instead of in each Entity object. An
+ * entity added to a store becomes a handle into it: its getters and setters
+ * read and write the arrays at its id. Ids are kept dense, so passes over
+ * every entity of the store, like the queries below, walk contiguous memory
+ * rather than following a pointer per entity. Entities that are removed get
+ * their values back in their own fields.
+ *
+ * A scene created with a store puts every entity added to it in the store.
+ * The store then belongs to that scene alone.
+ *
+ * @author Jonathan Cooper
+ */
+public final class EntityStore {
+
+	static final int COLLIDABLE = 1;
+	static final int SCREEN_SPACE = 1 << 1;
+	static final int TRIGGER = 1 << 2;
+	static final int COLLISION_EVENTS = 1 << 3;
+
+	double[] x;
+	double[] y;
+	int[] width;
+	int[] height;
+	int[] flags;
+	int[] category;
+	int[] mask;
+	private Entity[] entities;
+	private int size = 0;
+	Scene scene;
+
+	/**
+	 * Creates a store with room for 64 entities.
+	 */
+	public EntityStore() {
+		this(64);
+	}
+
+	/**
+	 * Creates a store.
+	 *
+	 * @param capacity Number of entities to make room for up front.
+	 */
+	public EntityStore(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Capacity must be positive");
+		}
+		x = new double[capacity];
+		y = new double[capacity];
+		width = new int[capacity];
+		height = new int[capacity];
+		flags = new int[capacity];
+		category = new int[capacity];
+		mask = new int[capacity];
+		entities = new Entity[capacity];
+	}
+
+	/**
+	 * Moves an entity's values into the store and makes the entity a handle
+	 * to them.
+	 *
+	 * @param e Entity that is not in a store yet.
+	 */
+	public void add(Entity e) {
+		if (e.store != null) {
+			throw new IllegalStateException("Entity is already in a store");
+		}
+		if (size == entities.length) {
+			grow(size * 2);
+		}
+		int id = size++;
+		x[id] = e.getX();
+		y[id] = e.getY();
+		width[id] = e.getWidth();
+		height[id] = e.getHeight();
+		flags[id] = (e.isCollidable() ? COLLIDABLE : 0) | (e.isScreenSpace() ? SCREEN_SPACE : 0)
+				| (e.isTrigger() ? TRIGGER : 0) | (e.collisionEvents ? COLLISION_EVENTS : 0);
+		category[id] = e.getCollisionCategory();
+		mask[id] = e.getCollisionMask();
+		entities[id] = e;
+		e.store = this;
+		e.id = id;
+	}
+
+	/**
+	 * Gives an entity its values back and takes it out of the store. The last
+	 * entity of the store takes its id.
+	 *
+	 * @param e Entity of this store.
+	 */
+	public void remove(Entity e) {
+		if (e.store != this) {
+			throw new IllegalArgumentException("Entity is not in this store");
+		}
+		int id = e.id;
+		e.leaveStore();
+		int last = --size;
+		if (id != last) {
+			x[id] = x[last];
+			y[id] = y[last];
+			width[id] = width[last];
+			height[id] = height[last];
+			flags[id] = flags[last];
+			category[id] = category[last];
+			mask[id] = mask[last];
+			entities[id] = entities[last];
+			entities[id].id = id;
+		}
+		entities[last] = null;
+	}
+
+	/**
+	 * Gives every entity its values back and empties the store.
+	 */
+	public void clear() {
+		while (size > 0) {
+			remove(entities[size - 1]);
+		}
+	}
+
+	/**
+	 * Gets the entity with an id.
+	 *
+	 * @param id Id from 0 to size() - 1.
+	 * @return Entity with the id.
+	 */
+	public Entity get(int id) {
+		if (id < 0 || id >= size) {
+			throw new IllegalArgumentException("No entity with id " + id);
+		}
+		return entities[id];
+	}
+
+	/**
+	 * Gets the number of entities in the store.
+	 *
+	 * @return Number of entities.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Finds every collidable entity in one of the given categories whose
+	 * bounds overlap a rectangle, by scanning the arrays from start to end.
+	 * For a single small area a Scene's spatial hash is faster, this is for
+	 * passes that look at most of the entities anyway.
+	 *
+	 * @param minX Left of the rectangle.
+	 * @param minY Top of the rectangle.
+	 * @param maxX Right of the rectangle.
+	 * @param maxY Bottom of the rectangle.
+	 * @param categories Collision categories to find.
+	 * @param out List the entities found are added to.
+	 * @return Number of entities found.
+	 */
+	public int query(double minX, double minY, double maxX, double maxY, int categories, ArrayList<Entity> out) {
+		int found = 0;
+		for (int i = 0; i < size; ++i) {
+			if ((category[i] & categories) != 0 && (flags[i] & COLLIDABLE) != 0
+					&& x[i] < maxX && x[i] + width[i] > minX && y[i] < maxY && y[i] + height[i] > minY) {
+				out.add(entities[i]);
+				++found;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Counts the entities whose bounds overlap a rectangle, such as a camera
+	 * view, without collecting them.
+	 *
+	 * @param minX Left of the rectangle.
+	 * @param minY Top of the rectangle.
+	 * @param maxX Right of the rectangle.
+	 * @param maxY Bottom of the rectangle.
+	 * @return Number of entities overlapping the rectangle.
+	 */
+	public int count(double minX, double minY, double maxX, double maxY) {
+		int found = 0;
+		for (int i = 0; i < size; ++i) {
+			if (x[i] < maxX && x[i] + width[i] > minX && y[i] < maxY && y[i] + height[i] > minY) {
+				++found;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Finds every entity that has one of the given flags, reading only the
+	 * flags array.
+	 *
+	 * @param wanted Flags an entity must have at least one of.
+	 * @param out List the entities found are added to.
+	 */
+	void collectFlagged(int wanted, ArrayList<Entity> out) {
+		for (int i = 0; i < size; ++i) {
+			if ((flags[i] & wanted) != 0) {
+				out.add(entities[i]);
+			}
+		}
+	}
+
+	private void grow(int capacity) {
+		x = Arrays.copyOf(x, capacity);
+		y = Arrays.copyOf(y, capacity);
+		width = Arrays.copyOf(width, capacity);
+		height = Arrays.copyOf(height, capacity);
+		flags = Arrays.copyOf(flags, capacity);
+		category = Arrays.copyOf(category, capacity);
+		mask = Arrays.copyOf(mask, capacity);
+		entities = Arrays.copyOf(entities, capacity);
+	}
+}
@@ -0,0 +1,42 @@
+package ethics;
+
+/**
+ * The parts of a frame that FrameStats measures.
+ *
+ * @author Jonathan Cooper
+ */
+public enum FramePhase {
+
+	/**
+	 * Time from the start of one frame to the start of the next.
+	 */
+	FRAME("frame"),
+	/**
+	 * A single game update, GameListener.onUpdate.
+	 */
+	UPDATE("update"),
+	/**
+	 * Drawing the scene to the back buffer.
+	 */
+	DRAW("draw"),
+	/**
+	 * Scaling the back buffer onto the screen and showing it.
+	 */
+	PRESENT("present");
+
+	private final String label;
+
+	private FramePhase(String label) {
+		this.label = label;
+	}
+
+	/**
+	 * Gets the short lower case name of the phase, used in the overlay and
+	 * CSV exports.
+	 *
+	 * @return Name of the phase.
+	 */
+	public String getLabel() {
+		return label;
+	}
+}
@@ -0,0 +1,105 @@
+package ethics;
+
+import ethics.events.GameListener;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.image.BufferedImage;
+
+/**
+ * The steps that make up a frame of the game. Both the Display and the
+ * HeadlessRunner go through this class so the work done to update and render
+ * a scene is the same with or without a window.
+ *
+ * @author Jonathan Cooper
+ */
+final class FramePipeline {
+
+	static final Color DEFAULT_BACKGROUND = new Color(0, 0, 0);
+
+	private FramePipeline() {
+	}
+
+	/**
+	 * Runs a single game update. The game listener is updated first and then
+	 * the entities of the scene.
+	 *
+	 * @param gameListener Listener to update, may be null.
+	 * @param scene Scene being updated, may be null.
+	 * @param stats Statistics the update is timed into.
+	 * @param dt Seconds the update covers.
+	 */
+	static void update(GameListener gameListener, Scene scene, FrameStats stats, double dt) {
+		long start = System.nanoTime();
+		if (gameListener != null) {
+			gameListener.onUpdate();
+		}
+		if (scene != null) {
+			scene.update(dt);
+		}
+		stats.record(FramePhase.UPDATE, System.nanoTime() - start);
+	}
+
+	/**
+	 * Renders the scene to a back buffer. Normally the buffer is cleared to
+	 * the background color and the whole scene is drawn. If the scene tracks
+	 * damage, only the damaged parts are redrawn, unless the buffer lost what
+	 * was drawn to it before. The clip is set to the buffer so entities that
+	 * draw only what is visible, like a TileMap, can find the view. Scenes
+	 * with several render threads are drawn in parallel into a buffer kept in
+	 * main memory, which is also used when the pixels of the buffer are read
+	 * directly afterwards. The frame is timed into the statistics, which are
+	 * drawn over the scene when their overlay is showing.
+	 *
+	 * @param buffer Buffer to render to.
+	 * @param gc Graphics configuration of the target, or null if unknown.
+	 * @param scene Scene to draw, may be null.
+	 * @param stats Statistics the frame is timed into.
+	 */
+	static void render(BackBuffer buffer, GraphicsConfiguration gc, Scene scene, FrameStats stats) {
+		long start = System.nanoTime();
+		stats.frameStarted(start);
+		Graphics2D graphics = drawScene(buffer, gc, scene, stats);
+		stats.record(FramePhase.DRAW, System.nanoTime() - start);
+		stats.drawOverlay(graphics, buffer.getWidth());
+	}
+
+	private static Graphics2D drawScene(BackBuffer buffer, GraphicsConfiguration gc, Scene scene, FrameStats stats) {
+		boolean parallel = scene != null && scene.getRenderThreads() > 1 && !scene.isDamageTracking();
+		buffer.setSoftware(parallel || buffer.isRasterRequired());
+		Graphics2D graphics = buffer.beginFrame(gc);
+		int width = buffer.getWidth();
+		int height = buffer.getHeight();
+		graphics.setClip(0, 0, width, height);
+		if (scene != null) {
+			scene.getCamera().setViewSize(width, height);
+			if (scene.isDamageTracking()) {
+				if (buffer.isFresh()) {
+					scene.damageAll();
+				}
+				if (stats.isOverlayOnScreen()) {
+					scene.damageScreen(stats.getOverlayX(width), stats.getOverlayY(),
+							stats.getOverlayWidth(), stats.getOverlayHeight());
+				}
+				scene.drawDamaged(graphics);
+				return graphics;
+			}
+			if (parallel) {
+				scene.drawParallel((BufferedImage) buffer.getImage(), graphics);
+				return graphics;
+			}
+		}
+		Color oldColor = graphics.getColor();
+		if (scene != null) {
+			graphics.setColor(scene.getBackgroundColor());
+		} else {
+			graphics.setColor(DEFAULT_BACKGROUND);
+		}
+		graphics.fillRect(0, 0, width, height);
+		graphics.setColor(oldColor);
+		if (scene != null) {
+			scene.draw(graphics);
+		}
+		return graphics;
+	}
+}
@@ -0,0 +1,255 @@
+package ethics;
+
+import java.awt.Graphics2D;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Timing of the frames of a Display or HeadlessRunner. Each FramePhase is
+ * measured with System.nanoTime into a PhaseHistogram. Frames are counted as
+ * late when they start later than the target frame interval allows, and as
+ * dropped for every whole frame interval that passed without a frame. The
+ * statistics can be exported as CSV, and shown live in an overlay drawn over
+ * the scene, which can be toggled like bounding boxes.
+ *
+ * @author Jonathan Cooper
+ */
+public class FrameStats {
+
+	/**
+	 * How much longer than the target interval a frame may take before it
+	 * counts as late, to allow for timer jitter.
+	 */
+	private static final double LATE_TOLERANCE = 1.1;
+
+	private static final FramePhase[] PHASES = FramePhase.values();
+
+	private final PhaseHistogram[] histograms = new PhaseHistogram[PHASES.length];
+	private final AtomicLong droppedFrames = new AtomicLong();
+	private final AtomicLong lateFrames = new AtomicLong();
+	private final AtomicLong skippedUpdates = new AtomicLong();
+	private volatile long targetFrameNanos = 0;
+	private volatile boolean showingOverlay = false;
+	private long lastFrameStart = -1;
+
+	/**
+	 * True if the overlay was drawn into the last frame, so a damage tracked
+	 * frame knows to redraw the area under it after it is hidden.
+	 */
+	private boolean overlayDrawn = false;
+	private final FrameStatsOverlay overlay = new FrameStatsOverlay(this);
+
+	FrameStats() {
+		for (int i = 0; i < histograms.length; ++i) {
+			histograms[i] = new PhaseHistogram();
+		}
+	}
+
+	/**
+	 * Gets the histogram of a phase.
+	 *
+	 * @param phase Phase of the frame.
+	 * @return Histogram of durations of the phase.
+	 */
+	public PhaseHistogram getHistogram(FramePhase phase) {
+		return histograms[phase.ordinal()];
+	}
+
+	/**
+	 * Gets how many frames were dropped, which is the number of frame
+	 * intervals that passed without a frame starting.
+	 *
+	 * @return Number of dropped frames.
+	 */
+	public long getDroppedFrames() {
+		return droppedFrames.get();
+	}
+
+	/**
+	 * Gets how many frames started later than the target frame interval.
+	 *
+	 * @return Number of late frames.
+	 */
+	public long getLateFrames() {
+		return lateFrames.get();
+	}
+
+	/**
+	 * Gets how many updates the game loop skipped because the game could not
+	 * keep up with the update rate.
+	 *
+	 * @return Number of skipped updates.
+	 */
+	public long getSkippedUpdates() {
+		return skippedUpdates.get();
+	}
+
+	/**
+	 * Gets the interval frames are expected to start at.
+	 *
+	 * @return Interval in nanoseconds, 0 if frames are not paced.
+	 */
+	public long getTargetFrameNanos() {
+		return targetFrameNanos;
+	}
+
+	void setTargetFrameNanos(long targetFrameNanos) {
+		this.targetFrameNanos = targetFrameNanos;
+	}
+
+	/**
+	 * Forgets all measurements.
+	 */
+	public void reset() {
+		for (PhaseHistogram histogram : histograms) {
+			histogram.reset();
+		}
+		droppedFrames.set(0);
+		lateFrames.set(0);
+		skippedUpdates.set(0);
+		lastFrameStart = -1;
+	}
+
+	/**
+	 * Enables or disables the overlay.
+	 *
+	 * @param showingOverlay If true, the statistics are drawn over the scene.
+	 */
+	public void setShowingOverlay(boolean showingOverlay) {
+		this.showingOverlay = showingOverlay;
+	}
+
+	/**
+	 * Toggles the overlay.
+	 */
+	public void toggleShowingOverlay() {
+		setShowingOverlay(!showingOverlay);
+	}
+
+	/**
+	 * Returns true if the statistics are drawn over the scene.
+	 *
+	 * @return True if the overlay is shown.
+	 */
+	public boolean isShowingOverlay() {
+		return showingOverlay;
+	}
+
+	/**
+	 * Writes the statistics as CSV, with a row per phase followed by the frame
+	 * counters. Durations are in microseconds.
+	 *
+	 * @param out Where to write to.
+	 * @throws IOException If writing fails.
+	 */
+	public void writeCsv(Appendable out) throws IOException {
+		out.append("phase,count,mean_us,p50_us,p95_us,p99_us,max_us\n");
+		for (FramePhase phase : PHASES) {
+			PhaseHistogram histogram = getHistogram(phase);
+			out.append(phase.getLabel()).append(',')
+					.append(Long.toString(histogram.getCount())).append(',')
+					.append(Long.toString(histogram.getMean() / 1000)).append(',')
+					.append(Long.toString(histogram.getPercentile(50) / 1000)).append(',')
+					.append(Long.toString(histogram.getPercentile(95) / 1000)).append(',')
+					.append(Long.toString(histogram.getPercentile(99) / 1000)).append(',')
+					.append(Long.toString(histogram.getMax() / 1000)).append('\n');
+		}
+		out.append("counter,value\n");
+		out.append("dropped_frames,").append(Long.toString(getDroppedFrames())).append('\n');
+		out.append("late_frames,").append(Long.toString(getLateFrames())).append('\n');
+		out.append("skipped_updates,").append(Long.toString(getSkippedUpdates())).append('\n');
+	}
+
+	/**
+	 * Gets the statistics as CSV.
+	 *
+	 * @return CSV text as written by writeCsv.
+	 */
+	public String toCsv() {
+		StringBuilder csv = new StringBuilder();
+		try {
+			writeCsv(csv);
+		} catch (IOException ex) {
+			throw new RuntimeException(ex);
+		}
+		return csv.toString();
+	}
+
+	/**
+	 * Records the duration of a phase.
+	 *
+	 * @param phase Phase that ended.
+	 * @param nanos Duration in nanoseconds.
+	 */
+	void record(FramePhase phase, long nanos) {
+		histograms[phase.ordinal()].record(nanos);
+	}
+
+	/**
+	 * Records the start of a frame, measuring the time since the last one.
+	 * Only called from the thread that renders.
+	 *
+	 * @param now Current System.nanoTime.
+	 */
+	void frameStarted(long now) {
+		if (lastFrameStart >= 0) {
+			long interval = now - lastFrameStart;
+			record(FramePhase.FRAME, interval);
+			long target = targetFrameNanos;
+			if (target > 0) {
+				if (interval > target * LATE_TOLERANCE) {
+					lateFrames.incrementAndGet();
+				}
+				if (interval >= 2 * target) {
+					droppedFrames.addAndGet(interval / target - 1);
+				}
+			}
+		}
+		lastFrameStart = now;
+	}
+
+	void addSkippedUpdates(long updates) {
+		skippedUpdates.addAndGet(updates);
+	}
+
+	/**
+	 * Returns true if the area of the overlay has to be drawn again in the
+	 * next frame: it is shown, or it was drawn into the last frame and needs
+	 * to be covered up.
+	 *
+	 * @return True if the overlay is or was on screen.
+	 */
+	boolean isOverlayOnScreen() {
+		return overlayDrawn || showingOverlay;
+	}
+
+	int getOverlayX(int viewWidth) {
+		return overlay.getX(viewWidth);
+	}
+
+	int getOverlayY() {
+		return overlay.getY();
+	}
+
+	int getOverlayWidth() {
+		return overlay.getWidth();
+	}
+
+	int getOverlayHeight() {
+		return overlay.getHeight();
+	}
+
+	/**
+	 * Draws the overlay in the top right corner of the view if it is shown,
+	 * and remembers whether it was drawn.
+	 *
+	 * @param g Graphics object in screen coordinates.
+	 * @param viewWidth Width of the view.
+	 */
+	void drawOverlay(Graphics2D g, int viewWidth) {
+		overlayDrawn = showingOverlay;
+		if (overlayDrawn) {
+			overlay.draw(g, viewWidth);
+		}
+	}
+}
@@ -0,0 +1,152 @@
+package ethics;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+
+/**
+ * Draws FrameStats over the scene. The text is formatted into character
+ * arrays that are allocated once and drawn with drawChars, so showing the
+ * overlay does not create garbage every frame.
+ *
+ * @author Jonathan Cooper
+ */
+final class FrameStatsOverlay {
+
+	private static final Font FONT = new Font(Font.MONOSPACED, Font.PLAIN, 11);
+	private static final Color BACKGROUND = new Color(0, 0, 0, 170);
+	private static final Color TEXT = Color.WHITE;
+	private static final int LINE_LENGTH = 52;
+	private static final FramePhase[] PHASES = FramePhase.values();
+	private static final int LINES = PHASES.length + 1;
+	private static final int MARGIN = 4;
+
+	/**
+	 * Line height and character width, assumed until the font has been
+	 * measured on the first draw.
+	 */
+	private int lineHeight = 13;
+	private int ascent = 10;
+	private int charWidth = 7;
+	private boolean measured = false;
+
+	private final FrameStats stats;
+	private final char[][] lines = new char[LINES][LINE_LENGTH];
+	private final int[] lengths = new int[LINES];
+
+	FrameStatsOverlay(FrameStats stats) {
+		this.stats = stats;
+	}
+
+	int getX(int viewWidth) {
+		return viewWidth - getWidth() - MARGIN;
+	}
+
+	int getY() {
+		return MARGIN;
+	}
+
+	int getWidth() {
+		return LINE_LENGTH * charWidth + 2 * MARGIN;
+	}
+
+	int getHeight() {
+		return LINES * lineHeight + 2 * MARGIN;
+	}
+
+	void draw(Graphics2D g, int viewWidth) {
+		if (!measured) {
+			measured = true;
+			lineHeight = g.getFontMetrics(FONT).getHeight();
+			ascent = g.getFontMetrics(FONT).getAscent();
+			charWidth = g.getFontMetrics(FONT).charWidth('0');
+		}
+		for (int i = 0; i < PHASES.length; ++i) {
+			PhaseHistogram histogram = stats.getHistogram(PHASES[i]);
+			char[] line = lines[i];
+			int length = put(line, 0, PHASES[i].getLabel());
+			length = pad(line, length, 8);
+			length = put(line, length, "p50");
+			length = putMillis(line, length, histogram.getPercentile(50));
+			length = put(line, length, " p95");
+			length = putMillis(line, length, histogram.getPercentile(95));
+			length = put(line, length, " p99");
+			length = putMillis(line, length, histogram.getPercentile(99));
+			length = put(line, length, " max");
+			length = putMillis(line, length, histogram.getMax());
+			lengths[i] = length;
+		}
+		char[] line = lines[PHASES.length];
+		int length = put(line, 0, "dropped ");
+		length = putLong(line, length, stats.getDroppedFrames());
+		length = put(line, length, " late ");
+		length = putLong(line, length, stats.getLateFrames());
+		length = put(line, length, " skipped ");
+		length = putLong(line, length, stats.getSkippedUpdates());
+		lengths[PHASES.length] = length;
+
+		int x = getX(viewWidth), y = getY();
+		Color oldColor = g.getColor();
+		Font oldFont = g.getFont();
+		g.setColor(BACKGROUND);
+		g.fillRect(x, y, getWidth(), getHeight());
+		g.setColor(TEXT);
+		g.setFont(FONT);
+		for (int i = 0; i < LINES; ++i) {
+			g.drawChars(lines[i], 0, lengths[i], x + MARGIN, y + MARGIN + ascent + i * lineHeight);
+		}
+		g.setFont(oldFont);
+		g.setColor(oldColor);
+	}
+
+	private static int put(char[] line, int position, String text) {
+		int length = Math.min(text.length(), LINE_LENGTH - position);
+		text.getChars(0, length, line, position);
+		return position + length;
+	}
+
+	private static int pad(char[] line, int position, int column) {
+		while (position < column && position < LINE_LENGTH) {
+			line[position++] = ' ';
+		}
+		return position;
+	}
+
+	/**
+	 * Writes a number right aligned in a field of 7 characters, as
+	 * milliseconds with two decimals.
+	 */
+	private static int putMillis(char[] line, int position, long nanos) {
+		long hundredths = Math.min((nanos + 5000) / 10000, 999999);
+		int end = Math.min(position + 7, LINE_LENGTH);
+		int i = end;
+		int digits = 0;
+		do {
+			if (digits == 2) {
+				line[--i] = '.';
+			}
+			line[--i] = (char) ('0' + hundredths % 10);
+			hundredths /= 10;
+			++digits;
+		} while ((hundredths > 0 || digits < 3) && i > position + 1);
+		while (i > position) {
+			line[--i] = ' ';
+		}
+		return end;
+	}
+
+	private static int putLong(char[] line, int position, long value) {
+		int digits = 1;
+		for (long rest = value / 10; rest > 0; rest /= 10) {
+			++digits;
+		}
+		int end = Math.min(position + digits, LINE_LENGTH);
+		for (int i = position + digits - 1; i >= position; --i) {
+			if (i < LINE_LENGTH) {
+				line[i] = (char) ('0' + value % 10);
+			}
+			value /= 10;
+		}
+		return end;
+	}
+}
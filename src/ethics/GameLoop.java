@@ -0,0 +1,163 @@
+package ethics;
+
+/**
+ * A dedicated thread that drives a Display with a fixed simulation step. Time
+ * is accumulated between iterations and consumed in fixed sized updates, so
+ * the game runs at the same speed no matter how long rendering takes. Frames
+ * are rendered at most at the render rate and are handed an interpolation
+ * alpha describing how far the simulation is between the last update and the
+ * next one.
+ *
+ * @author Jonathan Cooper
+ */
+public class GameLoop implements Runnable {
+
+	private static final long NANOS_PER_SECOND = 1000000000L;
+
+	private final Display display;
+	private Thread thread = null;
+	private volatile boolean running = false;
+	private volatile long updateInterval;
+	private volatile long renderInterval;
+	private volatile int maxUpdatesPerFrame = 5;
+
+	/**
+	 * Creates a new game loop for a display.
+	 *
+	 * @param display Display to update and render.
+	 * @param updateRate Number of simulation updates per second.
+	 * @param renderRate Maximum number of frames rendered per second.
+	 */
+	GameLoop(Display display, int updateRate, int renderRate) {
+		this.display = display;
+		setUpdateRate(updateRate);
+		setRenderRate(renderRate);
+	}
+
+	/**
+	 * Sets the fixed number of simulation updates per second.
+	 *
+	 * @param updateRate Updates per second.
+	 */
+	public void setUpdateRate(int updateRate) {
+		if (updateRate <= 0) {
+			throw new IllegalArgumentException("Update rate must be positive");
+		}
+		updateInterval = NANOS_PER_SECOND / updateRate;
+	}
+
+	/**
+	 * Sets the maximum number of frames rendered per second. A rate of zero
+	 * or less removes the cap.
+	 *
+	 * @param renderRate Frames per second.
+	 */
+	public void setRenderRate(int renderRate) {
+		renderInterval = renderRate > 0 ? NANOS_PER_SECOND / renderRate : 0;
+	}
+
+	/**
+	 * Gets the shortest time between rendered frames.
+	 *
+	 * @return Interval in nanoseconds, 0 if the render rate is not capped.
+	 */
+	long getRenderInterval() {
+		return renderInterval;
+	}
+
+	/**
+	 * Limits how many updates may run back to back before a frame is
+	 * rendered. If the simulation falls further behind than this, the
+	 * remaining time is dropped instead of being caught up, which prevents
+	 * one slow frame from making every following frame slower.
+	 *
+	 * @param maxUpdatesPerFrame Maximum number of catch-up updates.
+	 */
+	public void setMaxUpdatesPerFrame(int maxUpdatesPerFrame) {
+		if (maxUpdatesPerFrame <= 0) {
+			throw new IllegalArgumentException("At least one update per frame is required");
+		}
+		this.maxUpdatesPerFrame = maxUpdatesPerFrame;
+	}
+
+	/**
+	 * Gets the length of a single simulation step in seconds.
+	 *
+	 * @return Seconds per update.
+	 */
+	public double getStepSeconds() {
+		return (double) updateInterval / NANOS_PER_SECOND;
+	}
+
+	/**
+	 * Returns true if the loop thread is running.
+	 *
+	 * @return True if running.
+	 */
+	public boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * Starts the loop on a new thread.
+	 */
+	public synchronized void start() {
+		if (running) {
+			return;
+		}
+		running = true;
+		thread = new Thread(this, "Game loop");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Asks the loop to stop after the current iteration.
+	 */
+	public void stop() {
+		running = false;
+	}
+
+	@Override
+	public void run() {
+		long previous = System.nanoTime();
+		long accumulator = 0;
+		long lastRender = previous - renderInterval;
+		while (running) {
+			long now = System.nanoTime();
+			accumulator += now - previous;
+			previous = now;
+
+			long step = updateInterval;
+			int updates = 0;
+			while (accumulator >= step && updates < maxUpdatesPerFrame) {
+				display.update();
+				accumulator -= step;
+				++updates;
+			}
+			if (accumulator >= step) {
+				display.getFrameStats().addSkippedUpdates(accumulator / step);
+				accumulator %= step;
+			}
+
+			now = System.nanoTime();
+			if (now - lastRender >= renderInterval) {
+				lastRender = now;
+				display.render((double) accumulator / step);
+			}
+
+			long nextUpdate = previous + step - accumulator;
+			long nextRender = lastRender + renderInterval;
+			long sleep = Math.min(nextUpdate, nextRender) - System.nanoTime();
+			if (sleep > 1000000L) {
+				try {
+					Thread.sleep(sleep / 1000000L);
+				} catch (InterruptedException ex) {
+					running = false;
+				}
+			} else {
+				Thread.yield();
+			}
+		}
+	}
+}
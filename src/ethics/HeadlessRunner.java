@@ -0,0 +1,154 @@
+package ethics;
+
+import ethics.events.GameListener;
+import java.awt.Image;
+
+/**
+ * Runs a game without a window. Each tick goes through the same update and
+ * render steps a Display uses, but frames are rendered to an off screen
+ * buffer, or not at all, and ticks are run back to back as fast as possible.
+ * Useful for benchmarking and soak testing on machines without a screen.
+ *
+ * @author Jonathan Cooper
+ */
+public class HeadlessRunner {
+
+	private static final double NANOS_PER_SECOND = 1000000000.0;
+
+	private final GameListener gameListener;
+	private final Scene scene;
+	private final BackBuffer buffer;
+	private final FrameStats frameStats = new FrameStats();
+	private int ticksPerFrame = 1;
+	private double stepSeconds = 0.04;
+	private boolean loaded = false;
+	private long ticks = 0;
+	private long frames = 0;
+	private long elapsedNanos = 0;
+
+	/**
+	 * Creates a new headless runner.
+	 *
+	 * @param gameListener Listener that is loaded and updated.
+	 * @param scene Scene to render.
+	 * @param width Width of the off screen buffer.
+	 * @param height Height of the off screen buffer.
+	 */
+	public HeadlessRunner(GameListener gameListener, Scene scene, int width, int height) {
+		this.gameListener = gameListener;
+		this.scene = scene;
+		buffer = new BackBuffer(width, height);
+	}
+
+	/**
+	 * Sets how many ticks run between rendered frames. A value of zero or
+	 * less turns rendering off.
+	 *
+	 * @param ticksPerFrame Ticks per rendered frame.
+	 */
+	public void setTicksPerFrame(int ticksPerFrame) {
+		this.ticksPerFrame = ticksPerFrame;
+	}
+
+	/**
+	 * Sets how much game time each tick covers, handed to the scene's update.
+	 * Defaults to the 25 updates per second of a Display.
+	 *
+	 * @param stepSeconds Seconds per tick.
+	 */
+	public void setStepSeconds(double stepSeconds) {
+		if (stepSeconds <= 0) {
+			throw new IllegalArgumentException("Step must be positive");
+		}
+		this.stepSeconds = stepSeconds;
+	}
+
+	/**
+	 * Runs a number of ticks. The game listener is loaded before the first
+	 * tick ever run.
+	 *
+	 * @param count Number of ticks to run.
+	 */
+	public void run(long count) {
+		if (!loaded) {
+			loaded = true;
+			if (gameListener != null) {
+				gameListener.onLoad();
+			}
+		}
+		long start = System.nanoTime();
+		for (long i = 0; i < count; ++i) {
+			FramePipeline.update(gameListener, scene, frameStats, stepSeconds);
+			++ticks;
+			if (ticksPerFrame > 0 && ticks % ticksPerFrame == 0) {
+				FramePipeline.render(buffer, null, scene, frameStats);
+				++frames;
+			}
+		}
+		elapsedNanos += System.nanoTime() - start;
+	}
+
+	/**
+	 * Clears the tick and frame counters and the frame timings.
+	 */
+	public void resetStatistics() {
+		ticks = 0;
+		frames = 0;
+		elapsedNanos = 0;
+		frameStats.reset();
+	}
+
+	/**
+	 * Gets the timing of the ticks and frames run so far. Frames are run back
+	 * to back, so none count as late or dropped.
+	 *
+	 * @return Frame statistics.
+	 */
+	public FrameStats getFrameStats() {
+		return frameStats;
+	}
+
+	/**
+	 * Gets the last rendered frame.
+	 *
+	 * @return Off screen buffer, or null if nothing was rendered yet.
+	 */
+	public Image getImage() {
+		return buffer.getImage();
+	}
+
+	public long getTicks() {
+		return ticks;
+	}
+
+	public long getFrames() {
+		return frames;
+	}
+
+	/**
+	 * Gets the time spent running ticks since the statistics were reset.
+	 *
+	 * @return Elapsed time in seconds.
+	 */
+	public double getElapsedSeconds() {
+		return elapsedNanos / NANOS_PER_SECOND;
+	}
+
+	/**
+	 * Gets the average number of ticks run per second.
+	 *
+	 * @return Ticks per second.
+	 */
+	public double getTicksPerSecond() {
+		return elapsedNanos == 0 ? 0 : ticks / getElapsedSeconds();
+	}
+
+	/**
+	 * Gets the average number of frames rendered per second.
+	 *
+	 * @return Frames per second.
+	 */
+	public double getFramesPerSecond() {
+		return elapsedNanos == 0 ? 0 : frames / getElapsedSeconds();
+	}
+}
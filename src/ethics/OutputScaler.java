@@ -0,0 +1,228 @@
+package ethics;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * Shows frames of a Display on its window according to a ScalingMode. Where
+ * the frame goes on the window is worked out again only when the window
+ * changes size. In INTEGER mode the frame's pixels are repeated straight into
+ * an output image that is kept between frames, and only the part of it inside
+ * the clip is updated and drawn, without scaling. The scaler is used from
+ * both the thread that renders and the event dispatch thread, so its methods
+ * are synchronized.
+ *
+ * @author Jonathan Cooper
+ */
+final class OutputScaler {
+
+	private final int sourceWidth;
+	private final int sourceHeight;
+	private ScalingMode mode = ScalingMode.STRETCH;
+
+	/**
+	 * Window size the layout was worked out for, and where the frame goes.
+	 */
+	private int targetWidth = -1, targetHeight = -1;
+	private int destX, destY, destWidth, destHeight, factor;
+
+	private BufferedImage output = null;
+	private int[] outputPixels;
+	private BufferedImage source = null;
+	private int[] sourcePixels;
+
+	/**
+	 * Creates a scaler for frames of a size.
+	 *
+	 * @param sourceWidth Width of the frames.
+	 * @param sourceHeight Height of the frames.
+	 */
+	OutputScaler(int sourceWidth, int sourceHeight) {
+		this.sourceWidth = sourceWidth;
+		this.sourceHeight = sourceHeight;
+	}
+
+	synchronized void setMode(ScalingMode mode) {
+		if (mode == null) {
+			throw new IllegalArgumentException("Scaling mode can't be null");
+		}
+		this.mode = mode;
+		targetWidth = -1;
+		output = null;
+	}
+
+	ScalingMode getMode() {
+		return mode;
+	}
+
+	/**
+	 * Returns true if frames must be BufferedImages of type TYPE_INT_RGB, so
+	 * their pixels can be read directly.
+	 *
+	 * @return True for INTEGER mode.
+	 */
+	boolean needsRaster() {
+		return mode == ScalingMode.INTEGER;
+	}
+
+	/**
+	 * Works out where frames go on a window of a size.
+	 *
+	 * @param width Width of the window.
+	 * @param height Height of the window.
+	 */
+	synchronized void layout(int width, int height) {
+		if (width == targetWidth && height == targetHeight) {
+			return;
+		}
+		targetWidth = width;
+		targetHeight = height;
+		switch (mode) {
+			case STRETCH:
+				destWidth = width;
+				destHeight = height;
+				break;
+			case INTEGER:
+				factor = Math.max(Math.min(width / sourceWidth, height / sourceHeight), 1);
+				destWidth = sourceWidth * factor;
+				destHeight = sourceHeight * factor;
+				break;
+			default:
+				double scale = Math.min((double) width / sourceWidth, (double) height / sourceHeight);
+				destWidth = Math.max((int) Math.round(sourceWidth * scale), 1);
+				destHeight = Math.max((int) Math.round(sourceHeight * scale), 1);
+				break;
+		}
+		destX = (width - destWidth) / 2;
+		destY = (height - destHeight) / 2;
+	}
+
+	synchronized int getDestX() {
+		return destX;
+	}
+
+	synchronized int getDestY() {
+		return destY;
+	}
+
+	synchronized int getDestWidth() {
+		return destWidth;
+	}
+
+	synchronized int getDestHeight() {
+		return destHeight;
+	}
+
+	/**
+	 * Converts an x coordinate on a window of a size to the frame.
+	 */
+	synchronized int toSourceX(int x, int width, int height) {
+		layout(width, height);
+		return (int) Math.floor((double) (x - destX) * sourceWidth / destWidth);
+	}
+
+	/**
+	 * Converts a y coordinate on a window of a size to the frame.
+	 */
+	synchronized int toSourceY(int y, int width, int height) {
+		layout(width, height);
+		return (int) Math.floor((double) (y - destY) * sourceHeight / destHeight);
+	}
+
+	/**
+	 * Draws a frame onto a window, filling the borders around it with black.
+	 *
+	 * @param g Graphics object of the window.
+	 * @param frame Frame to show.
+	 * @param width Width of the window.
+	 * @param height Height of the window.
+	 */
+	synchronized void present(Graphics g, Image frame, int width, int height) {
+		layout(width, height);
+		if (mode == ScalingMode.STRETCH) {
+			g.drawImage(frame, 0, 0, width, height, null);
+			return;
+		}
+		fillBorders(g);
+		if (mode == ScalingMode.INTEGER && frame instanceof BufferedImage
+				&& ((BufferedImage) frame).getType() == BufferedImage.TYPE_INT_RGB) {
+			presentInteger(g, (BufferedImage) frame);
+			return;
+		}
+		Graphics2D g2 = (Graphics2D) g;
+		Object oldInterpolation = g2.getRenderingHint(RenderingHints.KEY_INTERPOLATION);
+		g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, mode == ScalingMode.SMOOTH
+				? RenderingHints.VALUE_INTERPOLATION_BILINEAR : RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+		g2.drawImage(frame, destX, destY, destWidth, destHeight, null);
+		if (oldInterpolation != null) {
+			g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, oldInterpolation);
+		}
+	}
+
+	private void fillBorders(Graphics g) {
+		if (destWidth == targetWidth && destHeight == targetHeight) {
+			return;
+		}
+		Color oldColor = g.getColor();
+		g.setColor(Color.BLACK);
+		g.fillRect(0, 0, targetWidth, destY);
+		g.fillRect(0, destY + destHeight, targetWidth, targetHeight - destY - destHeight);
+		g.fillRect(0, destY, destX, destHeight);
+		g.fillRect(destX + destWidth, destY, targetWidth - destX - destWidth, destHeight);
+		g.setColor(oldColor);
+	}
+
+	/**
+	 * Repeats each pixel of the frame inside the clip factor times across and
+	 * down into the output image, and draws that part of it unscaled.
+	 */
+	private void presentInteger(Graphics g, BufferedImage frame) {
+		if (factor == 1) {
+			g.drawImage(frame, destX, destY, null);
+			return;
+		}
+		if (frame != source) {
+			source = frame;
+			sourcePixels = ((DataBufferInt) frame.getRaster().getDataBuffer()).getData();
+		}
+		if (output == null || output.getWidth() != destWidth || output.getHeight() != destHeight) {
+			output = new BufferedImage(destWidth, destHeight, BufferedImage.TYPE_INT_RGB);
+			outputPixels = ((DataBufferInt) output.getRaster().getDataBuffer()).getData();
+		}
+		int left = 0, top = 0, right = sourceWidth, bottom = sourceHeight;
+		Rectangle clip = g.getClipBounds();
+		if (clip != null) {
+			left = Math.max(Math.floorDiv(clip.x - destX, factor), 0);
+			top = Math.max(Math.floorDiv(clip.y - destY, factor), 0);
+			right = Math.min(Math.floorDiv(clip.x + clip.width - destX + factor - 1, factor), sourceWidth);
+			bottom = Math.min(Math.floorDiv(clip.y + clip.height - destY + factor - 1, factor), sourceHeight);
+			if (right <= left || bottom <= top) {
+				return;
+			}
+		}
+		int rowLength = (right - left) * factor;
+		for (int y = top; y < bottom; ++y) {
+			int in = y * sourceWidth + left;
+			int rowStart = y * factor * destWidth + left * factor;
+			int out = rowStart;
+			for (int x = left; x < right; ++x) {
+				int pixel = sourcePixels[in++];
+				for (int i = 0; i < factor; ++i) {
+					outputPixels[out++] = pixel;
+				}
+			}
+			for (int i = 1; i < factor; ++i) {
+				System.arraycopy(outputPixels, rowStart, outputPixels, rowStart + i * destWidth, rowLength);
+			}
+		}
+		int outLeft = left * factor, outTop = top * factor, outRight = right * factor, outBottom = bottom * factor;
+		g.drawImage(output, destX + outLeft, destY + outTop, destX + outRight, destY + outBottom,
+				outLeft, outTop, outRight, outBottom, null);
+	}
+}
@@ -0,0 +1,224 @@
+package ethics;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Draws a frame into a BufferedImage on several threads. The image is split
+ * into horizontal bands, each band gets the entities that overlap it, and the
+ * bands are drawn at the same time into the image's shared raster, each
+ * clipped to its own rows. Entities are drawn in the same order as in a
+ * serial draw, so the result is the same pixel for pixel.
+ *
+ * Java2D picks the source pixels of a scaled image starting from the edge of
+ * the clip, so with a zoomed camera a band may only start on a row that falls
+ * exactly on a world pixel. Zoom levels without such rows every few pixels
+ * can't be drawn in bands.
+ *
+ * Fetching the frame of an entity only reads its drawable, so an entity
+ * that spans several bands is drawn by all of them at once.
+ *
+ * @author Jonathan Cooper
+ */
+final class ParallelSceneRenderer {
+
+	/**
+	 * Bands per thread, so a thread that finishes early can take another band.
+	 */
+	private static final int BANDS_PER_THREAD = 2;
+
+	/**
+	 * Most world rows a band edge may be apart at a zoom level.
+	 */
+	private static final int MAX_WORLD_ROWS_PER_STEP = 64;
+
+	private final Camera camera;
+	private final ForkJoinPool pool;
+	private final int bandCount;
+
+	private BufferedImage target = null;
+	private Graphics2D[] bandGraphics;
+	private final SpaceSwitch[] bandSpaces;
+	private final int[][] bandEntities;
+	private final int[] bandSizes;
+
+	/**
+	 * State of the frame being drawn, read by the band tasks.
+	 */
+	private ArrayList<Entity> drawList;
+	private ArrayList<RenderLayer> layers;
+	private Color background;
+	private int width, bandHeight;
+
+	/**
+	 * Creates a renderer with its own pool of threads.
+	 *
+	 * @param camera Camera of the scene.
+	 * @param threads Number of threads to draw with.
+	 */
+	ParallelSceneRenderer(Camera camera, int threads) {
+		this.camera = camera;
+		pool = new ForkJoinPool(threads);
+		bandCount = threads * BANDS_PER_THREAD;
+		bandSpaces = new SpaceSwitch[bandCount];
+		bandEntities = new int[bandCount][16];
+		bandSizes = new int[bandCount];
+		for (int i = 0; i < bandCount; ++i) {
+			bandSpaces[i] = new SpaceSwitch(camera);
+		}
+	}
+
+	/**
+	 * Gets how many rows apart band edges must be for a zoom level.
+	 *
+	 * @param zoom Zoom of the camera.
+	 * @return Rows between possible band edges, or 0 if the zoom can't be
+	 * drawn in bands.
+	 */
+	static int getBandStep(double zoom) {
+		for (int worldRows = 1; worldRows <= MAX_WORLD_ROWS_PER_STEP; ++worldRows) {
+			double rows = zoom * worldRows;
+			if (rows >= 1 && Math.abs(rows - Math.rint(rows)) < 1e-9) {
+				return (int) Math.rint(rows);
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Clears the image to the background color and draws the entities and
+	 * cached layers of a frame into it. The camera zoom must have a band step.
+	 *
+	 * @param target Image to draw into.
+	 * @param drawList Entities to draw, in draw order.
+	 * @param tops Top of each entity on the screen.
+	 * @param bottoms Bottom of each entity on the screen.
+	 * @param layers Layers of the scene in draw order.
+	 * @param background Background color of the scene.
+	 */
+	void draw(BufferedImage target, ArrayList<Entity> drawList, int[] tops, int[] bottoms,
+			ArrayList<RenderLayer> layers, Color background) {
+		if (target != this.target) {
+			disposeGraphics();
+			this.target = target;
+			bandGraphics = new Graphics2D[bandCount];
+			for (int i = 0; i < bandCount; ++i) {
+				bandGraphics[i] = target.createGraphics();
+			}
+		}
+		width = target.getWidth();
+		int step = getBandStep(camera.getZoom());
+		bandHeight = (target.getHeight() + bandCount - 1) / bandCount;
+		bandHeight = (bandHeight + step - 1) / step * step;
+		for (int i = 0; i < bandCount; ++i) {
+			bandSizes[i] = 0;
+		}
+		for (int i = 0; i < drawList.size(); ++i) {
+			int first = Math.max(Math.floorDiv(tops[i], bandHeight), 0);
+			int last = Math.min(Math.floorDiv(bottoms[i] - 1, bandHeight), bandCount - 1);
+			for (int band = first; band <= last; ++band) {
+				if (bandSizes[band] == bandEntities[band].length) {
+					int[] grown = new int[bandEntities[band].length * 2];
+					System.arraycopy(bandEntities[band], 0, grown, 0, bandSizes[band]);
+					bandEntities[band] = grown;
+				}
+				bandEntities[band][bandSizes[band]++] = i;
+			}
+		}
+		this.drawList = drawList;
+		this.layers = layers;
+		this.background = background;
+		pool.invoke(new BandTask(0, bandCount));
+		this.drawList = null;
+		this.layers = null;
+	}
+
+	/**
+	 * Draws a single band.
+	 */
+	private void drawBand(int band) {
+		Graphics2D g = bandGraphics[band];
+		SpaceSwitch space = bandSpaces[band];
+		int top = band * bandHeight;
+		g.setClip(0, top, width, bandHeight);
+		Color oldColor = g.getColor();
+		g.setColor(background);
+		g.fillRect(0, top, width, bandHeight);
+		g.setColor(oldColor);
+		space.begin(g);
+		int[] entities = bandEntities[band];
+		int layerIndex = 0;
+		for (int i = 0; i < bandSizes[band]; ++i) {
+			Entity e = drawList.get(entities[i]);
+			while (layerIndex < layers.size() && layers.get(layerIndex).compareDepth(e.layer) <= 0) {
+				drawCache(g, space, layers.get(layerIndex++));
+			}
+			space.set(g, !e.isScreenSpace());
+			e.draw(g);
+		}
+		while (layerIndex < layers.size()) {
+			drawCache(g, space, layers.get(layerIndex++));
+		}
+		space.end(g);
+	}
+
+	private static void drawCache(Graphics2D g, SpaceSwitch space, RenderLayer layer) {
+		if (!layer.isUsingCache()) {
+			return;
+		}
+		if (layer.worldImage != null) {
+			space.set(g, true);
+			g.drawImage(layer.worldImage, layer.worldX, layer.worldY, null);
+		}
+		if (layer.screenImage != null) {
+			space.set(g, false);
+			g.drawImage(layer.screenImage, layer.screenX, layer.screenY, null);
+		}
+	}
+
+	private void disposeGraphics() {
+		if (bandGraphics != null) {
+			for (Graphics2D g : bandGraphics) {
+				g.dispose();
+			}
+			bandGraphics = null;
+		}
+		target = null;
+	}
+
+	/**
+	 * Stops the threads of the renderer.
+	 */
+	void shutdown() {
+		pool.shutdown();
+		disposeGraphics();
+	}
+
+	/**
+	 * Draws a range of bands, splitting it up until each task has one band.
+	 */
+	@SuppressWarnings("serial")
+	private class BandTask extends RecursiveAction {
+
+		private final int from, to;
+
+		BandTask(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from == 1) {
+				drawBand(from);
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new BandTask(from, middle), new BandTask(middle, to));
+		}
+	}
+}
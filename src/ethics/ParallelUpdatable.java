@@ -0,0 +1,30 @@
+package ethics;
+
+/**
+ * An entity whose update can run on several threads. Instead of
+ * Entity.update, the scene calls compute for all such entities at once on
+ * its update threads and then apply on each of them in turn, in the order the
+ * entities were added. compute may read entities, but must not query the
+ * scene or test collisions, since the scene keeps scratch state for those
+ * that is shared by every caller. It must only change state of its own entity
+ * that nothing else reads during the update, such as the move it wants to
+ * make. apply then carries the result out, which may query and change the
+ * scene, so the outcome is the same on any number of threads.
+ *
+ * @author Jonathan Cooper
+ */
+public interface ParallelUpdatable {
+
+	/**
+	 * Works out the update of the entity, possibly on another thread. Scene
+	 * queries and collision tests belong in apply.
+	 *
+	 * @param dt Seconds since the last update.
+	 */
+	void compute(double dt);
+
+	/**
+	 * Applies what compute worked out, on the thread updating the scene.
+	 */
+	void apply();
+}
@@ -0,0 +1,128 @@
+package ethics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts durations in buckets that grow logarithmically, so percentiles can
+ * be read at any time without keeping every sample. Each power of two is
+ * split into 8 buckets, which keeps reported values within 12.5% of the
+ * measured ones. Recording is lock free and never allocates, so it can be
+ * done from any thread while another thread reads the statistics.
+ *
+ * @author Jonathan Cooper
+ */
+public final class PhaseHistogram {
+
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	PhaseHistogram() {
+	}
+
+	/**
+	 * Adds a duration to the histogram.
+	 *
+	 * @param nanos Duration in nanoseconds, negative values count as 0.
+	 */
+	void record(long nanos) {
+		long value = Math.max(nanos, 0);
+		buckets.incrementAndGet(bucketOf(value));
+		count.incrementAndGet();
+		total.addAndGet(value);
+		long currentMax = max.get();
+		while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+			currentMax = max.get();
+		}
+	}
+
+	/**
+	 * Gets the duration that a percentage of the recorded durations are at or
+	 * below.
+	 *
+	 * @param percentile Percentage from 0 to 100, for example 99 for p99.
+	 * @return Duration in nanoseconds, 0 if nothing was recorded.
+	 */
+	public long getPercentile(double percentile) {
+		long samples = count.get();
+		if (samples == 0) {
+			return 0;
+		}
+		long rank = Math.max((long) Math.ceil(percentile / 100 * samples), 1);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; ++i) {
+			seen += buckets.get(i);
+			if (seen >= rank) {
+				return Math.min(bucketMax(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	/**
+	 * Gets how many durations were recorded.
+	 *
+	 * @return Number of samples.
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * Gets the average recorded duration.
+	 *
+	 * @return Mean in nanoseconds, 0 if nothing was recorded.
+	 */
+	public long getMean() {
+		long samples = count.get();
+		return samples == 0 ? 0 : total.get() / samples;
+	}
+
+	/**
+	 * Gets the longest recorded duration.
+	 *
+	 * @return Maximum in nanoseconds.
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Forgets all recorded durations.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; ++i) {
+			buckets.set(i, 0);
+		}
+		count.set(0);
+		total.set(0);
+		max.set(0);
+	}
+
+	private static int bucketOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * Gets the largest value that falls into a bucket.
+	 */
+	private static long bucketMax(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = bucket / SUB_BUCKETS - 1;
+		long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+}
@@ -0,0 +1,158 @@
+package ethics;
+
+/**
+ * Where a ray cast through a Scene first hits an entity. A hit is handed to
+ * the raycast to fill in, so the same one can be reused for every cast.
+ *
+ * @author Jonathan Cooper
+ */
+public final class RaycastHit {
+
+	private Entity entity = null;
+	private double distance;
+	private double x;
+	private double y;
+	private int normalX;
+	private int normalY;
+
+	/**
+	 * Creates a hit that holds no entity until it is passed to a raycast.
+	 */
+	public RaycastHit() {
+	}
+
+	void set(Entity entity, double distance, double x, double y, int normalX, int normalY) {
+		this.entity = entity;
+		this.distance = distance;
+		this.x = x;
+		this.y = y;
+		this.normalX = normalX;
+		this.normalY = normalY;
+	}
+
+	/**
+	 * Forgets the hit, called at the start of a raycast.
+	 */
+	public void clear() {
+		set(null, 0, 0, 0, 0, 0);
+	}
+
+	/**
+	 * Tests a ray against an entity and keeps the hit if it is nearer than
+	 * the best one so far. Only collidable entities in the given categories
+	 * that are not triggers can be hit, and not if the origin is inside of
+	 * them. Ties go to the entity added to its scene first. Broadphases call
+	 * this for every entity near the ray.
+	 *
+	 * @param e Entity to test.
+	 * @param categories Collision categories that can be hit.
+	 * @param originX X coordinate the ray starts at.
+	 * @param originY Y coordinate the ray starts at.
+	 * @param dX X part of the direction, which has a length of 1.
+	 * @param dY Y part of the direction.
+	 * @param best Distance of the best hit so far, or the length of the ray.
+	 * @return Distance of the best hit after the test.
+	 */
+	public double offer(Entity e, int categories, double originX, double originY, double dX, double dY, double best) {
+		if ((e.getCollisionCategory() & categories) == 0 || !e.isCollidable() || e.isTrigger()) {
+			return best;
+		}
+		double left = e.getX(), top = e.getY();
+		double right = left + e.getWidth(), bottom = top + e.getHeight();
+		if (left < originX && originX < right && top < originY && originY < bottom) {
+			return best;
+		}
+		double nearX, farX, nearY, farY;
+		if (dX == 0) {
+			if (originX < left || originX > right) {
+				return best;
+			}
+			nearX = Double.NEGATIVE_INFINITY;
+			farX = Double.POSITIVE_INFINITY;
+		} else {
+			double a = (left - originX) / dX, b = (right - originX) / dX;
+			nearX = Math.min(a, b);
+			farX = Math.max(a, b);
+		}
+		if (dY == 0) {
+			if (originY < top || originY > bottom) {
+				return best;
+			}
+			nearY = Double.NEGATIVE_INFINITY;
+			farY = Double.POSITIVE_INFINITY;
+		} else {
+			double a = (top - originY) / dY, b = (bottom - originY) / dY;
+			nearY = Math.min(a, b);
+			farY = Math.max(a, b);
+		}
+		double near = Math.max(nearX, nearY);
+		double far = Math.min(farX, farY);
+		if (near < 0 || near > far || near > best) {
+			return best;
+		}
+		if (near == best && entity != null && entity.sequence < e.sequence) {
+			return best;
+		}
+		int normalX = 0, normalY = 0;
+		if (nearX > nearY) {
+			normalX = dX > 0 ? -1 : 1;
+		} else {
+			normalY = dY > 0 ? -1 : 1;
+		}
+		set(e, near, originX + dX * near, originY + dY * near, normalX, normalY);
+		return near;
+	}
+
+	/**
+	 * Returns true if the ray hit an entity.
+	 *
+	 * @return True if there was a hit.
+	 */
+	public boolean isHit() {
+		return entity != null;
+	}
+
+	/**
+	 * Gets the entity the ray hit first.
+	 *
+	 * @return Entity hit, or null if nothing was hit.
+	 */
+	public Entity getEntity() {
+		return entity;
+	}
+
+	/**
+	 * Gets how far along the ray the hit is.
+	 *
+	 * @return Distance from the origin in world units.
+	 */
+	public double getDistance() {
+		return distance;
+	}
+
+	public double getX() {
+		return x;
+	}
+
+	public double getY() {
+		return y;
+	}
+
+	/**
+	 * Gets the X part of the normal of the side that was hit.
+	 *
+	 * @return -1, 0 or 1.
+	 */
+	public int getNormalX() {
+		return normalX;
+	}
+
+	/**
+	 * Gets the Y part of the normal of the side that was hit.
+	 *
+	 * @return -1, 0 or 1.
+	 */
+	public int getNormalY() {
+		return normalY;
+	}
+}
@@ -0,0 +1,125 @@
+package ethics;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+
+/**
+ * A named group of entities in a Scene that is drawn at a certain depth.
+ * Layers with a lower z are drawn first. A cached layer is drawn once into an
+ * image that is reused every frame until the layer is invalidated, which
+ * happens whenever one of its entities is added, removed, moved or given a
+ * new drawable, or when one of its entities shows a new frame of an
+ * animation. Cached layers are meant for things that rarely change, like
+ * terrain or HUD text. A layer whose cache would be too large, on its own
+ * or together with the caches of the other layers, is drawn entity by
+ * entity instead.
+ *
+ * @author Jonathan Cooper
+ */
+public class RenderLayer {
+
+	/**
+	 * Largest number of pixels the caches of one layer may have, 16 MB at
+	 * four bytes a pixel. Layers bigger than this are drawn entity by entity
+	 * instead.
+	 */
+	static final int MAX_CACHE_PIXELS = 2048 * 2048;
+
+	/**
+	 * Largest number of pixels the caches of all layers of a scene may have
+	 * together. A layer whose cache would go over it is drawn entity by
+	 * entity instead.
+	 */
+	static final int MAX_TOTAL_CACHE_PIXELS = 2 * MAX_CACHE_PIXELS;
+
+	private final String name;
+	private int z;
+	private boolean cached;
+	final int order;
+	final ArrayList<Entity> entities = new ArrayList<>();
+
+	/**
+	 * The cached images of world and screen space entities, with the
+	 * position of their top left corner.
+	 */
+	boolean valid = false;
+	boolean tooLarge = false;
+	BufferedImage worldImage = null;
+	int worldX, worldY;
+	BufferedImage screenImage = null;
+	int screenX, screenY;
+
+	/**
+	 * Creates a new layer.
+	 *
+	 * @param name Name of the layer.
+	 * @param z Depth of the layer.
+	 * @param cached If the layer should be cached.
+	 * @param order Used to order layers with the same depth.
+	 */
+	RenderLayer(String name, int z, boolean cached, int order) {
+		this.name = name;
+		this.z = z;
+		this.cached = cached;
+		this.order = order;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getZ() {
+		return z;
+	}
+
+	void setZ(int z) {
+		this.z = z;
+	}
+
+	/**
+	 * Returns true if the layer is drawn from a cached image.
+	 *
+	 * @return True if cached.
+	 */
+	public boolean isCached() {
+		return cached;
+	}
+
+	void setCached(boolean cached) {
+		this.cached = cached;
+		invalidate();
+	}
+
+	/**
+	 * Returns true if the cache is used in place of the entities, which is
+	 * the case for cached layers that aren't too large.
+	 *
+	 * @return True if the entities are drawn through the cache.
+	 */
+	boolean isUsingCache() {
+		return cached && !tooLarge;
+	}
+
+	/**
+	 * Marks the cached image as out of date so it is drawn again in the next
+	 * frame.
+	 */
+	public void invalidate() {
+		valid = false;
+		tooLarge = false;
+	}
+
+	/**
+	 * Orders layers by depth, and layers of the same depth by when they were
+	 * added.
+	 *
+	 * @param other Layer to compare with.
+	 * @return Negative if this layer is drawn first.
+	 */
+	int compareDepth(RenderLayer other) {
+		if (z != other.z) {
+			return Integer.compare(z, other.z);
+		}
+		return Integer.compare(order, other.order);
+	}
+}
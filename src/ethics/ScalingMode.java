@@ -0,0 +1,34 @@
+package ethics;
+
+/**
+ * How a Display scales its frames, which are rendered at the resolution of
+ * the game, onto a window of another size.
+ *
+ * @author Jonathan Cooper
+ */
+public enum ScalingMode {
+
+	/**
+	 * Stretches the frame over the whole window, ignoring its aspect ratio.
+	 */
+	STRETCH,
+
+	/**
+	 * Scales the frame by the largest whole number that fits the window,
+	 * repeating each pixel, and centers it with black borders. The pixels are
+	 * copied straight into a cached output image rather than scaled by
+	 * drawImage, which makes this the cheapest mode on a large window.
+	 */
+	INTEGER,
+
+	/**
+	 * Scales the frame as large as it fits without changing its aspect ratio,
+	 * using nearest neighbour sampling, and centers it with black borders.
+	 */
+	LETTERBOX,
+
+	/**
+	 * Like LETTERBOX, but with bilinear filtering.
+	 */
+	SMOOTH
+}
@@ -1,37 +1,292 @@
 package ethics;
 
+import ethics.events.CollisionListener;
 import java.awt.Color;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * This class is used by a Display object to draw all entities. A Scene is a
  * wrapper around an array list of entities. A Scene contains the background
  * color for a scene. A Scene can also be used to turn on/off Entity bounding 
- * box lines for the associated display.
+ * box lines for the associated display. Entities are drawn through the
+ * scene's Camera, except for entities set to screen space such as a HUD.
+ * Entities outside of the camera view are culled using a BroadPhase, a
+ * spatial hash unless another is set, so drawing costs depend on what is
+ * visible rather than on the world size.
+ * With damage tracking turned on, only the parts of the view that changed
+ * since the last frame are cleared and redrawn. Entities are drawn by
+ * RenderLayer, and layers that rarely change can be cached as one image.
+ * The same broadphase serves entity collision queries, so only entities
+ * near the one asking are tested, and answers region, point and ray queries
+ * from game code. Touching static entities are merged into larger boxes for
+ * blocking tests, and terrain on a regular grid can skip entities altogether
+ * through a CollisionGrid. A scene can be given an EntityStore, which then
+ * holds the positions, sizes and flags of all its entities in flat arrays.
+ * On each update the scene also finds the entities that touch and sends
+ * collision events for them.
  *
  * @author Jonathan Cooper
  */
 public class Scene {
 
+	/**
+	 * Name of the layer entities are added to unless another is given. It has
+	 * a depth of 0 and is not cached.
+	 */
+	public static final String DEFAULT_LAYER = "default";
+
 	ArrayList<Entity> entities = new ArrayList<>();
 	private boolean showingBoundingBoxes = false;
 	private Color backgroundColor = Color.LIGHT_GRAY;
+	private double interpolation = 0;
+	private final Camera camera = new Camera();
+
+	private BroadPhase index = new SpatialHash(128);
+	private final ArrayList<Entity> unindexed = new ArrayList<>();
+	private final StaticColliders statics = new StaticColliders();
+	private CollisionGrid collisionGrid = null;
+	private long nextSequence = 0;
+
+	/**
+	 * Reused by collision queries, along with counters of the work done.
+	 */
+	private final ArrayList<Entity> collisionCandidates = new ArrayList<>();
+	private long collisionQueries = 0;
+	private long collisionTests = 0;
+	private int amongStamp = 0;
+	private final SweptAabb sweeper = new SweptAabb();
+	private final TopmostFinder topmost = new TopmostFinder();
+
+	/**
+	 * How far outside the view despawnable entities may go, negative while
+	 * despawning is off.
+	 */
+	private double despawnMargin = -1;
+	private final ArrayList<Entity> despawnables = new ArrayList<>();
+	private final ArrayList<Entity> despawned = new ArrayList<>();
+
+	private final ArrayList<RenderLayer> layers = new ArrayList<>();
+	private final HashMap<String, RenderLayer> layersByName = new HashMap<>();
+	private final SceneRenderer renderer;
+	private final SceneUpdater updater;
+	private final ContactTracker contacts;
+	private final EntityStore store;
+
+	/**
+	 * Creates an empty scene with only the default layer.
+	 */
+	public Scene() {
+		this(null);
+	}
+
+	/**
+	 * Creates an empty scene with only the default layer, whose entities are
+	 * kept in a store while they are in the scene. The scene takes the store
+	 * over, so it has to be empty and can't be given to another scene.
+	 *
+	 * @param store Store for the entities, or null to leave them as they are.
+	 * @throws IllegalArgumentException If the store belongs to another scene or
+	 * already holds entities.
+	 */
+	public Scene(EntityStore store) {
+		if (store != null) {
+			if (store.scene != null) {
+				throw new IllegalArgumentException("Store already belongs to a scene");
+			}
+			if (store.size() > 0) {
+				throw new IllegalArgumentException("Store already holds entities");
+			}
+			store.scene = this;
+		}
+		this.store = store;
+		addLayer(DEFAULT_LAYER, 0, false);
+		renderer = new SceneRenderer(this);
+		updater = new SceneUpdater(this);
+		contacts = new ContactTracker(this);
+	}
+
+	/**
+	 * Gets the store the entities of this scene are kept in.
+	 *
+	 * @return Entity store, or null if the scene has none.
+	 */
+	public EntityStore getEntityStore() {
+		return store;
+	}
 
 	/**
-	 * Adds an entity to the scene.
+	 * Adds a layer to the scene, or changes the depth and caching of the
+	 * layer with that name if it already exists.
+	 *
+	 * @param name Name of the layer.
+	 * @param z Depth of the layer, layers with a lower depth are drawn first.
+	 * Layers with the same depth are drawn in the order they were added.
+	 * @param cached If true, the layer is drawn once into an image that is
+	 * reused until one of its entities changes.
+	 * @return The layer.
+	 */
+	public RenderLayer addLayer(String name, int z, boolean cached) {
+		RenderLayer layer = layersByName.get(name);
+		if (layer == null) {
+			layer = new RenderLayer(name, z, cached, layers.size());
+			layersByName.put(name, layer);
+			layers.add(layer);
+		} else if (layer.getZ() != z || layer.isCached() != cached) {
+			layer.setZ(z);
+			layer.setCached(cached);
+			layer.worldImage = null;
+			layer.screenImage = null;
+			damageAll();
+		}
+		layers.sort(RenderLayer::compareDepth);
+		return layer;
+	}
+
+	/**
+	 * Gets a layer by name.
+	 *
+	 * @param name Name of the layer.
+	 * @return The layer, or null if there is no layer with that name.
+	 */
+	public RenderLayer getLayer(String name) {
+		return layersByName.get(name);
+	}
+
+	/**
+	 * Gets the layers of the scene in the order they are drawn.
+	 *
+	 * @return Internal list of layers.
+	 */
+	ArrayList<RenderLayer> getLayers() {
+		return layers;
+	}
+
+	/**
+	 * Changes the broadphase that culls, collides and queries the entities of
+	 * this scene. The entities already in the scene are moved into it. Pick
+	 * the structure that fits the level: a SpatialHash for entities of
+	 * similar size, a DynamicAabbTree when sizes vary a lot.
+	 *
+	 * @param broadPhase Empty broadphase not used by another scene.
+	 */
+	public void setBroadPhase(BroadPhase broadPhase) {
+		if (broadPhase == null) {
+			throw new IllegalArgumentException("Broadphase can't be null");
+		}
+		index.clear();
+		index = broadPhase;
+		for (int i = 0; i < entities.size(); ++i) {
+			if (entities.get(i).indexed) {
+				broadPhase.insert(entities.get(i));
+			}
+		}
+	}
+
+	public BroadPhase getBroadPhase() {
+		return index;
+	}
+
+	/**
+	 * Sets the grid of terrain cells that blocks the movement of the
+	 * entities of this scene, next to the entities themselves. Collision
+	 * tests limited to a list of entities ignore the grid.
+	 *
+	 * @param collisionGrid Grid to collide with, or null for none.
+	 */
+	public void setCollisionGrid(CollisionGrid collisionGrid) {
+		this.collisionGrid = collisionGrid;
+	}
+
+	public CollisionGrid getCollisionGrid() {
+		return collisionGrid;
+	}
+
+	BroadPhase getIndex() {
+		return index;
+	}
+
+	ArrayList<Entity> getUnindexed() {
+		return unindexed;
+	}
+
+	/**
+	 * Adds an entity to the default layer of the scene.
 	 *
 	 * @param e Entity to add.
 	 */
 	public void addEntity(Entity e) {
+		addEntity(e, DEFAULT_LAYER);
+	}
+
+	/**
+	 * Adds an entity to a layer of the scene.
+	 *
+	 * @param e Entity to add.
+	 * @param layerName Name of a layer added with addLayer.
+	 */
+	public void addEntity(Entity e, String layerName) {
+		RenderLayer layer = layersByName.get(layerName);
+		if (layer == null) {
+			throw new IllegalArgumentException("No layer named " + layerName);
+		}
+		if (store != null) {
+			store.add(e);
+		}
 		entities.add(e);
+		e.scene = this;
+		e.layer = layer;
+		e.sequence = nextSequence++;
+		e.drawn = false;
+		layer.entities.add(e);
+		if (layer.isCached()) {
+			layer.invalidate();
+		}
+		if (isIndexable(e)) {
+			index.insert(e);
+			e.indexed = true;
+		} else {
+			unindexed.add(e);
+		}
+		if (isBakeable(e)) {
+			statics.add(e);
+		}
+		if (e.isDespawnable()) {
+			addDespawnable(e);
+		}
 	}
 
 	/**
-	 * Removes all entities from the scene.
+	 * Removes all entities and the collision grid from the scene. Contacts
+	 * between entities are forgotten without exit events.
 	 */
 	public void clearScene() {
+		contacts.clear();
+		collisionGrid = null;
+		for (Entity e : entities) {
+			e.scene = null;
+			e.layer = null;
+			e.indexed = false;
+			e.despawnSlot = -1;
+			if (store != null) {
+				store.remove(e);
+			}
+		}
+		despawnables.clear();
+		for (RenderLayer layer : layers) {
+			layer.entities.clear();
+			layer.invalidate();
+		}
 		entities.clear();
+		index.clear();
+		unindexed.clear();
+		statics.clear();
+		damageAll();
 	}
 
 	/**
@@ -40,31 +295,796 @@ public class Scene {
 	 * @param e Entity to remove.
 	 */
 	public void removeEntity(Entity e) {
-		entities.remove(e);
+		if (e.scene == this && entities.remove(e)) {
+			e.layer.entities.remove(e);
+			if (!e.indexed) {
+				unindexed.remove(e);
+			}
+			detach(e);
+			e.layer = null;
+		}
+	}
+
+	/**
+	 * Removes several entities from the scene at once. The lists of the
+	 * scene are each walked once for all of them, rather than once per
+	 * entity as removeEntity does, so removing many entities costs about as
+	 * much as removing one. Entities not in this scene are skipped.
+	 *
+	 * @param removed Entities to remove.
+	 */
+	public void removeEntities(List<? extends Entity> removed) {
+		boolean anyUnindexed = false;
+		for (int i = 0; i < removed.size(); ++i) {
+			Entity e = removed.get(i);
+			if (e.scene == this) {
+				anyUnindexed |= !e.indexed;
+				detach(e);
+			}
+		}
+		entities.removeIf(e -> e.scene != this);
+		for (int i = 0; i < layers.size(); ++i) {
+			layers.get(i).entities.removeIf(e -> e.scene != this);
+		}
+		if (anyUnindexed) {
+			unindexed.removeIf(e -> e.scene != this);
+		}
+		for (int i = 0; i < removed.size(); ++i) {
+			if (removed.get(i).scene == null) {
+				removed.get(i).layer = null;
+			}
+		}
+	}
+
+	/**
+	 * Takes an entity out of everything the scene keeps it in except its
+	 * list of entities, its layer and the list of entities kept out of the
+	 * broadphase, which the caller removes it from.
+	 *
+	 * @param e Entity of this scene.
+	 */
+	private void detach(Entity e) {
+		renderer.damageDrawn(e);
+		if (e.layer.isCached()) {
+			e.layer.invalidate();
+		}
+		e.scene = null;
+		if (e.indexed) {
+			index.remove(e);
+			e.indexed = false;
+		}
+		if (e.staticChunk != null) {
+			statics.remove(e);
+		}
+		if (e.despawnSlot >= 0) {
+			removeDespawnable(e);
+		}
+		if (store != null) {
+			store.remove(e);
+		}
+	}
+
+	/**
+	 * Called by an entity of this scene when its position, size, space or
+	 * drawable changes, to keep the broadphase, layer caches and damage up
+	 * to date.
+	 *
+	 * @param e Entity that changed.
+	 */
+	void entityChanged(Entity e) {
+		renderer.entityChanged(e);
+		if (e.layer.isCached()) {
+			e.layer.invalidate();
+		}
+		if (isIndexable(e)) {
+			if (e.indexed) {
+				index.update(e);
+			} else {
+				unindexed.remove(e);
+				index.insert(e);
+				e.indexed = true;
+			}
+		} else if (e.indexed) {
+			index.remove(e);
+			e.indexed = false;
+			unindexed.add(e);
+		}
+		collisionChanged(e);
+	}
+
+	/**
+	 * Called by an entity of this scene when it moves or its collision
+	 * settings change, to take it out of the static colliders or put it back.
+	 *
+	 * @param e Entity that changed.
+	 */
+	void collisionChanged(Entity e) {
+		if (e.staticChunk != null) {
+			statics.remove(e);
+		}
+		if (isBakeable(e)) {
+			statics.add(e);
+		}
+	}
+
+	/**
+	 * Called by an entity of this scene when only part of what it draws
+	 * changed, so only that part is redrawn.
+	 *
+	 * @param e Entity that changed.
+	 * @param x Left of the changed area in the entity's coordinates.
+	 * @param y Top of the changed area.
+	 * @param width Width of the changed area.
+	 * @param height Height of the changed area.
+	 */
+	void entityAreaChanged(Entity e, int x, int y, int width, int height) {
+		renderer.damageArea(e, x, y, width, height);
+		if (e.layer.isCached()) {
+			e.layer.invalidate();
+		}
+	}
+
+	/**
+	 * Returns true if an entity of this scene collides with another one. The
+	 * broadphase is searched around the entity's bounding box, so only
+	 * nearby entities and those kept out of it are tested. Triggers never
+	 * count. Static entities are tested through the boxes they were merged
+	 * into unless only some entities count, and so are the solid cells of the
+	 * collision grid. Bounding boxes sit on whole pixels while the broadphase
+	 * uses exact positions, so the search reaches one pixel further than the
+	 * box.
+	 *
+	 * @param e Entity to test.
+	 * @param among If not null, only entities in this list count.
+	 * @param mask Categories e collides with for this test.
+	 * @return True if e collides with an entity.
+	 */
+	boolean collidesWithAny(Entity e, List<Entity> among, int mask) {
+		++collisionQueries;
+		if (!e.isCollidable()) {
+			return false;
+		}
+		int x = (int) e.getX(), y = (int) e.getY(), width = e.getWidth(), height = e.getHeight();
+		if (among == null && collisionGrid != null && collisionGrid.overlapsSolid(x, y, width, height, mask)) {
+			return true;
+		}
+		boolean merged = among == null && e.staticChunk == null;
+		int stamp = markAmong(among);
+		findCandidates(x - 1, y - 1, x + width + 1, y + height + 1, mask, merged);
+		for (int i = 0; i < collisionCandidates.size(); ++i) {
+			Entity other = collisionCandidates.get(i);
+			if ((merged && other.staticChunk != null) || !e.canBeBlockedBy(other, mask)) {
+				continue;
+			}
+			++collisionTests;
+			if (other.overlaps(x, y, width, height) && (among == null || other.amongStamp == stamp)) {
+				collisionCandidates.clear();
+				return true;
+			}
+		}
+		collisionCandidates.clear();
+		return false;
+	}
+
+	/**
+	 * Finds every entity of this scene in the given categories that an
+	 * entity collides with.
+	 *
+	 * @param e Entity to test.
+	 * @param mask Categories e collides with for this test.
+	 * @param out List the entities found are added to.
+	 */
+	void collectCollisions(Entity e, int mask, List<Entity> out) {
+		++collisionQueries;
+		if (!e.isCollidable()) {
+			return;
+		}
+		int x = (int) e.getX(), y = (int) e.getY(), width = e.getWidth(), height = e.getHeight();
+		findCandidates(x - 1, y - 1, x + width + 1, y + height + 1, mask, false);
+		for (int i = 0; i < collisionCandidates.size(); ++i) {
+			Entity other = collisionCandidates.get(i);
+			if (!e.canCollideWith(other, mask)) {
+				continue;
+			}
+			++collisionTests;
+			if (other.overlaps(x, y, width, height)) {
+				out.add(other);
+			}
+		}
+		collisionCandidates.clear();
+	}
+
+	/**
+	 * Sweeps an entity of this scene along a movement and finds the first
+	 * entity it would touch. The broadphase is searched over the whole
+	 * area the movement passes through, so the cost depends on what is near
+	 * the path rather than on how far the entity moves per step. Static
+	 * entities are swept against the boxes they were merged into unless only
+	 * some entities can block, and the member the mover stops against is
+	 * reported as the blocker. Unless only some entities can block, the cells
+	 * of the collision grid under the path are tested as well.
+	 *
+	 * @param e Entity that moves.
+	 * @param among If not null, only entities in this list can block it.
+	 * @param mask Categories that block e.
+	 * @param dX Change in X.
+	 * @param dY Change in Y.
+	 * @return Where and against what the movement is blocked.
+	 */
+	SweepResult sweep(Entity e, List<Entity> among, int mask, double dX, double dY) {
+		++collisionQueries;
+		sweeper.begin(e, mask, dX, dY);
+		if (e.isCollidable()) {
+			double minX = Math.min(e.getX(), e.getX() + dX), minY = Math.min(e.getY(), e.getY() + dY);
+			double maxX = Math.max(e.getX(), e.getX() + dX) + e.getWidth();
+			double maxY = Math.max(e.getY(), e.getY() + dY) + e.getHeight();
+			if (among == null && collisionGrid != null) {
+				collisionGrid.sweep(sweeper, e, mask, dX, dY);
+			}
+			boolean merged = among == null && e.staticChunk == null;
+			int stamp = markAmong(among);
+			findCandidates(minX - 1, minY - 1, maxX + 1, maxY + 1, mask, merged);
+			for (int i = 0; i < collisionCandidates.size(); ++i) {
+				Entity other = collisionCandidates.get(i);
+				if ((merged && other.staticChunk != null) || !e.canBeBlockedBy(other, mask)) {
+					continue;
+				}
+				++collisionTests;
+				if (sweeper.test(other) && (among == null || other.amongStamp == stamp)) {
+					sweeper.accept(other);
+				}
+			}
+			collisionCandidates.clear();
+		}
+		return sweeper.end();
+	}
+
+	/**
+	 * Stamps every entity of a list with a new stamp, so a query restricted
+	 * to the list tests membership without searching it.
+	 *
+	 * @param among Entities to stamp, or null to stamp none.
+	 * @return Stamp of the entities of the list.
+	 */
+	private int markAmong(List<Entity> among) {
+		if (among == null) {
+			return 0;
+		}
+		int stamp = ++amongStamp;
+		for (int i = 0; i < among.size(); ++i) {
+			among.get(i).amongStamp = stamp;
+		}
+		return stamp;
+	}
+
+	/**
+	 * Fills collisionCandidates with the entities in the given categories
+	 * near a rectangle, and every entity in those categories that is kept out
+	 * of the broadphase. If merged is true, the merged boxes of static
+	 * entities near the rectangle are added too, and callers skip the static
+	 * entities themselves.
+	 */
+	private void findCandidates(double minX, double minY, double maxX, double maxY, int categories, boolean merged) {
+		collisionCandidates.clear();
+		index.query(minX, minY, maxX, maxY, categories, collisionCandidates);
+		if (merged) {
+			statics.query(minX, minY, maxX, maxY, categories, collisionCandidates);
+		}
+		for (int i = 0; i < unindexed.size(); ++i) {
+			if ((unindexed.get(i).getCollisionCategory() & categories) != 0) {
+				collisionCandidates.add(unindexed.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Finds the world entities in the given categories whose bounds overlap
+	 * a rectangle, through the broadphase. Screen space entities and
+	 * entities without a size are not found. Entities are passed to the sink
+	 * as they are found, so nothing is collected, and the sink may run other
+	 * queries on the scene.
+	 *
+	 * @param x Left of the rectangle in world coordinates.
+	 * @param y Top of the rectangle in world coordinates.
+	 * @param width Width of the rectangle.
+	 * @param height Height of the rectangle.
+	 * @param mask Collision categories to find.
+	 * @param sink Receives the entities found.
+	 * @return Number of entities found.
+	 */
+	public int queryRegion(double x, double y, double width, double height, int mask, Consumer<? super Entity> sink) {
+		return index.query(x, y, x + width, y + height, mask, sink);
+	}
+
+	/**
+	 * Finds the world entities in the given categories that cover a point.
+	 *
+	 * @param x X coordinate in world coordinates.
+	 * @param y Y coordinate in world coordinates.
+	 * @param mask Collision categories to find.
+	 * @param sink Receives the entities found.
+	 * @return Number of entities found.
+	 */
+	public int queryPoint(double x, double y, int mask, Consumer<? super Entity> sink) {
+		return index.queryPoint(x, y, mask, sink);
+	}
+
+	/**
+	 * Finds the world entity drawn on top at a point.
+	 *
+	 * @param x X coordinate in world coordinates.
+	 * @param y Y coordinate in world coordinates.
+	 * @return Topmost entity covering the point, or null if there is none.
+	 */
+	public Entity queryPoint(double x, double y) {
+		return queryPoint(x, y, Entity.ALL_CATEGORIES);
+	}
+
+	/**
+	 * Finds the world entity in the given categories drawn on top at a point.
+	 *
+	 * @param x X coordinate in world coordinates.
+	 * @param y Y coordinate in world coordinates.
+	 * @param mask Collision categories to find.
+	 * @return Topmost entity covering the point, or null if there is none.
+	 */
+	public Entity queryPoint(double x, double y, int mask) {
+		topmost.best = null;
+		index.queryPoint(x, y, mask, topmost);
+		Entity best = topmost.best;
+		topmost.best = null;
+		return best;
+	}
+
+	/**
+	 * Finds the entity drawn on top at a point of the view, such as the
+	 * position of a GameMouseEvent. Screen space entities are tested at the
+	 * point itself and world entities where the camera shows them.
+	 *
+	 * @param screenX X coordinate on the view.
+	 * @param screenY Y coordinate on the view.
+	 * @return Topmost entity under the point, or null if there is none.
+	 */
+	public Entity pick(double screenX, double screenY) {
+		topmost.best = null;
+		index.queryPoint(camera.screenToWorldX(screenX), camera.screenToWorldY(screenY), Entity.ALL_CATEGORIES, topmost);
+		for (int i = 0; i < unindexed.size(); ++i) {
+			Entity e = unindexed.get(i);
+			if (e.isScreenSpace() && e.getX() <= screenX && screenX < e.getX() + e.getWidth()
+					&& e.getY() <= screenY && screenY < e.getY() + e.getHeight()) {
+				topmost.accept(e);
+			}
+		}
+		Entity best = topmost.best;
+		topmost.best = null;
+		return best;
+	}
+
+	/**
+	 * Casts a ray through the scene and finds the first entity it enters,
+	 * for line of sight or ground checks. Only collidable entities in the
+	 * given categories that are not triggers are hit, and entities the origin
+	 * lies inside of are passed through. The broadphase only tests entities
+	 * near the ray.
+	 *
+	 * @param originX X coordinate the ray starts at.
+	 * @param originY Y coordinate the ray starts at.
+	 * @param dirX X part of the direction, of any length.
+	 * @param dirY Y part of the direction, of any length.
+	 * @param maxDistance Furthest distance to look, in world units.
+	 * @param mask Collision categories that can be hit.
+	 * @param hit Filled in with the first hit, or cleared if there is none.
+	 * @return True if an entity was hit.
+	 */
+	public boolean raycast(double originX, double originY, double dirX, double dirY, double maxDistance,
+			int mask, RaycastHit hit) {
+		if (dirX == 0 && dirY == 0) {
+			throw new IllegalArgumentException("Ray direction can't be zero");
+		}
+		if (!(maxDistance >= 0) || Double.isInfinite(maxDistance)) {
+			throw new IllegalArgumentException("Ray length must be positive and finite");
+		}
+		double length = Math.hypot(dirX, dirY);
+		return index.raycast(originX, originY, dirX / length, dirY / length, maxDistance, mask, hit);
+	}
+
+	/**
+	 * Keeps the entity drawn last of those it is given: the one on the layer
+	 * drawn last, and of those the one added last.
+	 */
+	private static class TopmostFinder implements Consumer<Entity> {
+
+		Entity best;
+
+		@Override
+		public void accept(Entity e) {
+			if (best == null) {
+				best = e;
+				return;
+			}
+			int depth = e.layer.compareDepth(best.layer);
+			if (depth > 0 || (depth == 0 && e.sequence > best.sequence)) {
+				best = e;
+			}
+		}
+	}
+
+	/**
+	 * Gets how many collision queries were made against this scene since the
+	 * counters were reset.
+	 *
+	 * @return Number of queries.
+	 */
+	public long getCollisionQueries() {
+		return collisionQueries;
+	}
+
+	/**
+	 * Gets how many pairs of entities were tested for collision since the
+	 * counters were reset. Pairs filtered out by their collision categories
+	 * before their bounds were compared are not counted.
+	 *
+	 * @return Number of candidate pairs tested.
+	 */
+	public long getCollisionTests() {
+		return collisionTests;
+	}
+
+	/**
+	 * Gets how many boxes the static entities of the scene are merged into.
+	 *
+	 * @return Number of merged boxes.
+	 */
+	public int getStaticColliderCount() {
+		return statics.getBoxCount();
+	}
+
+	/**
+	 * Sets the collision counters back to zero.
+	 */
+	public void resetCollisionCounters() {
+		collisionQueries = 0;
+		collisionTests = 0;
+	}
+
+	/**
+	 * Entities without a size have an unknown drawn extent and screen space
+	 * entities are not affected by the camera, so neither can be culled.
+	 */
+	private static boolean isIndexable(Entity e) {
+		return !e.isScreenSpace() && e.getWidth() > 0 && e.getHeight() > 0;
+	}
+
+	/**
+	 * Only static entities that block movement are merged.
+	 */
+	private static boolean isBakeable(Entity e) {
+		return e.isStatic() && e.isCollidable() && !e.isTrigger() && isIndexable(e);
+	}
+
+	/**
+	 * Runs the update phase of the scene. Entity.beforeUpdate is called on
+	 * every entity and the drawable of every entity is advanced first, then
+	 * Entity.update is called on every entity in the order they were added.
+	 * Entities that are ParallelUpdatable are computed on the update threads
+	 * first and then applied in that same order. Collision events are sent
+	 * afterwards for the contacts that started, lasted or ended since the
+	 * last update. A Display runs this after the game listener's update and
+	 * before drawing, so drawing only reads the state the update left behind.
+	 *
+	 * @param dt Seconds since the last update.
+	 */
+	public void update(double dt) {
+		updater.update(dt, entities);
+		contacts.update(entities);
+		despawn();
+	}
+
+	/**
+	 * Turns despawning on or off. While on, every update removes the
+	 * despawnable entities that lie entirely outside the camera view grown
+	 * by a margin on each side, and gives those from an EntityPool back to
+	 * it. Levels that generate content as the camera moves then only hold
+	 * what is near the view.
+	 *
+	 * @param despawnMargin Distance outside the view in world units, or a
+	 * negative value to turn despawning off.
+	 */
+	public void setDespawnMargin(double despawnMargin) {
+		this.despawnMargin = despawnMargin;
+	}
+
+	public double getDespawnMargin() {
+		return despawnMargin;
+	}
+
+	/**
+	 * Removes the despawnable entities that are too far outside the view.
+	 * Only the despawnable entities are looked at, and they are removed
+	 * together before the pooled ones are given back. Nothing is removed
+	 * before the view size is known.
+	 */
+	private void despawn() {
+		if (despawnMargin < 0 || camera.getViewWidth() == 0) {
+			return;
+		}
+		double left = camera.getX() - despawnMargin;
+		double top = camera.getY() - despawnMargin;
+		double right = camera.screenToWorldX(camera.getViewWidth()) + despawnMargin;
+		double bottom = camera.screenToWorldY(camera.getViewHeight()) + despawnMargin;
+		for (int i = 0; i < despawnables.size(); ++i) {
+			Entity e = despawnables.get(i);
+			if (!e.isScreenSpace()
+					&& (e.getX() + e.getWidth() < left || e.getX() > right
+					|| e.getY() + e.getHeight() < top || e.getY() > bottom)) {
+				despawned.add(e);
+			}
+		}
+		if (despawned.isEmpty()) {
+			return;
+		}
+		removeEntities(despawned);
+		for (int i = 0; i < despawned.size(); ++i) {
+			Entity e = despawned.get(i);
+			if (e.pool != null) {
+				e.pool.recycle(e);
+			}
+		}
+		despawned.clear();
+	}
+
+	/**
+	 * Called by an entity of this scene when it is made despawnable or no
+	 * longer is.
+	 *
+	 * @param e Entity that changed.
+	 */
+	void despawnableChanged(Entity e) {
+		if (e.isDespawnable()) {
+			addDespawnable(e);
+		} else {
+			removeDespawnable(e);
+		}
+	}
+
+	private void addDespawnable(Entity e) {
+		e.despawnSlot = despawnables.size();
+		despawnables.add(e);
+	}
+
+	/**
+	 * Takes an entity out of the despawnable entities by moving the last one
+	 * into its place.
+	 */
+	private void removeDespawnable(Entity e) {
+		Entity last = despawnables.remove(despawnables.size() - 1);
+		if (last != e) {
+			despawnables.set(e.despawnSlot, last);
+			last.despawnSlot = e.despawnSlot;
+		}
+		e.despawnSlot = -1;
+	}
+
+	/**
+	 * Adds a listener that is told about every contact the scene reports, in
+	 * addition to the entities of the contact.
+	 *
+	 * @param listener Listener to add.
+	 */
+	public void addCollisionListener(CollisionListener listener) {
+		contacts.addListener(listener);
+	}
+
+	/**
+	 * Removes a collision listener.
+	 *
+	 * @param listener Listener to remove.
+	 */
+	public void removeCollisionListener(CollisionListener listener) {
+		contacts.removeListener(listener);
+	}
+
+	/**
+	 * Sets how many threads compute the updates of ParallelUpdatable
+	 * entities. The result is the same on any number of threads.
+	 *
+	 * @param updateThreads Number of threads, 1 to update on the calling
+	 * thread.
+	 */
+	public void setUpdateThreads(int updateThreads) {
+		if (updateThreads < 1) {
+			throw new IllegalArgumentException("At least one update thread is needed");
+		}
+		updater.setUpdateThreads(updateThreads);
+	}
+
+	/**
+	 * Gets how many threads compute the updates of this scene.
+	 *
+	 * @return Number of update threads.
+	 */
+	public int getUpdateThreads() {
+		return updater.getUpdateThreads();
 	}
 
 	/**
 	 * Draws this scene to a graphics object. No double buffering is done and it
 	 * is recommended that the graphics object supplied is not immediately used
-	 * for display to the screen.
+	 * for display to the screen. The camera transform is applied to world
+	 * entities and removed again for screen space entities. Layers are drawn
+	 * by depth, and entities within a layer in the order they were added.
 	 *
 	 * @param gfx Graphics object to paint the scene to.
 	 */
 	public void draw(Graphics gfx) {
-		for (Entity e : entities) {
-			e.draw(gfx);
-		}
-		if (showingBoundingBoxes) {
-			Color oldColor = gfx.getColor();
-			gfx.setColor(Color.RED);
-			for (Entity e : entities) {
-				double x = e.getX(), y = e.getY(), width = e.getWidth(), height = e.getHeight();
-				if (width == 0 || height == 0) {
-					continue;
-				}
-				gfx.drawRect((int) x, (int) y, (int) width, (int) height);
-			}
+		renderer.draw((Graphics2D) gfx);
+	}
+
+	/**
+	 * Redraws the parts of the view that were damaged since the last call.
+	 * Unlike draw, this clears the damaged parts to the background color
+	 * itself. Everything is redrawn if the camera or view changed.
+	 *
+	 * @param g Graphics object of a buffer holding the last frame.
+	 */
+	void drawDamaged(Graphics2D g) {
+		renderer.drawDamaged(g);
+	}
+
+	/**
+	 * Draws this scene into an image on the render threads, clearing it to
+	 * the background color first.
+	 *
+	 * @param target Image to draw into.
+	 * @param g Graphics object of the image.
+	 */
+	void drawParallel(BufferedImage target, Graphics2D g) {
+		renderer.drawParallel(target, g);
+	}
+
+	/**
+	 * Sets how many threads a Display uses to draw this scene. With more than
+	 * one thread the frame is split into horizontal bands that are drawn at
+	 * the same time into a back buffer kept in main memory, which gives the
+	 * same picture as drawing on one thread. Entities may then be drawn from
+	 * several threads at once, so overrides of Entity.draw must not change
+	 * shared state. Scenes that track damage are always drawn on one thread.
+	 *
+	 * @param renderThreads Number of threads, 1 to draw on the calling thread.
+	 */
+	public void setRenderThreads(int renderThreads) {
+		if (renderThreads < 1) {
+			throw new IllegalArgumentException("At least one render thread is needed");
 		}
+		renderer.setRenderThreads(renderThreads);
+	}
+
+	/**
+	 * Gets how many threads are used to draw this scene.
+	 *
+	 * @return Number of render threads.
+	 */
+	public int getRenderThreads() {
+		return renderer.getRenderThreads();
+	}
+
+	/**
+	 * Turns damage tracking on or off. When on, a Display only clears,
+	 * redraws and shows the parts of the view where entities moved, were
+	 * added or removed, or where their drawable shows a new frame. Scenes
+	 * where little moves, like menus, then cost little to draw. Moving the
+	 * camera or showing bounding boxes redraws everything.
+	 *
+	 * @param damageTracking If true, only changed parts are redrawn.
+	 */
+	public void setDamageTracking(boolean damageTracking) {
+		renderer.setDamageTracking(damageTracking);
+	}
+
+	/**
+	 * Returns true if only changed parts of the view are redrawn.
+	 *
+	 * @return True if damage tracking is on.
+	 */
+	public boolean isDamageTracking() {
+		return renderer.isDamageTracking();
+	}
+
+	/**
+	 * Marks the whole view as damaged, so it is redrawn in the next frame.
+	 */
+	public void damageAll() {
+		if (renderer != null) {
+			renderer.damageAll();
+		}
+	}
+
+	/**
+	 * Marks a rectangle of the view as damaged, for things drawn over the
+	 * scene that the scene does not know about.
+	 *
+	 * @param x Left of the rectangle on the view.
+	 * @param y Top of the rectangle on the view.
+	 * @param width Width of the rectangle.
+	 * @param height Height of the rectangle.
+	 */
+	void damageScreen(int x, int y, int width, int height) {
+		renderer.damageScreen(x, y, width, height);
+	}
+
+	/**
+	 * Gets the left of the area redrawn in the last damage tracked frame.
+	 *
+	 * @return X coordinate on the view.
+	 */
+	public int getDamagedX() {
+		return renderer.getDamagedX();
+	}
+
+	/**
+	 * Gets the top of the area redrawn in the last damage tracked frame.
+	 *
+	 * @return Y coordinate on the view.
+	 */
+	public int getDamagedY() {
+		return renderer.getDamagedY();
+	}
+
+	/**
+	 * Gets the width of the area redrawn in the last damage tracked frame.
+	 *
+	 * @return Width in pixels, 0 if nothing was redrawn.
+	 */
+	public int getDamagedWidth() {
+		return renderer.getDamagedWidth();
+	}
+
+	/**
+	 * Gets the height of the area redrawn in the last damage tracked frame.
+	 *
+	 * @return Height in pixels, 0 if nothing was redrawn.
+	 */
+	public int getDamagedHeight() {
+		return renderer.getDamagedHeight();
+	}
+
+	/**
+	 * Turns culling of entities outside the camera view on or off. Culling
+	 * needs the view size, which a Display sets before drawing.
+	 *
+	 * @param culling If true, only entities in view are drawn.
+	 */
+	public void setCulling(boolean culling) {
+		renderer.setCulling(culling);
+	}
+
+	/**
+	 * Gets how many entities were drawn one by one in the last frame.
+	 * Entities of cached layers are not counted.
+	 *
+	 * @return Number of entities drawn.
+	 */
+	public int getDrawnCount() {
+		return renderer.getDrawnCount();
+	}
+
+	/**
+	 * Gets how many entities were skipped in the last frame because they
+	 * were outside of the camera view.
+	 *
+	 * @return Number of entities culled.
+	 */
+	public int getCulledCount() {
+		return renderer.getCulledCount();
+	}
+
+	/**
+	 * Gets the camera that decides which part of the world is drawn.
+	 *
+	 * @return Camera of the scene.
+	 */
+	public Camera getCamera() {
+		return camera;
 	}
 
 	/**
@@ -73,6 +1093,16 @@ public class Scene {
 	 */
 	public void setShowingBoundingBoxes(boolean showingBoundingBoxes) {
 		this.showingBoundingBoxes = showingBoundingBoxes;
+		damageAll();
+	}
+
+	/**
+	 * Returns true if bounding boxes are drawn.
+	 *
+	 * @return True if bounding boxes are shown.
+	 */
+	public boolean isShowingBoundingBoxes() {
+		return showingBoundingBoxes;
 	}
 
 	/**
@@ -83,7 +1113,8 @@ public class Scene {
 	}
 
 	/**
-	 * Gets the internal array list of entities for the scene.
+	 * Gets the internal array list of entities for the scene. Entities must
+	 * be added and removed through the scene rather than through this list.
 	 * 
 	 * @return Internal ArrayList;
 	 */
@@ -91,6 +1122,29 @@ public class Scene {
 		return entities;
 	}
 
+	/**
+	 * Gets how far the frame being drawn is between the last simulation
+	 * update and the next one. Entities may use this to blend between their
+	 * previous and current state when rendering faster than updating. The
+	 * scene and the camera never apply it themselves, so entities are drawn
+	 * where the last update left them unless game code blends them. It is set
+	 * by the game loop of a Display and stays 0 otherwise.
+	 *
+	 * @return Value from 0 (last update) up to 1 (next update).
+	 */
+	public double getInterpolation() {
+		return interpolation;
+	}
+
+	/**
+	 * Sets the interpolation alpha for the next frame drawn.
+	 *
+	 * @param interpolation Value from 0 up to 1.
+	 */
+	void setInterpolation(double interpolation) {
+		this.interpolation = interpolation;
+	}
+
 	/**
 	 * Sets the new background color for the scene.
 	 * 
@@ -98,6 +1152,7 @@ public class Scene {
 	 */
 	public void setBackgroundColor(Color backgroundColor) {
 		this.backgroundColor = backgroundColor;
+		damageAll();
 	}
 
 	/**
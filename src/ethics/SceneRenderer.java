@@ -0,0 +1,584 @@
+package ethics;
+
+import ethics.imagetools.ImageLoader;
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Comparator;
+
+/**
+ * Does the drawing for a Scene. Entities outside of the camera view are culled
+ * with the scene's broadphase, the rest are drawn by layer and then in the
+ * order they were added, and cached layers are drawn from their cached image.
+ * With damage tracking turned on, only the parts of the view that changed
+ * since the last frame are cleared and redrawn.
+ *
+ * @author Jonathan Cooper
+ */
+class SceneRenderer {
+
+	/**
+	 * Orders entities by layer, then by when they were added to the scene.
+	 */
+	private static final Comparator<Entity> DRAW_ORDER = (a, b) -> {
+		int depth = a.layer.compareDepth(b.layer);
+		return depth != 0 ? depth : Long.compare(a.sequence, b.sequence);
+	};
+
+	private final Scene scene;
+	private final Camera camera;
+	private final ArrayList<Entity> visible = new ArrayList<>();
+	private boolean culling = true;
+	private int drawnCount = 0;
+	private int culledCount = 0;
+
+	private boolean damageTracking = false;
+	private final DamageRegion damage = new DamageRegion();
+	private int lastOffsetX, lastOffsetY, lastViewWidth, lastViewHeight;
+	private double lastZoom;
+	private int damagedX, damagedY, damagedWidth, damagedHeight;
+	private int rectX, rectY, rectWidth, rectHeight;
+
+	private final SpaceSwitch space;
+
+	private int renderThreads = 1;
+	private ParallelSceneRenderer parallel = null;
+	private int[] tops = new int[0];
+	private int[] bottoms = new int[0];
+
+	SceneRenderer(Scene scene) {
+		this.scene = scene;
+		this.camera = scene.getCamera();
+		this.space = new SpaceSwitch(camera);
+	}
+
+	/**
+	 * Draws the whole scene.
+	 *
+	 * @param g Graphics object in screen coordinates.
+	 */
+	void draw(Graphics2D g) {
+		updateCaches();
+		ArrayList<Entity> drawList = collectDrawList();
+		space.begin(g);
+		drawEntities(g, drawList, -1);
+		if (scene.isShowingBoundingBoxes()) {
+			drawBoundingBoxes(g, drawList);
+		}
+		space.end(g);
+	}
+
+	/**
+	 * Draws the whole scene into an image using several threads, clearing it
+	 * to the background color first. The result is the same as clearing the
+	 * image and calling draw, which is done instead at zoom levels that can't
+	 * be drawn in bands.
+	 *
+	 * @param target Image to draw into.
+	 * @param g Graphics object of the image in screen coordinates.
+	 */
+	void drawParallel(BufferedImage target, Graphics2D g) {
+		if (ParallelSceneRenderer.getBandStep(camera.getZoom()) == 0) {
+			Color oldColor = g.getColor();
+			g.setColor(scene.getBackgroundColor());
+			g.fillRect(0, 0, target.getWidth(), target.getHeight());
+			g.setColor(oldColor);
+			draw(g);
+			return;
+		}
+		updateCaches();
+		ArrayList<Entity> drawList = collectDrawList();
+		if (tops.length < drawList.size()) {
+			tops = new int[drawList.size() * 2];
+			bottoms = new int[drawList.size() * 2];
+		}
+		for (int i = 0; i < drawList.size(); ++i) {
+			Entity e = drawList.get(i);
+			entityRect(e, false);
+			tops[i] = rectY;
+			bottoms[i] = rectY + rectHeight;
+		}
+		if (parallel == null) {
+			parallel = new ParallelSceneRenderer(camera, renderThreads);
+		}
+		parallel.draw(target, drawList, tops, bottoms, scene.getLayers(), scene.getBackgroundColor());
+		if (scene.isShowingBoundingBoxes()) {
+			space.begin(g);
+			drawBoundingBoxes(g, drawList);
+			space.end(g);
+		}
+	}
+
+	/**
+	 * Redraws the parts of the view that were damaged since the last call.
+	 * Unlike draw, this clears the damaged parts to the background color
+	 * itself. Everything is redrawn if the camera or view changed.
+	 *
+	 * @param g Graphics object of a buffer holding the last frame.
+	 */
+	void drawDamaged(Graphics2D g) {
+		int viewWidth = camera.getViewWidth(), viewHeight = camera.getViewHeight();
+		int cameraX = (int) Math.floor(camera.getX());
+		int cameraY = (int) Math.floor(camera.getY());
+		if (cameraX != lastOffsetX || cameraY != lastOffsetY || camera.getZoom() != lastZoom
+				|| viewWidth != lastViewWidth || viewHeight != lastViewHeight || scene.isShowingBoundingBoxes()) {
+			damage.addAll();
+			lastOffsetX = cameraX;
+			lastOffsetY = cameraY;
+			lastZoom = camera.getZoom();
+			lastViewWidth = viewWidth;
+			lastViewHeight = viewHeight;
+		}
+		updateCaches();
+		ArrayList<Entity> drawList = collectDrawList();
+		Color oldColor = g.getColor();
+		if (damage.isFull()) {
+			g.setColor(scene.getBackgroundColor());
+			g.fillRect(0, 0, viewWidth, viewHeight);
+			g.setColor(oldColor);
+			space.begin(g);
+			drawEntities(g, drawList, -1);
+			if (scene.isShowingBoundingBoxes()) {
+				drawBoundingBoxes(g, drawList);
+			}
+			space.end(g);
+			for (int i = 0; i < drawList.size(); ++i) {
+				drawList.get(i).redraw = false;
+			}
+			setDamagedBounds(0, 0, viewWidth, viewHeight);
+			damage.clear();
+			return;
+		}
+		for (int i = 0; i < drawList.size(); ++i) {
+			Entity e = drawList.get(i);
+			if (e.redraw || !e.drawn || e.hasNewFrame()) {
+				damageDrawn(e);
+				entityRect(e, false);
+				damage.add(rectX, rectY, rectWidth, rectHeight);
+				e.redraw = false;
+			}
+		}
+		int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+		space.begin(g);
+		for (int r = 0; r < damage.getCount(); ++r) {
+			int x = Math.max(damage.getX(r), 0), y = Math.max(damage.getY(r), 0);
+			int right = Math.min(damage.getX(r) + damage.getWidth(r), viewWidth);
+			int bottom = Math.min(damage.getY(r) + damage.getHeight(r), viewHeight);
+			if (right <= x || bottom <= y) {
+				continue;
+			}
+			space.set(g, false);
+			g.setClip(x, y, right - x, bottom - y);
+			g.setColor(scene.getBackgroundColor());
+			g.fillRect(x, y, right - x, bottom - y);
+			g.setColor(oldColor);
+			drawEntities(g, drawList, r);
+			minX = Math.min(minX, x);
+			minY = Math.min(minY, y);
+			maxX = Math.max(maxX, right);
+			maxY = Math.max(maxY, bottom);
+		}
+		space.end(g);
+		g.setClip(null);
+		if (minX < maxX) {
+			setDamagedBounds(minX, minY, maxX - minX, maxY - minY);
+		} else {
+			setDamagedBounds(0, 0, 0, 0);
+		}
+		damage.clear();
+	}
+
+	/**
+	 * Finds the entities to draw individually this frame, in draw order.
+	 * Entities of cached layers are left out since the layer's image is drawn
+	 * in their place.
+	 *
+	 * @return Entities to draw.
+	 */
+	private ArrayList<Entity> collectDrawList() {
+		visible.clear();
+		if (culling && camera.getViewWidth() > 0 && camera.getViewHeight() > 0) {
+			double minX = camera.getX(), minY = camera.getY();
+			double maxX = minX + camera.getViewWidth() / camera.getZoom();
+			double maxY = minY + camera.getViewHeight() / camera.getZoom();
+			scene.getIndex().query(minX, minY, maxX, maxY, Entity.ALL_CATEGORIES, visible);
+			int kept = 0;
+			for (int i = 0; i < visible.size(); ++i) {
+				Entity e = visible.get(i);
+				if (!e.layer.isUsingCache()) {
+					visible.set(kept++, e);
+				}
+			}
+			while (visible.size() > kept) {
+				visible.remove(visible.size() - 1);
+			}
+			addUncached(scene.getUnindexed());
+		} else {
+			addUncached(scene.entities);
+		}
+		visible.sort(DRAW_ORDER);
+		int cachedCount = 0;
+		ArrayList<RenderLayer> layers = scene.getLayers();
+		for (int i = 0; i < layers.size(); ++i) {
+			if (layers.get(i).isUsingCache()) {
+				cachedCount += layers.get(i).entities.size();
+			}
+		}
+		drawnCount = visible.size();
+		culledCount = scene.entities.size() - cachedCount - drawnCount;
+		return visible;
+	}
+
+	private void addUncached(ArrayList<Entity> entities) {
+		for (int i = 0; i < entities.size(); ++i) {
+			Entity e = entities.get(i);
+			if (!e.layer.isUsingCache()) {
+				visible.add(e);
+			}
+		}
+	}
+
+	/**
+	 * Draws entities and the cached layers between them, switching between
+	 * world and screen coordinates as needed.
+	 *
+	 * @param g Graphics object to draw to.
+	 * @param drawList Entities to draw.
+	 * @param damageIndex If not negative, only what overlaps this damaged
+	 * rectangle is drawn.
+	 */
+	private void drawEntities(Graphics2D g, ArrayList<Entity> drawList, int damageIndex) {
+		ArrayList<RenderLayer> layers = scene.getLayers();
+		int layerIndex = 0;
+		for (int i = 0; i < drawList.size(); ++i) {
+			Entity e = drawList.get(i);
+			while (layerIndex < layers.size() && layers.get(layerIndex).compareDepth(e.layer) <= 0) {
+				drawCache(g, layers.get(layerIndex++), damageIndex);
+			}
+			if (damageIndex >= 0) {
+				entityRect(e, false);
+				if (!damage.intersects(damageIndex, rectX, rectY, rectWidth, rectHeight)) {
+					continue;
+				}
+			}
+			space.set(g, !e.isScreenSpace());
+			e.draw(g);
+		}
+		while (layerIndex < layers.size()) {
+			drawCache(g, layers.get(layerIndex++), damageIndex);
+		}
+	}
+
+	/**
+	 * Draws the cached images of a layer, if it is drawn from a cache.
+	 */
+	private void drawCache(Graphics2D g, RenderLayer layer, int damageIndex) {
+		if (!layer.isUsingCache()) {
+			return;
+		}
+		if (layer.worldImage != null) {
+			BufferedImage image = layer.worldImage;
+			toScreenRect(layer.worldX, layer.worldY, image.getWidth(), image.getHeight(), false);
+			if (damageIndex < 0 || damage.intersects(damageIndex, rectX, rectY, rectWidth, rectHeight)) {
+				space.set(g, true);
+				g.drawImage(image, layer.worldX, layer.worldY, null);
+			}
+		}
+		if (layer.screenImage != null) {
+			BufferedImage image = layer.screenImage;
+			if (damageIndex < 0 || damage.intersects(damageIndex, layer.screenX, layer.screenY, image.getWidth(), image.getHeight())) {
+				space.set(g, false);
+				g.drawImage(image, layer.screenX, layer.screenY, null);
+			}
+		}
+	}
+
+	private void drawBoundingBoxes(Graphics2D g, ArrayList<Entity> drawList) {
+		Color oldColor = g.getColor();
+		g.setColor(Color.RED);
+		for (int i = 0; i < drawList.size(); ++i) {
+			drawBoundingBox(g, drawList.get(i));
+		}
+		ArrayList<RenderLayer> layers = scene.getLayers();
+		for (int i = 0; i < layers.size(); ++i) {
+			if (layers.get(i).isUsingCache()) {
+				ArrayList<Entity> entities = layers.get(i).entities;
+				for (int j = 0; j < entities.size(); ++j) {
+					drawBoundingBox(g, entities.get(j));
+				}
+			}
+		}
+		g.setColor(oldColor);
+	}
+
+	private void drawBoundingBox(Graphics2D g, Entity e) {
+		double x = e.getX(), y = e.getY(), width = e.getWidth(), height = e.getHeight();
+		if (width == 0 || height == 0) {
+			return;
+		}
+		space.set(g, !e.isScreenSpace());
+		g.drawRect((int) x, (int) y, (int) width, (int) height);
+	}
+
+	/**
+	 * Draws every cached layer that was invalidated again, damaging where its
+	 * old and new images are. The caches still valid are kept, and the
+	 * layers drawn again share what is left of the pixels all caches of the
+	 * scene may have, in the order they are drawn.
+	 */
+	private void updateCaches() {
+		ArrayList<RenderLayer> layers = scene.getLayers();
+		long used = 0;
+		for (int i = 0; i < layers.size(); ++i) {
+			RenderLayer layer = layers.get(i);
+			if (layer.isUsingCache() && layer.valid) {
+				used += pixels(layer.worldImage) + pixels(layer.screenImage);
+			}
+		}
+		for (int i = 0; i < layers.size(); ++i) {
+			RenderLayer layer = layers.get(i);
+			if (!layer.isCached() || layer.valid) {
+				continue;
+			}
+			boolean wasUsingCache = layer.worldImage != null || layer.screenImage != null;
+			damageCache(layer);
+			layer.valid = true;
+			long budget = Math.min(RenderLayer.MAX_CACHE_PIXELS, RenderLayer.MAX_TOTAL_CACHE_PIXELS - used);
+			layer.worldImage = rasterize(layer, false, layer.worldImage, budget);
+			if (!layer.tooLarge) {
+				budget -= pixels(layer.worldImage);
+				layer.screenImage = rasterize(layer, true, layer.screenImage, budget);
+			}
+			if (layer.tooLarge) {
+				layer.worldImage = null;
+				layer.screenImage = null;
+			}
+			if (layer.tooLarge && wasUsingCache) {
+				damage.addAll();
+			}
+			used += pixels(layer.worldImage) + pixels(layer.screenImage);
+			damageCache(layer);
+		}
+	}
+
+	private static long pixels(BufferedImage image) {
+		return image == null ? 0 : (long) image.getWidth() * image.getHeight();
+	}
+
+	/**
+	 * Draws the entities of a layer in one space into an image just large
+	 * enough to hold them.
+	 *
+	 * @param layer Layer to draw.
+	 * @param screenSpace Which entities of the layer to draw.
+	 * @param reuse Previous image, reused if it has the right size.
+	 * @param maxPixels Most pixels the image may have. The layer is marked as
+	 * too large if it needs more.
+	 * @return Image of the entities, or null if there are none.
+	 */
+	private BufferedImage rasterize(RenderLayer layer, boolean screenSpace, BufferedImage reuse, long maxPixels) {
+		ArrayList<Entity> entities = layer.entities;
+		int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+		for (int i = 0; i < entities.size(); ++i) {
+			Entity e = entities.get(i);
+			if (e.isScreenSpace() != screenSpace) {
+				continue;
+			}
+			minX = Math.min(minX, (int) e.getX());
+			minY = Math.min(minY, (int) e.getY());
+			maxX = Math.max(maxX, (int) e.getX() + e.getFrameWidth());
+			maxY = Math.max(maxY, (int) e.getY() + e.getFrameHeight());
+		}
+		BufferedImage image = null;
+		if (minX < maxX && minY < maxY) {
+			int width = maxX - minX, height = maxY - minY;
+			if ((long) width * height > maxPixels) {
+				layer.tooLarge = true;
+			} else {
+				image = reuse;
+				if (image == null || image.getWidth() != width || image.getHeight() != height) {
+					image = ImageLoader.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+				}
+				Graphics2D g = image.createGraphics();
+				Composite oldComposite = g.getComposite();
+				g.setComposite(AlphaComposite.Clear);
+				g.fillRect(0, 0, width, height);
+				g.setComposite(oldComposite);
+				g.translate(-minX, -minY);
+				for (int i = 0; i < entities.size(); ++i) {
+					Entity e = entities.get(i);
+					if (e.isScreenSpace() == screenSpace) {
+						e.draw(g);
+					}
+				}
+				g.dispose();
+			}
+		}
+		if (screenSpace) {
+			layer.screenX = minX;
+			layer.screenY = minY;
+		} else {
+			layer.worldX = minX;
+			layer.worldY = minY;
+		}
+		return image;
+	}
+
+	private void damageCache(RenderLayer layer) {
+		if (!damageTracking) {
+			return;
+		}
+		if (layer.worldImage != null) {
+			toScreenRect(layer.worldX, layer.worldY, layer.worldImage.getWidth(), layer.worldImage.getHeight(), false);
+			damage.add(rectX, rectY, rectWidth, rectHeight);
+		}
+		if (layer.screenImage != null) {
+			damage.add(layer.screenX, layer.screenY, layer.screenImage.getWidth(), layer.screenImage.getHeight());
+		}
+	}
+
+	/**
+	 * Called when an entity moved, changed or is about to be removed.
+	 *
+	 * @param e Entity that changed.
+	 */
+	void entityChanged(Entity e) {
+		damageDrawn(e);
+		e.redraw = true;
+	}
+
+	/**
+	 * Marks part of an entity as damaged without redrawing all of it.
+	 *
+	 * @param e Entity that changed.
+	 * @param x Left of the changed area in the entity's coordinates.
+	 * @param y Top of the changed area.
+	 * @param width Width of the changed area.
+	 * @param height Height of the changed area.
+	 */
+	void damageArea(Entity e, int x, int y, int width, int height) {
+		if (damageTracking && e.drawn && !e.layer.isUsingCache()) {
+			toScreenRect(x, y, width, height, e.isScreenSpace());
+			damage.add(rectX, rectY, rectWidth, rectHeight);
+		}
+	}
+
+	/**
+	 * Marks where an entity was last drawn as damaged.
+	 *
+	 * @param e Entity about to move, change or disappear.
+	 */
+	void damageDrawn(Entity e) {
+		if (damageTracking && e.drawn && !e.layer.isUsingCache()) {
+			entityRect(e, true);
+			damage.add(rectX, rectY, rectWidth, rectHeight);
+		}
+	}
+
+	/**
+	 * Works out the rectangle an entity covers on the screen and stores it in
+	 * rectX, rectY, rectWidth and rectHeight.
+	 *
+	 * @param e Entity to find the rectangle of.
+	 * @param lastDrawn If true, where it was last drawn, otherwise where it
+	 * will be drawn next.
+	 */
+	private void entityRect(Entity e, boolean lastDrawn) {
+		if (lastDrawn) {
+			toScreenRect(e.drawnX, e.drawnY, e.drawnWidth, e.drawnHeight, e.isScreenSpace());
+		} else {
+			toScreenRect((int) e.getX(), (int) e.getY(), e.getFrameWidth(), e.getFrameHeight(), e.isScreenSpace());
+		}
+	}
+
+	/**
+	 * Converts a rectangle to screen coordinates and stores it in rectX,
+	 * rectY, rectWidth and rectHeight.
+	 */
+	private void toScreenRect(int x, int y, int width, int height, boolean screenSpace) {
+		if (screenSpace) {
+			rectX = x;
+			rectY = y;
+			rectWidth = width;
+			rectHeight = height;
+		} else {
+			double zoom = camera.getZoom();
+			int cameraX = (int) Math.floor(camera.getX());
+			int cameraY = (int) Math.floor(camera.getY());
+			rectX = (int) Math.floor((x - cameraX) * zoom);
+			rectY = (int) Math.floor((y - cameraY) * zoom);
+			rectWidth = (int) Math.ceil((x + width - cameraX) * zoom) - rectX;
+			rectHeight = (int) Math.ceil((y + height - cameraY) * zoom) - rectY;
+		}
+	}
+
+	private void setDamagedBounds(int x, int y, int width, int height) {
+		damagedX = x;
+		damagedY = y;
+		damagedWidth = width;
+		damagedHeight = height;
+	}
+
+	void setDamageTracking(boolean damageTracking) {
+		this.damageTracking = damageTracking;
+		damage.addAll();
+	}
+
+	boolean isDamageTracking() {
+		return damageTracking;
+	}
+
+	void damageAll() {
+		damage.addAll();
+	}
+
+	void damageScreen(int x, int y, int width, int height) {
+		if (damageTracking) {
+			damage.add(x, y, width, height);
+		}
+	}
+
+	int getDamagedX() {
+		return damagedX;
+	}
+
+	int getDamagedY() {
+		return damagedY;
+	}
+
+	int getDamagedWidth() {
+		return damagedWidth;
+	}
+
+	int getDamagedHeight() {
+		return damagedHeight;
+	}
+
+	void setRenderThreads(int renderThreads) {
+		if (renderThreads != this.renderThreads && parallel != null) {
+			parallel.shutdown();
+			parallel = null;
+		}
+		this.renderThreads = renderThreads;
+	}
+
+	int getRenderThreads() {
+		return renderThreads;
+	}
+
+	void setCulling(boolean culling) {
+		this.culling = culling;
+	}
+
+	int getDrawnCount() {
+		return drawnCount;
+	}
+
+	int getCulledCount() {
+		return culledCount;
+	}
+}
@@ -0,0 +1,152 @@
+package ethics;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs the update phase of a Scene. Every entity gets its beforeUpdate call
+ * first, and then the drawables of all entities are moved on by one update,
+ * so animations follow the simulation rather than the frame rate and keep
+ * running for entities out of view. Entities that are ParallelUpdatable
+ * then have their compute step spread over a pool of threads. After that
+ * every entity is updated or has its result applied on the calling thread,
+ * in the order the entities were added. Entities added during the update wait
+ * for the next one, and entities removed during it are skipped.
+ *
+ * @author Jonathan Cooper
+ */
+final class SceneUpdater {
+
+	/**
+	 * Fewest entities a single compute task is given, so small scenes are
+	 * not split into tasks that cost more than they save.
+	 */
+	private static final int MIN_TASK_SIZE = 64;
+
+	private final Scene scene;
+	private int updateThreads = 1;
+	private ForkJoinPool pool = null;
+
+	private Entity[] updateList = new Entity[16];
+	private ParallelUpdatable[] computeList = new ParallelUpdatable[16];
+	private int computeCount = 0;
+	private double dt;
+
+	SceneUpdater(Scene scene) {
+		this.scene = scene;
+	}
+
+	/**
+	 * Updates every entity of the scene once.
+	 *
+	 * @param dt Seconds since the last update.
+	 * @param entities Entities of the scene in the order they were added.
+	 */
+	void update(double dt, ArrayList<Entity> entities) {
+		int count = entities.size();
+		if (updateList.length < count) {
+			updateList = new Entity[Math.max(count, updateList.length * 2)];
+		}
+		computeCount = 0;
+		for (int i = 0; i < count; ++i) {
+			Entity e = entities.get(i);
+			updateList[i] = e;
+			if (e instanceof ParallelUpdatable) {
+				if (computeCount == computeList.length) {
+					ParallelUpdatable[] grown = new ParallelUpdatable[computeCount * 2];
+					System.arraycopy(computeList, 0, grown, 0, computeCount);
+					computeList = grown;
+				}
+				computeList[computeCount++] = (ParallelUpdatable) e;
+			}
+		}
+		for (int i = 0; i < count; ++i) {
+			if (updateList[i].scene == scene) {
+				updateList[i].beforeUpdate();
+			}
+		}
+		for (int i = 0; i < count; ++i) {
+			if (updateList[i].scene == scene) {
+				advanceDrawable(updateList[i], dt);
+			}
+		}
+		this.dt = dt;
+		if (updateThreads > 1 && computeCount > MIN_TASK_SIZE) {
+			if (pool == null) {
+				pool = new ForkJoinPool(updateThreads);
+			}
+			pool.invoke(new ComputeTask(0, computeCount));
+		} else {
+			compute(0, computeCount);
+		}
+		for (int i = 0; i < count; ++i) {
+			Entity e = updateList[i];
+			updateList[i] = null;
+			if (e.scene != scene) {
+				continue;
+			}
+			if (e instanceof ParallelUpdatable) {
+				((ParallelUpdatable) e).apply();
+			} else {
+				e.update(dt);
+			}
+		}
+		for (int i = 0; i < computeCount; ++i) {
+			computeList[i] = null;
+		}
+	}
+
+	/**
+	 * Moves the drawable of an entity on by one update. The cache of its
+	 * layer is drawn again if that changed what the entity looks like.
+	 */
+	private static void advanceDrawable(Entity e, double dt) {
+		e.getDrawable().update(dt);
+		if (e.layer.isCached() && e.drawn && e.hasNewFrame()) {
+			e.layer.invalidate();
+		}
+	}
+
+	private void compute(int from, int to) {
+		for (int i = from; i < to; ++i) {
+			computeList[i].compute(dt);
+		}
+	}
+
+	void setUpdateThreads(int updateThreads) {
+		if (updateThreads != this.updateThreads && pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+		this.updateThreads = updateThreads;
+	}
+
+	int getUpdateThreads() {
+		return updateThreads;
+	}
+
+	/**
+	 * Computes a range of entities, splitting it up until each task is small.
+	 */
+	@SuppressWarnings("serial")
+	private class ComputeTask extends RecursiveAction {
+
+		private final int from, to;
+
+		ComputeTask(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= MIN_TASK_SIZE) {
+				SceneUpdater.this.compute(from, to);
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new ComputeTask(from, middle), new ComputeTask(middle, to));
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package ethics;
+
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+
+/**
+ * Switches a graphics object between screen coordinates and the world
+ * coordinates of a camera while a frame is drawn. The camera offset is
+ * rounded down to whole pixels so entities don't shimmer.
+ *
+ * @author Jonathan Cooper
+ */
+final class SpaceSwitch {
+
+	private final Camera camera;
+	private boolean inWorld;
+	private int offsetX, offsetY;
+	private AffineTransform screenTransform;
+
+	SpaceSwitch(Camera camera) {
+		this.camera = camera;
+	}
+
+	/**
+	 * Starts drawing a frame with the graphics object in screen coordinates.
+	 *
+	 * @param g Graphics object in screen coordinates.
+	 */
+	void begin(Graphics2D g) {
+		offsetX = (int) Math.floor(camera.getX());
+		offsetY = (int) Math.floor(camera.getY());
+		screenTransform = camera.getZoom() != 1 ? g.getTransform() : null;
+		inWorld = false;
+	}
+
+	/**
+	 * Puts the graphics object back into screen coordinates.
+	 *
+	 * @param g Graphics object being drawn to.
+	 */
+	void end(Graphics2D g) {
+		set(g, false);
+		screenTransform = null;
+	}
+
+	/**
+	 * Switches the graphics object between world and screen coordinates.
+	 *
+	 * @param g Graphics object being drawn to.
+	 * @param world True to switch to world coordinates.
+	 */
+	void set(Graphics2D g, boolean world) {
+		if (world == inWorld) {
+			return;
+		}
+		inWorld = world;
+		if (screenTransform == null) {
+			if (world) {
+				g.translate(-offsetX, -offsetY);
+			} else {
+				g.translate(offsetX, offsetY);
+			}
+		} else if (world) {
+			g.scale(camera.getZoom(), camera.getZoom());
+			g.translate(-offsetX, -offsetY);
+		} else {
+			g.setTransform(screenTransform);
+		}
+	}
+}
@@ -0,0 +1,385 @@
+package ethics;
+
+import java.util.ArrayList;
+import java.util.function.Consumer;
+
+/**
+ * A uniform grid of square cells that entities are sorted into by their
+ * bounds. Only cells that contain something are stored, in an open addressed
+ * hash table keyed by cell coordinates, so the world may be any size. An
+ * entity is listed in every cell its bounds overlap and is only moved between
+ * cells when it crosses a cell border. Rays are traced through the cells in
+ * the order they cross them, so a raycast stops at the first cell holding a
+ * hit. This is the broadphase a Scene uses unless told otherwise, and it
+ * works best when entities are about the size of a cell or smaller.
+ *
+ * @author Jonathan Cooper
+ */
+public class SpatialHash implements BroadPhase {
+
+	private static final int MIN_CAPACITY = 64;
+
+	private final int cellSize;
+	private long[] keys = new long[MIN_CAPACITY];
+	private Cell[] cells = new Cell[MIN_CAPACITY];
+	private int size = 0;
+	private int queryStamp = 0;
+
+	/**
+	 * The entities in a single cell.
+	 */
+	private static class Cell {
+
+		Entity[] items = new Entity[4];
+		int count = 0;
+
+		void add(Entity e) {
+			if (count == items.length) {
+				Entity[] grown = new Entity[count * 2];
+				System.arraycopy(items, 0, grown, 0, count);
+				items = grown;
+			}
+			items[count++] = e;
+		}
+
+		void remove(Entity e) {
+			for (int i = 0; i < count; ++i) {
+				if (items[i] == e) {
+					items[i] = items[--count];
+					items[count] = null;
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Creates a new spatial hash.
+	 *
+	 * @param cellSize Width and height of a cell in world units.
+	 */
+	public SpatialHash(int cellSize) {
+		if (cellSize <= 0) {
+			throw new IllegalArgumentException("Cell size must be positive");
+		}
+		this.cellSize = cellSize;
+	}
+
+	public int getCellSize() {
+		return cellSize;
+	}
+
+	/**
+	 * Adds an entity to every cell its bounds overlap.
+	 *
+	 * @param e Entity to add.
+	 */
+	@Override
+	public void insert(Entity e) {
+		e.cellMinX = cellOf(e.getX());
+		e.cellMinY = cellOf(e.getY());
+		e.cellMaxX = cellOf(e.getX() + e.getWidth());
+		e.cellMaxY = cellOf(e.getY() + e.getHeight());
+		for (int cx = e.cellMinX; cx <= e.cellMaxX; ++cx) {
+			for (int cy = e.cellMinY; cy <= e.cellMaxY; ++cy) {
+				getOrCreate(cx, cy).add(e);
+			}
+		}
+	}
+
+	/**
+	 * Removes an entity from the cells it was added to.
+	 *
+	 * @param e Entity to remove.
+	 */
+	@Override
+	public void remove(Entity e) {
+		for (int cx = e.cellMinX; cx <= e.cellMaxX; ++cx) {
+			for (int cy = e.cellMinY; cy <= e.cellMaxY; ++cy) {
+				int slot = find(cx, cy);
+				if (slot >= 0) {
+					Cell cell = cells[slot];
+					cell.remove(e);
+					if (cell.count == 0) {
+						delete(slot);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Moves an entity to the cells of its current bounds. Does nothing if the
+	 * entity still overlaps the same cells.
+	 *
+	 * @param e Entity that moved or changed size.
+	 */
+	@Override
+	public void update(Entity e) {
+		if (e.cellMinX == cellOf(e.getX())
+				&& e.cellMinY == cellOf(e.getY())
+				&& e.cellMaxX == cellOf(e.getX() + e.getWidth())
+				&& e.cellMaxY == cellOf(e.getY() + e.getHeight())) {
+			return;
+		}
+		remove(e);
+		insert(e);
+	}
+
+	/**
+	 * Finds every entity in one of the given collision categories whose
+	 * bounds overlap a rectangle. The categories are checked before the
+	 * bounds.
+	 *
+	 * @param minX Left of the rectangle.
+	 * @param minY Top of the rectangle.
+	 * @param maxX Right of the rectangle.
+	 * @param maxY Bottom of the rectangle.
+	 * @param categories Collision categories to find.
+	 * @param out List the entities found are added to.
+	 */
+	@Override
+	public void query(double minX, double minY, double maxX, double maxY, int categories, ArrayList<Entity> out) {
+		int stamp = ++queryStamp;
+		int cellMaxX = cellOf(maxX);
+		int cellMaxY = cellOf(maxY);
+		for (int cx = cellOf(minX); cx <= cellMaxX; ++cx) {
+			for (int cy = cellOf(minY); cy <= cellMaxY; ++cy) {
+				int slot = find(cx, cy);
+				if (slot < 0) {
+					continue;
+				}
+				Cell cell = cells[slot];
+				for (int i = 0; i < cell.count; ++i) {
+					Entity e = cell.items[i];
+					if (e.queryStamp == stamp) {
+						continue;
+					}
+					e.queryStamp = stamp;
+					if ((e.getCollisionCategory() & categories) == 0) {
+						continue;
+					}
+					if (e.getX() < maxX && e.getX() + e.getWidth() > minX
+							&& e.getY() < maxY && e.getY() + e.getHeight() > minY) {
+						out.add(e);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Passes every entity in one of the given collision categories whose
+	 * bounds overlap a rectangle to a sink. An entity in several of the cells
+	 * searched is only passed on from the first of them, found from its own
+	 * cells rather than by marking it, so the sink may query the hash again.
+	 *
+	 * @param minX Left of the rectangle.
+	 * @param minY Top of the rectangle.
+	 * @param maxX Right of the rectangle.
+	 * @param maxY Bottom of the rectangle.
+	 * @param categories Collision categories to find.
+	 * @param sink Receives the entities found.
+	 * @return Number of entities found.
+	 */
+	@Override
+	public int query(double minX, double minY, double maxX, double maxY, int categories, Consumer<? super Entity> sink) {
+		int found = 0;
+		int cellMinX = cellOf(minX);
+		int cellMinY = cellOf(minY);
+		int cellMaxX = cellOf(maxX);
+		int cellMaxY = cellOf(maxY);
+		for (int cx = cellMinX; cx <= cellMaxX; ++cx) {
+			for (int cy = cellMinY; cy <= cellMaxY; ++cy) {
+				int slot = find(cx, cy);
+				if (slot < 0) {
+					continue;
+				}
+				Cell cell = cells[slot];
+				for (int i = 0; i < cell.count; ++i) {
+					Entity e = cell.items[i];
+					if (cx != Math.max(e.cellMinX, cellMinX) || cy != Math.max(e.cellMinY, cellMinY)
+							|| (e.getCollisionCategory() & categories) == 0) {
+						continue;
+					}
+					if (e.getX() < maxX && e.getX() + e.getWidth() > minX
+							&& e.getY() < maxY && e.getY() + e.getHeight() > minY) {
+						sink.accept(e);
+						++found;
+					}
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Passes every entity in one of the given collision categories that
+	 * covers a point to a sink. Entities cover their left and top edges but
+	 * not their right and bottom ones. Only the cell holding the point is
+	 * searched.
+	 *
+	 * @param x X coordinate of the point.
+	 * @param y Y coordinate of the point.
+	 * @param categories Collision categories to find.
+	 * @param sink Receives the entities found.
+	 * @return Number of entities found.
+	 */
+	@Override
+	public int queryPoint(double x, double y, int categories, Consumer<? super Entity> sink) {
+		int slot = find(cellOf(x), cellOf(y));
+		if (slot < 0) {
+			return 0;
+		}
+		int found = 0;
+		Cell cell = cells[slot];
+		for (int i = 0; i < cell.count; ++i) {
+			Entity e = cell.items[i];
+			if ((e.getCollisionCategory() & categories) != 0
+					&& e.getX() <= x && x < e.getX() + e.getWidth() && e.getY() <= y && y < e.getY() + e.getHeight()) {
+				sink.accept(e);
+				++found;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Finds the first entity a ray enters. The cells are visited in the order
+	 * the ray crosses them, and the search stops once the nearest hit so far
+	 * lies in the cells already visited.
+	 */
+	@Override
+	public boolean raycast(double originX, double originY, double dX, double dY, double maxDistance,
+			int categories, RaycastHit hit) {
+		int cx = cellOf(originX), cy = cellOf(originY);
+		int stepX = dX > 0 ? 1 : dX < 0 ? -1 : 0;
+		int stepY = dY > 0 ? 1 : dY < 0 ? -1 : 0;
+		double nextX = stepX > 0 ? ((double) (cx + 1) * cellSize - originX) / dX
+				: stepX < 0 ? ((double) cx * cellSize - originX) / dX : Double.POSITIVE_INFINITY;
+		double nextY = stepY > 0 ? ((double) (cy + 1) * cellSize - originY) / dY
+				: stepY < 0 ? ((double) cy * cellSize - originY) / dY : Double.POSITIVE_INFINITY;
+		double deltaX = stepX != 0 ? cellSize / Math.abs(dX) : Double.POSITIVE_INFINITY;
+		double deltaY = stepY != 0 ? cellSize / Math.abs(dY) : Double.POSITIVE_INFINITY;
+		int stamp = ++queryStamp;
+		hit.clear();
+		double best = maxDistance;
+		while (true) {
+			int slot = find(cx, cy);
+			if (slot >= 0) {
+				Cell cell = cells[slot];
+				for (int i = 0; i < cell.count; ++i) {
+					Entity e = cell.items[i];
+					if (e.queryStamp != stamp) {
+						e.queryStamp = stamp;
+						best = hit.offer(e, categories, originX, originY, dX, dY, best);
+					}
+				}
+			}
+			double cellExit = Math.min(nextX, nextY);
+			if ((hit.isHit() && best <= cellExit) || cellExit > maxDistance) {
+				break;
+			}
+			if (nextX < nextY) {
+				cx += stepX;
+				nextX += deltaX;
+			} else {
+				cy += stepY;
+				nextY += deltaY;
+			}
+		}
+		return hit.isHit();
+	}
+
+	/**
+	 * Removes everything from the hash.
+	 */
+	@Override
+	public void clear() {
+		keys = new long[MIN_CAPACITY];
+		cells = new Cell[MIN_CAPACITY];
+		size = 0;
+	}
+
+	private int cellOf(double coordinate) {
+		return (int) Math.floor(coordinate / cellSize);
+	}
+
+	private static long key(int cx, int cy) {
+		return ((long) cx << 32) | (cy & 0xffffffffL);
+	}
+
+	private int slotOf(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash >>> 32) & (cells.length - 1);
+	}
+
+	private int find(int cx, int cy) {
+		long key = key(cx, cy);
+		int mask = cells.length - 1;
+		for (int slot = slotOf(key); cells[slot] != null; slot = (slot + 1) & mask) {
+			if (keys[slot] == key) {
+				return slot;
+			}
+		}
+		return -1;
+	}
+
+	private Cell getOrCreate(int cx, int cy) {
+		long key = key(cx, cy);
+		int mask = cells.length - 1;
+		int slot = slotOf(key);
+		for (; cells[slot] != null; slot = (slot + 1) & mask) {
+			if (keys[slot] == key) {
+				return cells[slot];
+			}
+		}
+		Cell cell = new Cell();
+		keys[slot] = key;
+		cells[slot] = cell;
+		if (++size * 2 > cells.length) {
+			resize(cells.length * 2);
+		}
+		return cell;
+	}
+
+	/**
+	 * Removes a slot from the table, shifting back any entries that probed
+	 * past it so lookups keep finding them.
+	 */
+	private void delete(int slot) {
+		int mask = cells.length - 1;
+		cells[slot] = null;
+		--size;
+		int next = (slot + 1) & mask;
+		while (cells[next] != null) {
+			int home = slotOf(keys[next]);
+			boolean movable = slot <= next ? (home <= slot || home > next) : (home <= slot && home > next);
+			if (movable) {
+				keys[slot] = keys[next];
+				cells[slot] = cells[next];
+				cells[next] = null;
+				slot = next;
+			}
+			next = (next + 1) & mask;
+		}
+	}
+
+	private void resize(int capacity) {
+		long[] oldKeys = keys;
+		Cell[] oldCells = cells;
+		keys = new long[capacity];
+		cells = new Cell[capacity];
+		int mask = capacity - 1;
+		for (int i = 0; i < oldCells.length; ++i) {
+			if (oldCells[i] != null) {
+				int slot = slotOf(oldKeys[i]);
+				while (cells[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[i];
+				cells[slot] = oldCells[i];
+			}
+		}
+	}
+}
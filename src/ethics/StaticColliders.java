@@ -0,0 +1,426 @@
+package ethics;
+
+import ethics.drawables.NullDrawing;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+
+/**
+ * Bakes the static solid entities of a Scene into as few boxes as possible,
+ * so movement along a floor made of many tiles is tested against one box
+ * instead of every tile under the path, and can't catch on the seams between
+ * them. Entities are split into square chunks of CHUNK_SIZE units by their
+ * top left corner. Within a chunk, boxes of the same collision category and
+ * mask that touch are merged greedily into pieces, first into rows and then
+ * the rows into columns. The pieces are then joined the same way across
+ * chunk borders, so a floor that runs through many chunks is still one box.
+ * Adding or removing a static entity only marks its chunk, and marked chunks
+ * are baked again the next time the boxes are searched. Only the boxes that
+ * hold pieces of a marked chunk or of a chunk next to it are taken apart
+ * and joined again.
+ *
+ * @author Jonathan Cooper
+ */
+final class StaticColliders {
+
+	/**
+	 * Width and height of a chunk in world units.
+	 */
+	static final int CHUNK_SIZE = 1024;
+
+	private static final Comparator<Entity> ROW_ORDER = (a, b) -> {
+		int result = Integer.compare(a.getCollisionCategory(), b.getCollisionCategory());
+		if (result == 0) {
+			result = Integer.compare(a.getCollisionMask(), b.getCollisionMask());
+		}
+		if (result == 0) {
+			result = Double.compare(a.getY(), b.getY());
+		}
+		if (result == 0) {
+			result = Integer.compare(a.getHeight(), b.getHeight());
+		}
+		return result != 0 ? result : Double.compare(a.getX(), b.getX());
+	};
+
+	private static final Comparator<Run> PIECE_ORDER = (a, b) -> {
+		int result = Integer.compare(a.category, b.category);
+		if (result == 0) {
+			result = Integer.compare(a.mask, b.mask);
+		}
+		if (result == 0) {
+			result = Double.compare(a.y, b.y);
+		}
+		if (result == 0) {
+			result = Integer.compare(a.height, b.height);
+		}
+		return result != 0 ? result : Double.compare(a.x, b.x);
+	};
+
+	private static final Comparator<Run> COLUMN_ORDER = (a, b) -> {
+		int result = Integer.compare(a.category, b.category);
+		if (result == 0) {
+			result = Integer.compare(a.mask, b.mask);
+		}
+		if (result == 0) {
+			result = Double.compare(a.x, b.x);
+		}
+		if (result == 0) {
+			result = Integer.compare(a.width, b.width);
+		}
+		return result != 0 ? result : Double.compare(a.y, b.y);
+	};
+
+	private final DynamicAabbTree boxes = new DynamicAabbTree(0);
+	private final HashMap<Long, Chunk> chunks = new HashMap<>();
+	private final ArrayList<Chunk> dirtyChunks = new ArrayList<>();
+	private final ArrayList<Run> loose = new ArrayList<>();
+	private int boxCount = 0;
+
+	/**
+	 * The static entities whose top left corner is in one square of the
+	 * world, and the boxes they were baked into.
+	 */
+	static final class Chunk {
+
+		final long column, row;
+		final ArrayList<Entity> members = new ArrayList<>();
+		ArrayList<Run> pieces = new ArrayList<>();
+		boolean dirty = false;
+
+		Chunk(long column, long row) {
+			this.column = column;
+			this.row = row;
+		}
+	}
+
+	/**
+	 * A merged box, kept in the tree in place of its members.
+	 */
+	static final class Box extends Entity {
+
+		final Entity[] members;
+		final Run[] pieces;
+
+		Box(Run run) {
+			super(new NullDrawing(), run.x, run.y, run.width, run.height);
+			setCollisionCategory(run.category);
+			setCollisionMask(run.mask);
+			pieces = run.pieces.toArray(new Run[run.pieces.size()]);
+			ArrayList<Entity> all = new ArrayList<>();
+			for (Run piece : pieces) {
+				all.addAll(piece.members);
+				piece.box = this;
+			}
+			members = all.toArray(new Entity[all.size()]);
+		}
+
+		/**
+		 * Finds the member a mover that was stopped by the box is touching:
+		 * the one on the face that was hit that shares the most of its side
+		 * with the mover.
+		 *
+		 * @param x Left of the mover where it was stopped.
+		 * @param y Top of the mover where it was stopped.
+		 * @param width Width of the mover.
+		 * @param height Height of the mover.
+		 * @param normalX X of the normal of the face that was hit.
+		 * @param normalY Y of the normal of the face that was hit.
+		 * @return Member touching the mover.
+		 */
+		Entity findMember(double x, double y, double width, double height, int normalX, int normalY) {
+			Entity best = members[0];
+			double bestShared = Double.NEGATIVE_INFINITY;
+			for (Entity member : members) {
+				double shared;
+				if (normalX != 0) {
+					double face = normalX < 0 ? member.getX() : member.getX() + member.getWidth();
+					double boxFace = normalX < 0 ? getX() : getX() + getWidth();
+					if (face != boxFace) {
+						continue;
+					}
+					shared = Math.min(y + height, member.getY() + member.getHeight()) - Math.max(y, member.getY());
+				} else {
+					double face = normalY < 0 ? member.getY() : member.getY() + member.getHeight();
+					double boxFace = normalY < 0 ? getY() : getY() + getHeight();
+					if (face != boxFace) {
+						continue;
+					}
+					shared = Math.min(x + width, member.getX() + member.getWidth()) - Math.max(x, member.getX());
+				}
+				if (shared > bestShared) {
+					best = member;
+					bestShared = shared;
+				}
+			}
+			return best;
+		}
+	}
+
+	/**
+	 * A rectangle covered by a range of members, built while baking. The
+	 * pieces of a chunk hold members, and the runs they are joined into
+	 * across chunks hold pieces.
+	 */
+	static final class Run {
+
+		double x, y;
+		int width, height;
+		int category, mask;
+		final ArrayList<Entity> members = new ArrayList<>();
+		final ArrayList<Run> pieces = new ArrayList<>();
+
+		/**
+		 * Box the piece is part of, and whether its chunk was baked again
+		 * since.
+		 */
+		Box box = null;
+		boolean stale = false;
+
+		Run(Entity first) {
+			x = first.getX();
+			y = first.getY();
+			width = first.getWidth();
+			height = first.getHeight();
+			category = first.getCollisionCategory();
+			mask = first.getCollisionMask();
+			members.add(first);
+		}
+
+		Run(Run piece) {
+			x = piece.x;
+			y = piece.y;
+			width = piece.width;
+			height = piece.height;
+			category = piece.category;
+			mask = piece.mask;
+			pieces.add(piece);
+		}
+	}
+
+	/**
+	 * Adds a static entity. Its chunk is baked again on the next query.
+	 *
+	 * @param e Entity to add, collidable and not a trigger.
+	 */
+	void add(Entity e) {
+		long column = (long) Math.floor(e.getX() / CHUNK_SIZE);
+		long row = (long) Math.floor(e.getY() / CHUNK_SIZE);
+		long key = chunkKey(column, row);
+		Chunk chunk = chunks.get(key);
+		if (chunk == null) {
+			chunk = new Chunk(column, row);
+			chunks.put(key, chunk);
+		}
+		chunk.members.add(e);
+		e.staticChunk = chunk;
+		markDirty(chunk);
+	}
+
+	/**
+	 * Removes an entity added before. Its chunk is baked again on the next
+	 * query.
+	 *
+	 * @param e Entity to remove.
+	 */
+	void remove(Entity e) {
+		Chunk chunk = e.staticChunk;
+		chunk.members.remove(e);
+		e.staticChunk = null;
+		markDirty(chunk);
+	}
+
+	/**
+	 * Removes every entity and box.
+	 */
+	void clear() {
+		for (Chunk chunk : chunks.values()) {
+			for (Entity e : chunk.members) {
+				e.staticChunk = null;
+			}
+		}
+		chunks.clear();
+		dirtyChunks.clear();
+		boxes.clear();
+		boxCount = 0;
+	}
+
+	/**
+	 * Adds the boxes in the given categories near a rectangle to a list,
+	 * baking the chunks that changed first.
+	 *
+	 * @param minX Left of the rectangle.
+	 * @param minY Top of the rectangle.
+	 * @param maxX Right of the rectangle.
+	 * @param maxY Bottom of the rectangle.
+	 * @param categories Categories a box must be in to be found.
+	 * @param out List the boxes are added to.
+	 */
+	void query(double minX, double minY, double maxX, double maxY, int categories, ArrayList<Entity> out) {
+		bake();
+		if (boxCount > 0) {
+			boxes.query(minX, minY, maxX, maxY, categories, out);
+		}
+	}
+
+	/**
+	 * Gets how many boxes the static entities are baked into.
+	 *
+	 * @return Number of boxes.
+	 */
+	int getBoxCount() {
+		bake();
+		return boxCount;
+	}
+
+	private void markDirty(Chunk chunk) {
+		if (!chunk.dirty) {
+			chunk.dirty = true;
+			dirtyChunks.add(chunk);
+		}
+	}
+
+	/**
+	 * Takes apart the boxes that hold pieces of a marked chunk or of a chunk
+	 * next to one, bakes the marked chunks into new pieces and joins the
+	 * loose pieces into boxes again. Pieces of a chunk can only touch pieces
+	 * of the chunks next to it, so the boxes left alone can't be joined with
+	 * any of the loose pieces.
+	 */
+	private void bake() {
+		if (dirtyChunks.isEmpty()) {
+			return;
+		}
+		for (int i = 0; i < dirtyChunks.size(); ++i) {
+			Chunk chunk = dirtyChunks.get(i);
+			release(chunk);
+			release(chunks.get(chunkKey(chunk.column - 1, chunk.row)));
+			release(chunks.get(chunkKey(chunk.column + 1, chunk.row)));
+			release(chunks.get(chunkKey(chunk.column, chunk.row - 1)));
+			release(chunks.get(chunkKey(chunk.column, chunk.row + 1)));
+		}
+		for (int i = 0; i < dirtyChunks.size(); ++i) {
+			bakeChunk(dirtyChunks.get(i));
+		}
+		dirtyChunks.clear();
+		loose.removeIf(piece -> piece.stale);
+		join(loose);
+		loose.clear();
+	}
+
+	/**
+	 * Takes the boxes holding pieces of a chunk out of the tree, leaving all
+	 * of their pieces loose.
+	 */
+	private void release(Chunk chunk) {
+		if (chunk == null) {
+			return;
+		}
+		for (int i = 0; i < chunk.pieces.size(); ++i) {
+			Box box = chunk.pieces.get(i).box;
+			if (box == null) {
+				continue;
+			}
+			boxes.remove(box);
+			--boxCount;
+			for (Run piece : box.pieces) {
+				piece.box = null;
+				loose.add(piece);
+			}
+		}
+	}
+
+	/**
+	 * Replaces the pieces of a chunk with new ones merged from its members.
+	 */
+	private void bakeChunk(Chunk chunk) {
+		chunk.dirty = false;
+		for (int i = 0; i < chunk.pieces.size(); ++i) {
+			chunk.pieces.get(i).stale = true;
+		}
+		chunk.pieces = new ArrayList<>();
+		if (chunk.members.isEmpty()) {
+			chunks.remove(chunkKey(chunk.column, chunk.row));
+			return;
+		}
+		Entity[] sorted = chunk.members.toArray(new Entity[chunk.members.size()]);
+		Arrays.sort(sorted, ROW_ORDER);
+		ArrayList<Run> rows = new ArrayList<>();
+		Run row = null;
+		for (Entity e : sorted) {
+			if (row != null && row.category == e.getCollisionCategory() && row.mask == e.getCollisionMask()
+					&& row.y == e.getY() && row.height == e.getHeight() && e.getX() >= row.x
+					&& (e.getX() == row.x + row.width || e.getX() + e.getWidth() <= row.x + row.width)) {
+				row.width = Math.max(row.width, (int) (e.getX() + e.getWidth() - row.x));
+				row.members.add(e);
+			} else {
+				row = new Run(e);
+				rows.add(row);
+			}
+		}
+		rows.sort(COLUMN_ORDER);
+		Run column = null;
+		for (Run next : rows) {
+			if (column != null && column.category == next.category && column.mask == next.mask
+					&& column.x == next.x && column.width == next.width && next.y >= column.y
+					&& (next.y == column.y + column.height || next.y + next.height <= column.y + column.height)) {
+				column.height = Math.max(column.height, (int) (next.y + next.height - column.y));
+				column.members.addAll(next.members);
+			} else {
+				if (column != null) {
+					chunk.pieces.add(column);
+				}
+				column = next;
+			}
+		}
+		chunk.pieces.add(column);
+		loose.addAll(chunk.pieces);
+	}
+
+	/**
+	 * Joins pieces that touch edge to edge into boxes, first into rows and
+	 * then the rows into columns, and puts the boxes in the tree.
+	 */
+	private void join(ArrayList<Run> pieces) {
+		pieces.sort(PIECE_ORDER);
+		ArrayList<Run> rows = new ArrayList<>();
+		Run row = null;
+		for (int i = 0; i < pieces.size(); ++i) {
+			Run piece = pieces.get(i);
+			if (row != null && row.category == piece.category && row.mask == piece.mask && row.y == piece.y
+					&& row.height == piece.height && piece.x == row.x + row.width) {
+				row.width += piece.width;
+				row.pieces.add(piece);
+			} else {
+				row = new Run(piece);
+				rows.add(row);
+			}
+		}
+		rows.sort(COLUMN_ORDER);
+		Run column = null;
+		for (Run next : rows) {
+			if (column != null && column.category == next.category && column.mask == next.mask
+					&& column.x == next.x && column.width == next.width && next.y == column.y + column.height) {
+				column.height += next.height;
+				column.pieces.addAll(next.pieces);
+			} else {
+				if (column != null) {
+					addBox(column);
+				}
+				column = next;
+			}
+		}
+		if (column != null) {
+			addBox(column);
+		}
+	}
+
+	private void addBox(Run run) {
+		boxes.insert(new Box(run));
+		++boxCount;
+	}
+
+	private static long chunkKey(long column, long row) {
+		return (column << 32) ^ (row & 0xffffffffL);
+	}
+}
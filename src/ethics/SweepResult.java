@@ -0,0 +1,107 @@
+package ethics;
+
+/**
+ * The outcome of sweeping an entity's bounds along a movement. If the
+ * movement is blocked, it holds when and where the entity first touches
+ * another entity or a cell of the scene's CollisionGrid, what it touches and
+ * the normal of the surface it touches. The position of a blocked sweep lies
+ * exactly on that surface.
+ *
+ * @author Jonathan Cooper
+ */
+public final class SweepResult {
+
+	private final double time;
+	private final double x;
+	private final double y;
+	private final int normalX;
+	private final int normalY;
+	private final Entity blocker;
+	private final int blockerTile;
+
+	SweepResult(double time, double x, double y, int normalX, int normalY, Entity blocker, int blockerTile) {
+		this.time = time;
+		this.x = x;
+		this.y = y;
+		this.normalX = normalX;
+		this.normalY = normalY;
+		this.blocker = blocker;
+		this.blockerTile = blockerTile;
+	}
+
+	/**
+	 * Returns true if something blocked the movement.
+	 *
+	 * @return True if the entity would collide.
+	 */
+	public boolean isHit() {
+		return blocker != null || blockerTile != 0;
+	}
+
+	/**
+	 * Gets how much of the movement can be made before the entity touches
+	 * something.
+	 *
+	 * @return Fraction of the movement from 0 to 1, 1 if nothing was hit.
+	 */
+	public double getTime() {
+		return time;
+	}
+
+	/**
+	 * Gets the X coordinate the entity can move to.
+	 *
+	 * @return X coordinate at the time of impact.
+	 */
+	public double getX() {
+		return x;
+	}
+
+	/**
+	 * Gets the Y coordinate the entity can move to.
+	 *
+	 * @return Y coordinate at the time of impact.
+	 */
+	public double getY() {
+		return y;
+	}
+
+	/**
+	 * Gets the X part of the normal of the surface that was hit.
+	 *
+	 * @return -1 if the entity hit something on its right, 1 if on its left,
+	 * otherwise 0.
+	 */
+	public int getNormalX() {
+		return normalX;
+	}
+
+	/**
+	 * Gets the Y part of the normal of the surface that was hit.
+	 *
+	 * @return -1 if the entity landed on something, 1 if it hit something
+	 * above it, otherwise 0.
+	 */
+	public int getNormalY() {
+		return normalY;
+	}
+
+	/**
+	 * Gets the entity that blocked the movement.
+	 *
+	 * @return Blocking entity, or null if nothing or a grid cell was hit.
+	 */
+	public Entity getBlocker() {
+		return blocker;
+	}
+
+	/**
+	 * Gets the flags of the CollisionGrid cell that blocked the movement.
+	 *
+	 * @return Flags of the cell, or CollisionGrid.EMPTY if nothing or an
+	 * entity was hit.
+	 */
+	public int getBlockerTile() {
+		return blockerTile;
+	}
+}
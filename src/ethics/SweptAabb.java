@@ -0,0 +1,213 @@
+package ethics;
+
+/**
+ * Finds the first entity a moving entity's bounds would touch, by working
+ * out the time of impact against each candidate's bounds directly instead of
+ * stepping the movement. Candidates are tested one at a time and the earliest
+ * impact is kept. Entities that already overlap the moving entity when it
+ * starts are ignored, so an entity that ends up inside another can still move
+ * out of it.
+ *
+ * @author Jonathan Cooper
+ */
+final class SweptAabb {
+
+	private Entity mover;
+	private int mask;
+	private double x, y, width, height, dX, dY;
+	private double time;
+	private int normalX, normalY;
+	private Entity blocker;
+	private int blockerTile;
+	private double blockerX, blockerY, blockerRight, blockerBottom;
+
+	/**
+	 * Impact found by the last call to test, and the box it was found
+	 * against.
+	 */
+	private double candidateTime;
+	private int candidateNormalX, candidateNormalY;
+	private double candidateX, candidateY, candidateRight, candidateBottom;
+
+	/**
+	 * Starts a new sweep.
+	 *
+	 * @param mover Entity that moves.
+	 * @param mask Categories that block the mover.
+	 * @param dX Change in X.
+	 * @param dY Change in Y.
+	 */
+	void begin(Entity mover, int mask, double dX, double dY) {
+		this.mover = mover;
+		this.mask = mask;
+		x = mover.getX();
+		y = mover.getY();
+		width = mover.getWidth();
+		height = mover.getHeight();
+		this.dX = dX;
+		this.dY = dY;
+		time = 1;
+		normalX = 0;
+		normalY = 0;
+		blocker = null;
+		blockerTile = 0;
+	}
+
+	/**
+	 * Tests the movement against an entity. Only entities that can block the
+	 * mover, going by their flags and categories, are considered.
+	 *
+	 * @param other Entity to test.
+	 * @return True if the mover touches it earlier than anything accepted so
+	 * far, in which case accept keeps it as the blocker.
+	 */
+	boolean test(Entity other) {
+		if (!mover.canBeBlockedBy(other, mask)) {
+			return false;
+		}
+		if (other.getWidth() <= 0 || other.getHeight() <= 0) {
+			return false;
+		}
+		double otherX = other.getX(), otherY = other.getY();
+		return testBox(otherX, otherY, otherX + other.getWidth(), otherY + other.getHeight());
+	}
+
+	/**
+	 * Tests the movement against a box that is not an entity, like a cell of
+	 * a CollisionGrid.
+	 *
+	 * @param otherX Left of the box.
+	 * @param otherY Top of the box.
+	 * @param otherRight Right of the box.
+	 * @param otherBottom Bottom of the box.
+	 * @return True if the mover touches the box earlier than anything
+	 * accepted so far, in which case acceptTile keeps it as the blocker.
+	 */
+	boolean testBox(double otherX, double otherY, double otherRight, double otherBottom) {
+		if (width <= 0 || height <= 0) {
+			return false;
+		}
+		boolean overlapX = x < otherRight && otherX < x + width;
+		boolean overlapY = y < otherBottom && otherY < y + height;
+		if (overlapX && overlapY) {
+			return false;
+		}
+		double entryX, exitX, entryY, exitY;
+		if (dX > 0) {
+			entryX = (otherX - (x + width)) / dX;
+			exitX = (otherRight - x) / dX;
+		} else if (dX < 0) {
+			entryX = (otherRight - x) / dX;
+			exitX = (otherX - (x + width)) / dX;
+		} else if (overlapX) {
+			entryX = Double.NEGATIVE_INFINITY;
+			exitX = Double.POSITIVE_INFINITY;
+		} else {
+			return false;
+		}
+		if (dY > 0) {
+			entryY = (otherY - (y + height)) / dY;
+			exitY = (otherBottom - y) / dY;
+		} else if (dY < 0) {
+			entryY = (otherBottom - y) / dY;
+			exitY = (otherY - (y + height)) / dY;
+		} else if (overlapY) {
+			entryY = Double.NEGATIVE_INFINITY;
+			exitY = Double.POSITIVE_INFINITY;
+		} else {
+			return false;
+		}
+		double entry = Math.max(entryX, entryY);
+		double exit = Math.min(exitX, exitY);
+		if (entry >= exit || entry < 0 || entry > 1 || (isBlocked() && entry >= time)) {
+			return false;
+		}
+		candidateTime = entry;
+		candidateX = otherX;
+		candidateY = otherY;
+		candidateRight = otherRight;
+		candidateBottom = otherBottom;
+		if (entryX > entryY) {
+			candidateNormalX = dX > 0 ? -1 : 1;
+			candidateNormalY = 0;
+		} else {
+			candidateNormalX = 0;
+			candidateNormalY = dY > 0 ? -1 : 1;
+		}
+		return true;
+	}
+
+	/**
+	 * Keeps the entity last tested as the first one the mover touches.
+	 *
+	 * @param other Entity test returned true for.
+	 */
+	void accept(Entity other) {
+		keepCandidate();
+		blocker = other;
+		blockerTile = 0;
+	}
+
+	/**
+	 * Keeps the box last tested as the first thing the mover touches.
+	 *
+	 * @param flags Flags of the grid cell the box belongs to.
+	 */
+	void acceptTile(int flags) {
+		keepCandidate();
+		blocker = null;
+		blockerTile = flags;
+	}
+
+	/**
+	 * Gets the Y part of the normal found by the last call to test.
+	 *
+	 * @return -1 if the mover would land on the box, 1 if it would hit it
+	 * from below, otherwise 0.
+	 */
+	int getCandidateNormalY() {
+		return candidateNormalY;
+	}
+
+	private void keepCandidate() {
+		time = candidateTime;
+		normalX = candidateNormalX;
+		normalY = candidateNormalY;
+		blockerX = candidateX;
+		blockerY = candidateY;
+		blockerRight = candidateRight;
+		blockerBottom = candidateBottom;
+	}
+
+	private boolean isBlocked() {
+		return blocker != null || blockerTile != 0;
+	}
+
+	/**
+	 * Gets the outcome of the sweep. The position of a blocked sweep is put
+	 * exactly against the surface that was hit, so rounding does not leave
+	 * the mover inside the blocker. A merged box of static entities is
+	 * reported as the member the mover stopped against.
+	 *
+	 * @return Result of the sweep.
+	 */
+	SweepResult end() {
+		double endX = x + dX * time, endY = y + dY * time;
+		if (normalX < 0) {
+			endX = blockerX - width;
+		} else if (normalX > 0) {
+			endX = blockerRight;
+		} else if (normalY < 0) {
+			endY = blockerY - height;
+		} else if (normalY > 0) {
+			endY = blockerBottom;
+		}
+		if (blocker instanceof StaticColliders.Box) {
+			blocker = ((StaticColliders.Box) blocker).findMember(endX, endY, width, height, normalX, normalY);
+		}
+		SweepResult result = new SweepResult(time, endX, endY, normalX, normalY, blocker, blockerTile);
+		mover = null;
+		blocker = null;
+		return result;
+	}
+}
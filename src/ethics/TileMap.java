@@ -0,0 +1,257 @@
+package ethics;
+
+import ethics.drawables.NullDrawing;
+import ethics.imagetools.ImageLoader;
+import ethics.imagetools.Tilesheet;
+import java.awt.AlphaComposite;
+import java.awt.Composite;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * A grid of tiles from a Tilesheet drawn as a single entity. The grid only
+ * stores a tile index per cell, and is drawn in square chunks of CHUNK_SIZE
+ * tiles that are baked into images the first time they are drawn. A chunk is
+ * only baked again after one of its tiles changes, and only chunks inside the
+ * clip of the graphics object are drawn. This makes large levels much cheaper
+ * than an entity per tile. A tile map does not take part in entity collision.
+ * Chunks are baked under a lock, so a map can be drawn from several render
+ * threads at once.
+ *
+ * @author Jonathan Cooper
+ */
+public class TileMap extends Entity {
+
+	/**
+	 * Index of a cell without a tile.
+	 */
+	public static final int EMPTY = -1;
+
+	/**
+	 * Width and height of a chunk in tiles.
+	 */
+	public static final int CHUNK_SIZE = 16;
+
+	private final Tilesheet tilesheet;
+	private final int tileWidth;
+	private final int tileHeight;
+	private final int columns;
+	private final int rows;
+	private final short[] tiles;
+	private final int tileCount;
+
+	private final int chunkColumns;
+	private final int chunkRows;
+	private final BufferedImage[] chunks;
+	private final boolean[] dirty;
+
+	/**
+	 * Creates a new tile map with every cell empty.
+	 *
+	 * @param tilesheet Tilesheet the tile indices refer to.
+	 * @param x X coordinate of the top left of the map.
+	 * @param y Y coordinate of the top left of the map.
+	 * @param columns Width of the map in tiles.
+	 * @param rows Height of the map in tiles.
+	 */
+	public TileMap(Tilesheet tilesheet, double x, double y, int columns, int rows) {
+		super(new NullDrawing(), x, y, columns * tilesheet.getTileWidth(), rows * tilesheet.getTileHeight());
+		if (columns <= 0 || rows <= 0) {
+			throw new IllegalArgumentException("A tile map needs at least one row and column");
+		}
+		this.tilesheet = tilesheet;
+		this.tileWidth = tilesheet.getTileWidth();
+		this.tileHeight = tilesheet.getTileHeight();
+		this.columns = columns;
+		this.rows = rows;
+		tiles = new short[columns * rows];
+		Arrays.fill(tiles, (short) EMPTY);
+		tileCount = Math.min(tilesheet.getTileCount(), Short.MAX_VALUE + 1);
+		chunkColumns = (columns + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		chunkRows = (rows + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		chunks = new BufferedImage[chunkColumns * chunkRows];
+		dirty = new boolean[chunks.length];
+		Arrays.fill(dirty, true);
+		setCollidable(false);
+	}
+
+	/**
+	 * Gets the tile index of a cell.
+	 *
+	 * @param column Column of the cell.
+	 * @param row Row of the cell.
+	 * @return Index into the tilesheet, or EMPTY.
+	 */
+	public int getTile(int column, int row) {
+		checkCell(column, row);
+		return tiles[row * columns + column];
+	}
+
+	/**
+	 * Changes the tile of a cell. Only the chunk holding the cell is baked
+	 * again.
+	 *
+	 * @param column Column of the cell.
+	 * @param row Row of the cell.
+	 * @param tile Index into the tilesheet, or EMPTY to clear the cell.
+	 */
+	public void setTile(int column, int row, int tile) {
+		checkCell(column, row);
+		if (tile != EMPTY && (tile < 0 || tile >= tileCount)) {
+			throw new IllegalArgumentException("Tile " + tile + " is not in the tilesheet");
+		}
+		int i = row * columns + column;
+		if (tiles[i] == tile) {
+			return;
+		}
+		tiles[i] = (short) tile;
+		dirty[(row / CHUNK_SIZE) * chunkColumns + column / CHUNK_SIZE] = true;
+		if (scene != null) {
+			scene.entityAreaChanged(this, (int) getX() + column * tileWidth, (int) getY() + row * tileHeight,
+					tileWidth, tileHeight);
+		}
+	}
+
+	/**
+	 * Sets every cell of a rectangle to the same tile.
+	 *
+	 * @param column Leftmost column.
+	 * @param row Top row.
+	 * @param width Number of columns.
+	 * @param height Number of rows.
+	 * @param tile Index into the tilesheet, or EMPTY to clear the cells.
+	 */
+	public void fill(int column, int row, int width, int height, int tile) {
+		for (int r = row; r < row + height; ++r) {
+			for (int c = column; c < column + width; ++c) {
+				setTile(c, r, tile);
+			}
+		}
+	}
+
+	public int getColumns() {
+		return columns;
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	public int getTileWidth() {
+		return tileWidth;
+	}
+
+	public int getTileHeight() {
+		return tileHeight;
+	}
+
+	/**
+	 * Draws the chunks of the map that overlap the clip of the graphics
+	 * object, baking the ones that changed.
+	 *
+	 * @param g Graphics object to draw to.
+	 */
+	@Override
+	public void draw(Graphics g) {
+		int drawX = (int) getX(), drawY = (int) getY();
+		Rectangle clip = g.getClipBounds(new Rectangle(drawX, drawY, getWidth(), getHeight()));
+		int firstColumn = Math.max(Math.floorDiv(clip.x - drawX, tileWidth * CHUNK_SIZE), 0);
+		int firstRow = Math.max(Math.floorDiv(clip.y - drawY, tileHeight * CHUNK_SIZE), 0);
+		int lastColumn = Math.min(Math.floorDiv(clip.x + clip.width - 1 - drawX, tileWidth * CHUNK_SIZE), chunkColumns - 1);
+		int lastRow = Math.min(Math.floorDiv(clip.y + clip.height - 1 - drawY, tileHeight * CHUNK_SIZE), chunkRows - 1);
+		for (int chunkRow = firstRow; chunkRow <= lastRow; ++chunkRow) {
+			for (int chunkColumn = firstColumn; chunkColumn <= lastColumn; ++chunkColumn) {
+				int chunk = chunkRow * chunkColumns + chunkColumn;
+				BufferedImage image;
+				synchronized (chunks) {
+					if (dirty[chunk]) {
+						bakeChunk(chunkColumn, chunkRow);
+					}
+					image = chunks[chunk];
+				}
+				if (image != null) {
+					g.drawImage(image, drawX + chunkColumn * CHUNK_SIZE * tileWidth,
+							drawY + chunkRow * CHUNK_SIZE * tileHeight, null);
+				}
+			}
+		}
+		drawn = true;
+		drawnX = drawX;
+		drawnY = drawY;
+		drawnWidth = getWidth();
+		drawnHeight = getHeight();
+	}
+
+	/**
+	 * The map has no frames of its own; changed tiles report their area to
+	 * the scene as they are set.
+	 */
+	@Override
+	boolean hasNewFrame() {
+		return false;
+	}
+
+	@Override
+	int getFrameWidth() {
+		return getWidth();
+	}
+
+	@Override
+	int getFrameHeight() {
+		return getHeight();
+	}
+
+	/**
+	 * Draws the tiles of a chunk into its image. Chunks without tiles get no
+	 * image.
+	 */
+	private void bakeChunk(int chunkColumn, int chunkRow) {
+		int chunk = chunkRow * chunkColumns + chunkColumn;
+		dirty[chunk] = false;
+		int firstColumn = chunkColumn * CHUNK_SIZE, firstRow = chunkRow * CHUNK_SIZE;
+		int chunkWidth = Math.min(CHUNK_SIZE, columns - firstColumn);
+		int chunkHeight = Math.min(CHUNK_SIZE, rows - firstRow);
+		boolean empty = true;
+		for (int r = 0; r < chunkHeight && empty; ++r) {
+			for (int c = 0; c < chunkWidth; ++c) {
+				if (tiles[(firstRow + r) * columns + firstColumn + c] != EMPTY) {
+					empty = false;
+					break;
+				}
+			}
+		}
+		if (empty) {
+			chunks[chunk] = null;
+			return;
+		}
+		BufferedImage image = chunks[chunk];
+		if (image == null) {
+			image = ImageLoader.createCompatibleImage(chunkWidth * tileWidth, chunkHeight * tileHeight, Transparency.TRANSLUCENT);
+			chunks[chunk] = image;
+		}
+		Graphics2D g = image.createGraphics();
+		Composite oldComposite = g.getComposite();
+		g.setComposite(AlphaComposite.Clear);
+		g.fillRect(0, 0, image.getWidth(), image.getHeight());
+		g.setComposite(oldComposite);
+		for (int r = 0; r < chunkHeight; ++r) {
+			for (int c = 0; c < chunkWidth; ++c) {
+				int tile = tiles[(firstRow + r) * columns + firstColumn + c];
+				if (tile != EMPTY) {
+					g.drawImage(tilesheet.getTile(tile), c * tileWidth, r * tileHeight, null);
+				}
+			}
+		}
+		g.dispose();
+	}
+
+	private void checkCell(int column, int row) {
+		if (column < 0 || column >= columns || row < 0 || row >= rows) {
+			throw new IllegalArgumentException("Cell " + column + "," + row + " is outside of the tile map");
+		}
+	}
+}
@@ -1,14 +1,17 @@
 package ethics.drawables;
 
+import ethics.imagetools.AtlasRegion;
 import ethics.imagetools.Tilesheet;
+import java.awt.Graphics;
 import java.awt.Image;
 import java.io.IOException;
 import java.util.HashMap;
 
 /**
  * Supports sprite sheet animations. If a sprite is contained in more than a
- * single image, ethics.imagetools.TilesheetGenerator may be used to create a
- * single image at run time.
+ * single image, its frames may be packed into an
+ * ethics.imagetools.TextureAtlas at run time and the sprite created from the
+ * atlas regions.
  *
  * @author Jonathan Cooper
  */
@@ -18,6 +21,7 @@ public class AnimatedSprite implements Drawable {
 	private int tileWidth;
 	private int tileHeight;
 	private Tilesheet sheet;
+	private AtlasRegion[] regions = null;
 	private HashMap<String, int[]> animations = new HashMap<>();
 	private int frameCounter = 0;
 	private String currentAnimation = null;
@@ -53,6 +57,22 @@ public class AnimatedSprite implements Drawable {
 		sheet = new Tilesheet(sourceFile, tileWidth, tileHeight);
 	}
 
+	/**
+	 * Creates a new animated sprite from regions of a packed texture atlas.
+	 * Tile indices of the animations are indices into the array of regions,
+	 * and frames are drawn straight from the atlas page.
+	 *
+	 * @param regions Regions holding the frames of the sprite.
+	 */
+	public AnimatedSprite(AtlasRegion[] regions) {
+		if (regions.length == 0) {
+			throw new IllegalArgumentException("A sprite needs at least one frame");
+		}
+		this.tileWidth = regions[0].getWidth();
+		this.tileHeight = regions[0].getHeight();
+		this.regions = regions.clone();
+	}
+
 	/**
 	 * Creates a new animation that can be played. The animation should be
 	 * indexes of the tiles in the source sprite sheet. The image is indexed
@@ -92,16 +112,38 @@ public class AnimatedSprite implements Drawable {
 	}
 
 	/**
-	 * How many frames before going to the next tile in the sprite sheet.
+	 * How many updates of the scene before going to the next tile in the
+	 * sprite sheet.
 	 *
-	 * @param frameLength Number of frames before switching images.
+	 * @param frameLength Number of updates before switching images.
 	 */
 	public void setFrameLength(int frameLength) {
 		this.frameLength = frameLength;
 	}
 
 	/**
-	 * Gets the next frame to be drawn to the scene.
+	 * Moves the current animation on by one update. A negative index in the
+	 * animation steps back that many tiles, so an animation ending in -1
+	 * stays on its last tile.
+	 *
+	 * @param dt Seconds since the last update.
+	 */
+	@Override
+	public void update(double dt) {
+		if (currentAnimation == null) {
+			return;
+		}
+		int[] animation = animations.get(currentAnimation);
+		++frameCounter;
+		int animationTileIndex = animation[(frameCounter / frameLength) % animation.length];
+		while (animationTileIndex < 0) {
+			frameCounter += animationTileIndex * frameLength;
+			animationTileIndex = animation[(frameCounter / frameLength) % animation.length];
+		}
+	}
+
+	/**
+	 * Gets the frame of the current animation to be drawn to the scene.
 	 *
 	 * @return Frame
 	 */
@@ -110,13 +152,50 @@ public class AnimatedSprite implements Drawable {
 		if (currentAnimation == null) {
 			throw new RuntimeException("No animation selected but there was an attempt to draw.");
 		}
-		int frameIndex = (frameCounter++) / frameLength;
-		int[] animation = animations.get(currentAnimation);
-		int animationTileIndex = animation[frameIndex % animation.length];
-		if (animationTileIndex < 0) {
-			frameCounter += animationTileIndex - 1;
-			return getImage();
+		int animationTileIndex = getTileIndex();
+		if (regions != null) {
+			return regions[animationTileIndex].getImage();
 		}
 		return sheet.getTile(animationTileIndex);
 	}
+
+	/**
+	 * Draws the current frame, copying it out of the atlas page if the
+	 * sprite was created from atlas regions.
+	 */
+	@Override
+	public void draw(Graphics g, Image image, int x, int y) {
+		if (regions != null && currentAnimation != null) {
+			regions[getTileIndex()].draw(g, x, y);
+		} else {
+			g.drawImage(image, x, y, null);
+		}
+	}
+
+	/**
+	 * Each tile is its own image, so a new frame always comes with a
+	 * different image.
+	 *
+	 * @return False.
+	 */
+	@Override
+	public boolean hasNewFrame() {
+		return false;
+	}
+
+	/**
+	 * Gets the tile of the current animation at the frame counter. The
+	 * counter may be on a negative index after the animation was changed,
+	 * which is followed back the same way update does.
+	 */
+	private int getTileIndex() {
+		int[] animation = animations.get(currentAnimation);
+		int counter = frameCounter;
+		int animationTileIndex = animation[(counter / frameLength) % animation.length];
+		while (animationTileIndex < 0) {
+			counter += animationTileIndex * frameLength;
+			animationTileIndex = animation[(counter / frameLength) % animation.length];
+		}
+		return animationTileIndex;
+	}
 }
@@ -1,5 +1,6 @@
 package ethics.drawables;
 
+import java.awt.Graphics;
 import java.awt.Image;
 
 /**
@@ -11,8 +12,45 @@ import java.awt.Image;
  */
 public interface Drawable {
 	/**
-	 * Image to draw to the screen.
+	 * Image to draw to the screen. Only reads the drawable, since it may be
+	 * called any number of times per frame and from several render threads
+	 * at once.
 	 * @return Image to show on the screen.
 	 */
     public Image getImage();
+
+	/**
+	 * Advances the drawable by one update of the scene, like stepping an
+	 * animation. The scene calls this for the drawable of each of its
+	 * entities once per update, so animations run at the simulation rate no
+	 * matter how often frames are drawn.
+	 * @param dt Seconds since the last update.
+	 */
+    public default void update(double dt) {
+    }
+
+	/**
+	 * Returns true if what getImage() shows may change without it returning
+	 * a different image object, like an image that is drawn into again.
+	 * Scenes that track damage redraw an entity when the image of its
+	 * drawable is not the one it last drew, and on every frame if this is
+	 * true. Drawables that can't tell should return true.
+	 * @return True if the image may change in place.
+	 */
+    public default boolean hasNewFrame() {
+        return true;
+    }
+
+	/**
+	 * Draws the image last returned by getImage(). Drawables that take their
+	 * frames from a texture atlas override this to copy the frame out of the
+	 * atlas page.
+	 * @param g Graphics object to draw to.
+	 * @param image Image last returned by getImage().
+	 * @param x X coordinate of the top left of the image.
+	 * @param y Y coordinate of the top left of the image.
+	 */
+    public default void draw(Graphics g, Image image, int x, int y) {
+        g.drawImage(image, x, y, null);
+    }
 }
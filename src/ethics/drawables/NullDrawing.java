@@ -16,4 +16,9 @@ public class NullDrawing implements Drawable {
 	public Image getImage() {
 		return buffer;
 	}
+
+	@Override
+	public boolean hasNewFrame() {
+		return false;
+	}
 }
@@ -23,4 +23,9 @@ public class StaticImage implements Drawable {
     public Image getImage() {
         return image;
     }
+    
+    @Override
+    public boolean hasNewFrame() {
+        return false;
+    }
 }
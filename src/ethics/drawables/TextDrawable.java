@@ -1,5 +1,6 @@
 package ethics.drawables;
 
+import ethics.imagetools.ImageLoader;
 import java.awt.Color;
 import java.awt.image.BufferedImage;
 import java.awt.Font;
@@ -8,6 +9,7 @@ import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.RenderingHints;
+import java.awt.Transparency;
 
 /**
  * Supports text as a drawable. Supports various fonts from java.awt.Font
@@ -29,16 +31,19 @@ public class TextDrawable implements Drawable {
 
 	public TextDrawable(String text) {
 		this.text = text;
+		updateBuffer();
 	}
 
 	public TextDrawable(String text, boolean shadow) {
-		this(text);
+		this.text = text;
 		this.shadow = true;
+		updateBuffer();
 	}
 
 	public TextDrawable(String text, int fontSize, boolean fontBold) {
-		this(text);
+		this.text = text;
 		font = new Font(DEFAULT_FONT.getFamily(), Font.BOLD, fontSize);
+		updateBuffer();
 	}
 
 	/**
@@ -82,17 +87,23 @@ public class TextDrawable implements Drawable {
 	 */
 	@Override
 	public Image getImage() {
-		if (buffer == null) {
-			updateBuffer();
-		}
 		return buffer;
 	}
 
+	/**
+	 * Every updateBuffer() makes a new image, so the text only changes along
+	 * with the image.
+	 */
+	@Override
+	public boolean hasNewFrame() {
+		return false;
+	}
+
 	/**
 	 * Updates the internal image supplied when getImage() is called. The
 	 * internal image must be updated if any property is changed. This method is
-	 * invoked at the first drawing, any property changes after the initial
-	 * drawing must be updated using this method.
+	 * invoked when the drawable is created, any property changes after that
+	 * must be updated using this method.
 	 */
 	public void updateBuffer() {
 		FontMetrics metrics = getFontMetrics();
@@ -103,7 +114,7 @@ public class TextDrawable implements Drawable {
 			++height;
 		}
 		int ascent = metrics.getAscent();
-		buffer = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		buffer = ImageLoader.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
 		Graphics2D g = (Graphics2D) buffer.getGraphics();
 		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 		g.setFont(font);
@@ -113,6 +124,7 @@ public class TextDrawable implements Drawable {
 		}
 		g.setColor(color);
 		g.drawString(text, 0, ascent);
+		g.dispose();
 	}
 
 	/**
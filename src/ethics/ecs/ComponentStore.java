@@ -0,0 +1,132 @@
+package ethics.ecs;
+
+import java.util.Arrays;
+
+/**
+ * Holds the components of one type for every entity of a World that has one.
+ * The store is a sparse set: the components are packed at the start of a
+ * dense array, next to an array of the entities they belong to, and a sparse
+ * array maps entity ids to their place in the dense arrays. Looking up,
+ * adding and removing a component take constant time, and systems loop over
+ * the dense arrays without any gaps.
+ *
+ * @param <T> Type of the components.
+ * @author Jonathan Cooper
+ */
+public final class ComponentStore<T> {
+
+	private static final int ABSENT = -1;
+
+	private int[] sparse = new int[64];
+	private int[] entities = new int[16];
+	private Object[] components = new Object[16];
+	private int size = 0;
+
+	ComponentStore() {
+		Arrays.fill(sparse, ABSENT);
+	}
+
+	/**
+	 * Gives an entity a component, replacing the one it had.
+	 *
+	 * @param entity Id of the entity.
+	 * @param component Component to add.
+	 */
+	void put(int entity, T component) {
+		if (component == null) {
+			throw new IllegalArgumentException("Component can't be null");
+		}
+		if (entity >= sparse.length) {
+			int oldLength = sparse.length;
+			sparse = Arrays.copyOf(sparse, Math.max(entity + 1, oldLength * 2));
+			Arrays.fill(sparse, oldLength, sparse.length, ABSENT);
+		}
+		int index = sparse[entity];
+		if (index != ABSENT) {
+			components[index] = component;
+			return;
+		}
+		if (size == entities.length) {
+			entities = Arrays.copyOf(entities, size * 2);
+			components = Arrays.copyOf(components, size * 2);
+		}
+		sparse[entity] = size;
+		entities[size] = entity;
+		components[size] = component;
+		++size;
+	}
+
+	/**
+	 * Takes an entity's component away, moving the last component into its
+	 * place.
+	 *
+	 * @param entity Id of the entity.
+	 * @return True if the entity had a component.
+	 */
+	boolean remove(int entity) {
+		if (!has(entity)) {
+			return false;
+		}
+		int index = sparse[entity];
+		int last = --size;
+		if (index != last) {
+			entities[index] = entities[last];
+			components[index] = components[last];
+			sparse[entities[index]] = index;
+		}
+		components[last] = null;
+		sparse[entity] = ABSENT;
+		return true;
+	}
+
+	/**
+	 * Returns true if an entity has a component in this store.
+	 *
+	 * @param entity Id of the entity.
+	 * @return True if it has one.
+	 */
+	public boolean has(int entity) {
+		return entity >= 0 && entity < sparse.length && sparse[entity] != ABSENT;
+	}
+
+	/**
+	 * Gets the component of an entity.
+	 *
+	 * @param entity Id of the entity.
+	 * @return The component, or null if the entity has none.
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(int entity) {
+		return has(entity) ? (T) components[sparse[entity]] : null;
+	}
+
+	/**
+	 * Gets the number of components in the store.
+	 *
+	 * @return Number of components.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the entity of the component at a place in the dense array.
+	 *
+	 * @param index Place from 0 to size() - 1.
+	 * @return Id of the entity.
+	 */
+	public int getEntity(int index) {
+		return entities[index];
+	}
+
+	/**
+	 * Gets the component at a place in the dense array.
+	 *
+	 * @param index Place from 0 to size() - 1.
+	 * @return The component.
+	 */
+	@SuppressWarnings("unchecked")
+	public T getAt(int index) {
+		return (T) components[index];
+	}
+}
@@ -0,0 +1,32 @@
+package ethics.ecs;
+
+import ethics.Entity;
+
+/**
+ * Component that ties an entity of a World to an Entity of a Scene, so the
+ * existing Entity and Drawable classes can be drawn and collided with while
+ * the world moves them. EntityLinkSystem copies the position of the world
+ * entity onto the linked Entity.
+ *
+ * @author Jonathan Cooper
+ */
+public class EntityLink {
+
+	private final Entity entity;
+
+	/**
+	 * Creates a link to an entity.
+	 *
+	 * @param entity Entity of a scene.
+	 */
+	public EntityLink(Entity entity) {
+		if (entity == null) {
+			throw new IllegalArgumentException("Linked entity can't be null");
+		}
+		this.entity = entity;
+	}
+
+	public Entity getEntity() {
+		return entity;
+	}
+}
@@ -0,0 +1,29 @@
+package ethics.ecs;
+
+import ethics.Entity;
+
+/**
+ * Moves every linked Entity to the position of its world entity. Add it after
+ * the systems that change positions. Entities that are already in place are
+ * not touched, so resting entities don't damage the screen.
+ *
+ * @author Jonathan Cooper
+ */
+public class EntityLinkSystem implements GameSystem {
+
+	@Override
+	public void update(World world, double dt) {
+		ComponentStore<EntityLink> links = world.getStore(EntityLink.class);
+		VectorStore positions = world.getPositions();
+		for (int i = 0; i < links.size(); ++i) {
+			int index = positions.indexOf(links.getEntity(i));
+			if (index >= 0) {
+				Entity entity = links.getAt(i).getEntity();
+				double x = positions.x[index], y = positions.y[index];
+				if (entity.getX() != x || entity.getY() != y) {
+					entity.setPosition(x, y);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,20 @@
+package ethics.ecs;
+
+/**
+ * Logic that runs over the components of a World once per update. A system
+ * usually loops over the store of the rarest component it needs and looks up
+ * the others by entity. Systems that only need positions and velocities loop
+ * over the moving entities, which line up in both stores.
+ *
+ * @author Jonathan Cooper
+ */
+public interface GameSystem {
+
+	/**
+	 * Runs the system for one update.
+	 *
+	 * @param world World to work on.
+	 * @param dt Seconds since the last update.
+	 */
+	void update(World world, double dt);
+}
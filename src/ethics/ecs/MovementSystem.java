@@ -0,0 +1,24 @@
+package ethics.ecs;
+
+/**
+ * Adds the velocity of every entity that has one to its position. The world
+ * keeps the entities with both at the same places at the front of the two
+ * stores, so this is a single pass over the arrays.
+ *
+ * @author Jonathan Cooper
+ */
+public class MovementSystem implements GameSystem {
+
+	@Override
+	public void update(World world, double dt) {
+		VectorStore positions = world.getPositions();
+		VectorStore velocities = world.getVelocities();
+		double[] x = positions.x, y = positions.y;
+		double[] dX = velocities.x, dY = velocities.y;
+		int count = world.getMovingCount();
+		for (int i = 0; i < count; ++i) {
+			x[i] += dX[i] * dt;
+			y[i] += dY[i] * dt;
+		}
+	}
+}
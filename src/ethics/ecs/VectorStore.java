@@ -0,0 +1,163 @@
+package ethics.ecs;
+
+import java.util.Arrays;
+
+/**
+ * Holds a two dimensional vector, such as a position or a velocity, for every
+ * entity of a World that has one. Like a ComponentStore it is a sparse set,
+ * but the vectors are kept as doubles in two parallel arrays rather than as
+ * objects, so a system that loops over them reads contiguous memory and never
+ * follows a pointer. The World may move vectors around inside the dense
+ * arrays to line them up with another store, so places are only stable
+ * until the next component is added or removed.
+ *
+ * @author Jonathan Cooper
+ */
+public final class VectorStore {
+
+	private static final int ABSENT = -1;
+
+	private int[] sparse = new int[64];
+	private int[] entities = new int[16];
+	double[] x = new double[16];
+	double[] y = new double[16];
+	private int size = 0;
+
+	VectorStore() {
+		Arrays.fill(sparse, ABSENT);
+	}
+
+	/**
+	 * Gives an entity a vector, replacing the one it had.
+	 *
+	 * @param entity Id of the entity.
+	 * @param x X of the vector.
+	 * @param y Y of the vector.
+	 * @return True if the entity had no vector before.
+	 */
+	boolean put(int entity, double x, double y) {
+		if (entity >= sparse.length) {
+			int oldLength = sparse.length;
+			sparse = Arrays.copyOf(sparse, Math.max(entity + 1, oldLength * 2));
+			Arrays.fill(sparse, oldLength, sparse.length, ABSENT);
+		}
+		int index = sparse[entity];
+		boolean added = index == ABSENT;
+		if (added) {
+			if (size == entities.length) {
+				entities = Arrays.copyOf(entities, size * 2);
+				this.x = Arrays.copyOf(this.x, size * 2);
+				this.y = Arrays.copyOf(this.y, size * 2);
+			}
+			index = size++;
+			sparse[entity] = index;
+			entities[index] = entity;
+		}
+		this.x[index] = x;
+		this.y[index] = y;
+		return added;
+	}
+
+	/**
+	 * Takes an entity's vector away, moving the last vector into its place.
+	 *
+	 * @param entity Id of the entity.
+	 * @return True if the entity had a vector.
+	 */
+	boolean remove(int entity) {
+		if (!has(entity)) {
+			return false;
+		}
+		int index = sparse[entity];
+		int last = --size;
+		if (index != last) {
+			entities[index] = entities[last];
+			x[index] = x[last];
+			y[index] = y[last];
+			sparse[entities[index]] = index;
+		}
+		sparse[entity] = ABSENT;
+		return true;
+	}
+
+	/**
+	 * Swaps the vectors at two places in the dense arrays.
+	 *
+	 * @param a First place.
+	 * @param b Second place.
+	 */
+	void swap(int a, int b) {
+		if (a == b) {
+			return;
+		}
+		int entity = entities[a];
+		double oldX = x[a], oldY = y[a];
+		entities[a] = entities[b];
+		x[a] = x[b];
+		y[a] = y[b];
+		entities[b] = entity;
+		x[b] = oldX;
+		y[b] = oldY;
+		sparse[entities[a]] = a;
+		sparse[entity] = b;
+	}
+
+	/**
+	 * Returns true if an entity has a vector in this store.
+	 *
+	 * @param entity Id of the entity.
+	 * @return True if it has one.
+	 */
+	public boolean has(int entity) {
+		return entity >= 0 && entity < sparse.length && sparse[entity] != ABSENT;
+	}
+
+	/**
+	 * Gets the place of an entity's vector in the dense arrays.
+	 *
+	 * @param entity Id of the entity.
+	 * @return Place of the vector, or -1 if the entity has none.
+	 */
+	public int indexOf(int entity) {
+		return has(entity) ? sparse[entity] : ABSENT;
+	}
+
+	/**
+	 * Gets the number of vectors in the store.
+	 *
+	 * @return Number of vectors.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the entity of the vector at a place in the dense arrays.
+	 *
+	 * @param index Place from 0 to size() - 1.
+	 * @return Id of the entity.
+	 */
+	public int getEntity(int index) {
+		return entities[index];
+	}
+
+	public double getX(int index) {
+		return x[index];
+	}
+
+	public double getY(int index) {
+		return y[index];
+	}
+
+	/**
+	 * Changes the vector at a place in the dense arrays.
+	 *
+	 * @param index Place from 0 to size() - 1.
+	 * @param x New X.
+	 * @param y New Y.
+	 */
+	public void set(int index, double x, double y) {
+		this.x[index] = x;
+		this.y[index] = y;
+	}
+}
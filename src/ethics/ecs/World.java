@@ -0,0 +1,289 @@
+package ethics.ecs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * An entity-component-system world. Entities are plain int ids, their data
+ * is kept in a ComponentStore per component type, and behaviour lives in
+ * GameSystems that run over the stores in bulk. Positions and velocities,
+ * which the movement of every actor reads, are kept as doubles in a
+ * VectorStore each. Entities that have both are kept at the front of both
+ * stores in the same order, so moving them is one pass over four arrays
+ * with no lookups. This is meant for large numbers of simple actors; the
+ * Entity classes of a Scene keep working, and can be driven by the world
+ * through an EntityLink component. A WorldEntity runs the world in the
+ * update phase of a scene.
+ *
+ * @author Jonathan Cooper
+ */
+public class World {
+
+	private final HashMap<Class<?>, ComponentStore<?>> stores = new HashMap<>();
+	private final ArrayList<ComponentStore<?>> storeList = new ArrayList<>();
+	private final ArrayList<GameSystem> systems = new ArrayList<>();
+	private final VectorStore positions = new VectorStore();
+	private final VectorStore velocities = new VectorStore();
+	private int movingCount = 0;
+	private boolean[] alive = new boolean[64];
+	private int[] freeIds = new int[16];
+	private int freeCount = 0;
+	private int nextId = 0;
+	private int entityCount = 0;
+
+	/**
+	 * Creates a new entity without components. Ids of destroyed entities are
+	 * reused.
+	 *
+	 * @return Id of the entity.
+	 */
+	public int createEntity() {
+		int id = freeCount > 0 ? freeIds[--freeCount] : nextId++;
+		if (id >= alive.length) {
+			alive = Arrays.copyOf(alive, alive.length * 2);
+		}
+		alive[id] = true;
+		++entityCount;
+		return id;
+	}
+
+	/**
+	 * Removes an entity and all of its components.
+	 *
+	 * @param entity Id of the entity.
+	 */
+	public void destroyEntity(int entity) {
+		checkAlive(entity);
+		for (int i = 0; i < storeList.size(); ++i) {
+			storeList.get(i).remove(entity);
+		}
+		removeVector(positions, entity);
+		removeVector(velocities, entity);
+		alive[entity] = false;
+		if (freeCount == freeIds.length) {
+			freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+		}
+		freeIds[freeCount++] = entity;
+		--entityCount;
+	}
+
+	/**
+	 * Returns true if an id belongs to an entity that was created and not
+	 * destroyed.
+	 *
+	 * @param entity Id of the entity.
+	 * @return True if the entity exists.
+	 */
+	public boolean isAlive(int entity) {
+		return entity >= 0 && entity < nextId && alive[entity];
+	}
+
+	/**
+	 * Gets the number of entities in the world.
+	 *
+	 * @return Number of entities.
+	 */
+	public int getEntityCount() {
+		return entityCount;
+	}
+
+	/**
+	 * Gives an entity a component, replacing any component of the same type.
+	 *
+	 * @param <T> Type of the component.
+	 * @param entity Id of the entity.
+	 * @param type Type the component is stored as.
+	 * @param component Component to add.
+	 */
+	public <T> void addComponent(int entity, Class<T> type, T component) {
+		checkAlive(entity);
+		getStore(type).put(entity, component);
+	}
+
+	/**
+	 * Takes a component away from an entity.
+	 *
+	 * @param entity Id of the entity.
+	 * @param type Type of the component.
+	 */
+	public void removeComponent(int entity, Class<?> type) {
+		checkAlive(entity);
+		ComponentStore<?> store = stores.get(type);
+		if (store != null) {
+			store.remove(entity);
+		}
+	}
+
+	/**
+	 * Gets a component of an entity.
+	 *
+	 * @param <T> Type of the component.
+	 * @param entity Id of the entity.
+	 * @param type Type of the component.
+	 * @return The component, or null if the entity has none.
+	 */
+	public <T> T getComponent(int entity, Class<T> type) {
+		return getStore(type).get(entity);
+	}
+
+	/**
+	 * Gives an entity a position, replacing the one it had.
+	 *
+	 * @param entity Id of the entity.
+	 * @param x X coordinate in the world.
+	 * @param y Y coordinate in the world.
+	 */
+	public void setPosition(int entity, double x, double y) {
+		checkAlive(entity);
+		if (positions.put(entity, x, y) && velocities.has(entity)) {
+			group(entity);
+		}
+	}
+
+	/**
+	 * Gives an entity a velocity, replacing the one it had.
+	 *
+	 * @param entity Id of the entity.
+	 * @param dX Change in X per second.
+	 * @param dY Change in Y per second.
+	 */
+	public void setVelocity(int entity, double dX, double dY) {
+		checkAlive(entity);
+		if (velocities.put(entity, dX, dY) && positions.has(entity)) {
+			group(entity);
+		}
+	}
+
+	/**
+	 * Takes the position of an entity away.
+	 *
+	 * @param entity Id of the entity.
+	 */
+	public void removePosition(int entity) {
+		checkAlive(entity);
+		removeVector(positions, entity);
+	}
+
+	/**
+	 * Takes the velocity of an entity away.
+	 *
+	 * @param entity Id of the entity.
+	 */
+	public void removeVelocity(int entity) {
+		checkAlive(entity);
+		removeVector(velocities, entity);
+	}
+
+	/**
+	 * Gets the positions of the entities. Systems loop over the store
+	 * directly.
+	 *
+	 * @return Store of the positions.
+	 */
+	public VectorStore getPositions() {
+		return positions;
+	}
+
+	/**
+	 * Gets the velocities of the entities, in world units per second.
+	 *
+	 * @return Store of the velocities.
+	 */
+	public VectorStore getVelocities() {
+		return velocities;
+	}
+
+	/**
+	 * Gets how many entities have both a position and a velocity. They take
+	 * the places from 0 to this count minus 1 in both stores, in the same
+	 * order.
+	 *
+	 * @return Number of moving entities.
+	 */
+	public int getMovingCount() {
+		return movingCount;
+	}
+
+	/**
+	 * Gets the store of a component type, creating it if needed. Systems loop
+	 * over stores directly.
+	 *
+	 * @param <T> Type of the components.
+	 * @param type Type of the components.
+	 * @return Store of the components.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> ComponentStore<T> getStore(Class<T> type) {
+		ComponentStore<T> store = (ComponentStore<T>) stores.get(type);
+		if (store == null) {
+			store = new ComponentStore<>();
+			stores.put(type, store);
+			storeList.add(store);
+		}
+		return store;
+	}
+
+	/**
+	 * Adds a system to run on every update, after the ones added before it.
+	 *
+	 * @param system System to add.
+	 */
+	public void addSystem(GameSystem system) {
+		systems.add(system);
+	}
+
+	/**
+	 * Removes a system.
+	 *
+	 * @param system System to remove.
+	 */
+	public void removeSystem(GameSystem system) {
+		systems.remove(system);
+	}
+
+	/**
+	 * Runs every system once, in the order they were added.
+	 *
+	 * @param dt Seconds since the last update.
+	 */
+	public void update(double dt) {
+		for (int i = 0; i < systems.size(); ++i) {
+			systems.get(i).update(this, dt);
+		}
+	}
+
+	/**
+	 * Moves an entity that just got both a position and a velocity to the
+	 * end of the moving entities in both stores.
+	 */
+	private void group(int entity) {
+		positions.swap(positions.indexOf(entity), movingCount);
+		velocities.swap(velocities.indexOf(entity), movingCount);
+		++movingCount;
+	}
+
+	/**
+	 * Takes a vector away from an entity. A moving entity is first swapped
+	 * with the last moving entity in both stores, so the moving entities
+	 * stay together at the front.
+	 */
+	private void removeVector(VectorStore store, int entity) {
+		int index = store.indexOf(entity);
+		if (index < 0) {
+			return;
+		}
+		if (index < movingCount) {
+			--movingCount;
+			positions.swap(index, movingCount);
+			velocities.swap(index, movingCount);
+		}
+		store.remove(entity);
+	}
+
+	private void checkAlive(int entity) {
+		if (!isAlive(entity)) {
+			throw new IllegalArgumentException("No entity with id " + entity);
+		}
+	}
+}
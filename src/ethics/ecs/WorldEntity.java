@@ -0,0 +1,41 @@
+package ethics.ecs;
+
+import ethics.Entity;
+import ethics.drawables.NullDrawing;
+
+/**
+ * Runs a World in the update phase of a Scene. Once the entity is added to a
+ * scene, every update of the scene updates the world with the same dt, at the
+ * point the entity was added, so linked entities are in place before
+ * collision events are found and before the scene is drawn. The entity has
+ * no size, draws nothing and never collides.
+ *
+ * @author Jonathan Cooper
+ */
+public class WorldEntity extends Entity {
+
+	private final World world;
+
+	/**
+	 * Creates an entity that updates a world.
+	 *
+	 * @param world World to update.
+	 */
+	public WorldEntity(World world) {
+		super(new NullDrawing(), 0, 0, 0, 0);
+		if (world == null) {
+			throw new IllegalArgumentException("World can't be null");
+		}
+		this.world = world;
+		setCollidable(false);
+	}
+
+	public World getWorld() {
+		return world;
+	}
+
+	@Override
+	protected void update(double dt) {
+		world.update(dt);
+	}
+}
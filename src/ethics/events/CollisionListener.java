@@ -0,0 +1,13 @@
+package ethics.events;
+
+import ethics.Entity;
+
+/**
+ * Told about the contacts a Scene finds on each update. The entities of a
+ * pair are given in the order they were added to the scene.
+ */
+public interface CollisionListener {
+    public void onCollisionEnter(Entity a, Entity b);
+    public void onCollisionStay(Entity a, Entity b);
+    public void onCollisionExit(Entity a, Entity b);
+}
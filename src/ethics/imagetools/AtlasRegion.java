@@ -0,0 +1,93 @@
+package ethics.imagetools;
+
+import java.awt.Graphics;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+
+/**
+ * A rectangle of a TextureAtlas page holding one of the images added to the
+ * atlas. The position is only known once the atlas has been packed.
+ *
+ * @author Jonathan Cooper
+ */
+public class AtlasRegion {
+
+	private final int width;
+	private final int height;
+	private BufferedImage page = null;
+	private int x;
+	private int y;
+	private BufferedImage view = null;
+
+	AtlasRegion(int width, int height) {
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Places the region on a page, called when the atlas is packed.
+	 */
+	void place(BufferedImage page, int x, int y) {
+		this.page = page;
+		this.x = x;
+		this.y = y;
+		view = page.getSubimage(x, y, width, height);
+	}
+
+	/**
+	 * Draws the region by copying its source rectangle out of the page, so
+	 * no image is created for it.
+	 *
+	 * @param g Graphics object to draw to.
+	 * @param dx X coordinate to draw the top left of the region at.
+	 * @param dy Y coordinate to draw the top left of the region at.
+	 */
+	public void draw(Graphics g, int dx, int dy) {
+		checkPacked();
+		g.drawImage(page, dx, dy, dx + width, dy + height, x, y, x + width, y + height, null);
+	}
+
+	/**
+	 * Gets the region as an image. The image shares its pixels with the page
+	 * and is created when the atlas is packed, so calling this does not copy
+	 * anything.
+	 *
+	 * @return Image of the region.
+	 */
+	public Image getImage() {
+		checkPacked();
+		return view;
+	}
+
+	/**
+	 * Gets the page the region is on.
+	 *
+	 * @return Atlas page.
+	 */
+	public BufferedImage getPage() {
+		checkPacked();
+		return page;
+	}
+
+	public int getX() {
+		return x;
+	}
+
+	public int getY() {
+		return y;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	private void checkPacked() {
+		if (page == null) {
+			throw new IllegalStateException("The atlas has not been packed yet");
+		}
+	}
+}
@@ -1,24 +1,100 @@
 package ethics.imagetools;
 
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
 import java.awt.Image;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
 import javax.imageio.ImageIO;
 
 /**
- * The purpose of this class is to just cache images loaded.
+ * The purpose of this class is to just cache images loaded. Images are
+ * converted to the format of the default screen when they are loaded, since
+ * images in other formats, like the ones ImageIO usually returns, can't be
+ * accelerated and are drawn with slow software loops.
  * 
  * @author Jonathan Cooper
  */
 public class ImageLoader {
     private static HashMap<String, Image> loadedImages = new HashMap<String, Image>();
+    private static GraphicsConfiguration configuration = null;
+    private static boolean configurationKnown = false;
     
     public static Image loadImage(String path) throws IOException {
         if (!loadedImages.containsKey(path)){
-            loadedImages.put(path, ImageIO.read(new File(path)));
+            BufferedImage image = ImageIO.read(new File(path));
+            if (image == null) {
+                throw new IOException("Unsupported image format: " + path);
+            }
+            loadedImages.put(path, toCompatibleImage(image));
             return loadImage(path);
         }
         return loadedImages.get(path);
     }
+    
+    /**
+     * Creates an empty image in the format of the default screen. Without a
+     * screen an INT_RGB or INT_ARGB image is created.
+     * @param width Width of the image.
+     * @param height Height of the image.
+     * @param transparency Transparency mode from java.awt.Transparency.
+     * @return New image.
+     */
+    public static BufferedImage createCompatibleImage(int width, int height, int transparency) {
+        GraphicsConfiguration gc = getConfiguration();
+        if (gc != null) {
+            return gc.createCompatibleImage(width, height, transparency);
+        }
+        int type = transparency == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+        return new BufferedImage(width, height, type);
+    }
+    
+    /**
+     * Converts an image to the format of the default screen, keeping its
+     * transparency mode. Images already in that format are returned as is.
+     * @param image Image to convert, must be fully loaded.
+     * @return Image in a format that can be accelerated.
+     */
+    public static BufferedImage toCompatibleImage(Image image) {
+        int transparency = Transparency.TRANSLUCENT;
+        if (image instanceof BufferedImage) {
+            BufferedImage buffered = (BufferedImage) image;
+            transparency = buffered.getTransparency();
+            if (isCompatible(buffered, transparency)) {
+                return buffered;
+            }
+        }
+        BufferedImage result = createCompatibleImage(image.getWidth(null), image.getHeight(null), transparency);
+        Graphics2D graphics = result.createGraphics();
+        graphics.drawImage(image, 0, 0, null);
+        graphics.dispose();
+        return result;
+    }
+    
+    private static boolean isCompatible(BufferedImage image, int transparency) {
+        GraphicsConfiguration gc = getConfiguration();
+        if (gc != null) {
+            return image.getColorModel().equals(gc.getColorModel(transparency));
+        }
+        return image.getType() == (transparency == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+    }
+    
+    /**
+     * Gets the configuration of the default screen, or null when running
+     * headless.
+     */
+    private static synchronized GraphicsConfiguration getConfiguration() {
+        if (!configurationKnown) {
+            configurationKnown = true;
+            if (!GraphicsEnvironment.isHeadless()) {
+                configuration = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                        .getDefaultScreenDevice().getDefaultConfiguration();
+            }
+        }
+        return configuration;
+    }
 }
@@ -0,0 +1,229 @@
+package ethics.imagetools;
+
+import java.awt.Graphics;
+import java.awt.Image;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+
+/**
+ * Packs many images of any size into a few large pages. Images are added
+ * first, which hands out an AtlasRegion for each, and placed on pages when
+ * pack is called. Images with the same pixels share a region. Page widths and
+ * heights are powers of two no larger than the maximum page size, and regions
+ * are placed on them in shelves from the tallest image down. Drawing a region
+ * copies a rectangle out of its page rather than clipping out a new image.
+ * This replaces TilesheetGenerator, which only lays tiles of one size out in
+ * a single row.
+ *
+ * @author Jonathan Cooper
+ */
+public class TextureAtlas {
+
+	/**
+	 * Empty pixels kept around every region so scaled drawing does not pick
+	 * up pixels of the neighbouring regions.
+	 */
+	private static final int PADDING = 1;
+
+	private static final Comparator<Entry> PACK_ORDER = (a, b) -> {
+		int height = Integer.compare(b.region.getHeight(), a.region.getHeight());
+		return height != 0 ? height : Integer.compare(b.region.getWidth(), a.region.getWidth());
+	};
+
+	private final int maxPageSize;
+	private final ArrayList<Entry> entries = new ArrayList<>();
+	private final HashMap<Integer, ArrayList<Entry>> entriesByHash = new HashMap<>();
+	private final ArrayList<BufferedImage> pages = new ArrayList<>();
+	private boolean packed = false;
+
+	/**
+	 * An image added to the atlas, kept until it is drawn onto a page.
+	 */
+	private static class Entry {
+
+		final AtlasRegion region;
+		final int[] pixels;
+
+		Entry(AtlasRegion region, int[] pixels) {
+			this.region = region;
+			this.pixels = pixels;
+		}
+	}
+
+	/**
+	 * Creates an atlas with pages of at most 1024x1024 pixels.
+	 */
+	public TextureAtlas() {
+		this(1024);
+	}
+
+	/**
+	 * Creates an atlas.
+	 *
+	 * @param maxPageSize Largest width and height of a page, must be a power
+	 * of two.
+	 */
+	public TextureAtlas(int maxPageSize) {
+		if (maxPageSize <= 0 || Integer.bitCount(maxPageSize) != 1) {
+			throw new IllegalArgumentException("Page size must be a power of two");
+		}
+		this.maxPageSize = maxPageSize;
+	}
+
+	/**
+	 * Adds an image to the atlas. If an image with the same pixels was added
+	 * before, its region is returned instead.
+	 *
+	 * @param image Image to add, must be fully loaded.
+	 * @return Region the image will be placed in.
+	 */
+	public AtlasRegion add(Image image) {
+		if (packed) {
+			throw new IllegalStateException("Images can't be added after the atlas is packed");
+		}
+		int width = image.getWidth(null);
+		int height = image.getHeight(null);
+		if (width <= 0 || height <= 0) {
+			throw new IllegalArgumentException("Bad image dimensions");
+		}
+		if (width + 2 * PADDING > maxPageSize || height + 2 * PADDING > maxPageSize) {
+			throw new IllegalArgumentException("Image is larger than a page");
+		}
+		int[] pixels = new int[width * height];
+		BufferedImage copy = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		Graphics graphics = copy.getGraphics();
+		graphics.drawImage(image, 0, 0, null);
+		graphics.dispose();
+		copy.getRGB(0, 0, width, height, pixels, 0, width);
+		int hash = 31 * (31 * width + height) + Arrays.hashCode(pixels);
+		ArrayList<Entry> sameHash = entriesByHash.get(hash);
+		if (sameHash == null) {
+			sameHash = new ArrayList<>(1);
+			entriesByHash.put(hash, sameHash);
+		}
+		for (Entry entry : sameHash) {
+			if (entry.region.getWidth() == width && Arrays.equals(entry.pixels, pixels)) {
+				return entry.region;
+			}
+		}
+		Entry entry = new Entry(new AtlasRegion(width, height), pixels);
+		sameHash.add(entry);
+		entries.add(entry);
+		return entry.region;
+	}
+
+	/**
+	 * Adds a tile of a tile sheet to the atlas.
+	 *
+	 * @param sheet Tile sheet to take the tile from.
+	 * @param tileIndex Index of the tile in the sheet.
+	 * @return Region the tile will be placed in.
+	 */
+	public AtlasRegion addFromTilesheet(Tilesheet sheet, int tileIndex) {
+		return add(sheet.getTile(tileIndex));
+	}
+
+	/**
+	 * Adds a tile of an image file to the atlas.
+	 *
+	 * @param source Path to the image file to load as a tile sheet.
+	 * @param tileWidth Width of the tiles in the file.
+	 * @param tileHeight Height of the tiles in the file.
+	 * @param tileIndex Index of the tile in the sheet.
+	 * @return Region the tile will be placed in.
+	 * @throws IOException If the file is unable to be loaded.
+	 */
+	public AtlasRegion addFromTilesheet(String source, int tileWidth, int tileHeight, int tileIndex) throws IOException {
+		return addFromTilesheet(new Tilesheet(source, tileWidth, tileHeight), tileIndex);
+	}
+
+	/**
+	 * Places every added image on a page. After this the regions can be drawn
+	 * and no more images can be added.
+	 */
+	public void pack() {
+		if (packed) {
+			return;
+		}
+		packed = true;
+		Entry[] sorted = entries.toArray(new Entry[entries.size()]);
+		Arrays.sort(sorted, PACK_ORDER);
+		int[] placedX = new int[sorted.length];
+		int[] placedY = new int[sorted.length];
+		int[] placedPage = new int[sorted.length];
+		ArrayList<int[]> pageSizes = new ArrayList<>();
+		int page = -1, shelfX = 0, shelfY = 0, shelfHeight = 0, usedWidth = 0;
+		for (int i = 0; i < sorted.length; ++i) {
+			int width = sorted[i].region.getWidth() + 2 * PADDING;
+			int height = sorted[i].region.getHeight() + 2 * PADDING;
+			if (page >= 0 && shelfX + width > maxPageSize) {
+				shelfX = 0;
+				shelfY += shelfHeight;
+				shelfHeight = 0;
+			}
+			if (page < 0 || shelfY + height > maxPageSize) {
+				if (page >= 0) {
+					pageSizes.get(page)[0] = usedWidth;
+				}
+				pageSizes.add(new int[2]);
+				++page;
+				shelfX = 0;
+				shelfY = 0;
+				shelfHeight = 0;
+				usedWidth = 0;
+			}
+			placedX[i] = shelfX + PADDING;
+			placedY[i] = shelfY + PADDING;
+			placedPage[i] = page;
+			shelfX += width;
+			shelfHeight = Math.max(shelfHeight, height);
+			usedWidth = Math.max(usedWidth, shelfX);
+			pageSizes.get(page)[1] = shelfY + shelfHeight;
+		}
+		if (page >= 0) {
+			pageSizes.get(page)[0] = usedWidth;
+		}
+		for (int[] pageSize : pageSizes) {
+			pages.add(ImageLoader.createCompatibleImage(powerOfTwo(pageSize[0]), powerOfTwo(pageSize[1]), Transparency.TRANSLUCENT));
+		}
+		for (int i = 0; i < sorted.length; ++i) {
+			AtlasRegion region = sorted[i].region;
+			BufferedImage image = pages.get(placedPage[i]);
+			image.setRGB(placedX[i], placedY[i], region.getWidth(), region.getHeight(), sorted[i].pixels, 0, region.getWidth());
+			region.place(image, placedX[i], placedY[i]);
+		}
+		entries.clear();
+		entriesByHash.clear();
+	}
+
+	/**
+	 * Gets the pages of the packed atlas.
+	 *
+	 * @return Pages, empty before the atlas is packed.
+	 */
+	public ArrayList<BufferedImage> getPages() {
+		return pages;
+	}
+
+	/**
+	 * Gets how many distinct images were added and not yet packed.
+	 *
+	 * @return Number of regions waiting to be packed.
+	 */
+	public int getPendingCount() {
+		return entries.size();
+	}
+
+	private static int powerOfTwo(int size) {
+		int result = 1;
+		while (result < size) {
+			result <<= 1;
+		}
+		return result;
+	}
+}
@@ -1,12 +1,18 @@
 package ethics.imagetools;
 
+import java.awt.Graphics2D;
 import java.awt.Image;
+import java.awt.Transparency;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.util.HashMap;
 
 /**
  * The purpose of this class is to split up an image into smaller images called
- * tiles.
+ * tiles. Tiles are clipped out once, in the format of the default screen, and
+ * the same image is returned for every later request of the tile. Tiles are
+ * clipped under a lock, so a sheet can be drawn from several render threads
+ * at once.
  *
  * @author Jonathan Cooper
  */
@@ -15,6 +21,7 @@ public class Tilesheet {
 	private Image source;
 	private int tileWidth;
 	private int tileHeight;
+	private HashMap<Integer, Image> tiles = new HashMap<>();
 
 	public Tilesheet(Image source, int tileWidth, int tileHeight) {
 		this.source = source;
@@ -36,8 +43,14 @@ public class Tilesheet {
 	 * @return The clipping
 	 */
 	public Image clipSource(int x, int y, int width, int height) {
-		BufferedImage clipping = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-		clipping.getGraphics().drawImage(source, -x, -y, null);
+		int transparency = Transparency.TRANSLUCENT;
+		if (source instanceof BufferedImage) {
+			transparency = ((BufferedImage) source).getTransparency();
+		}
+		BufferedImage clipping = ImageLoader.createCompatibleImage(width, height, transparency);
+		Graphics2D graphics = clipping.createGraphics();
+		graphics.drawImage(source, -x, -y, null);
+		graphics.dispose();
 		return clipping;
 	}
 
@@ -49,9 +62,15 @@ public class Tilesheet {
 	 * @return Clipping generated from the tile
 	 */
 	public Image getTile(int x, int y) {
-		int xPixel = x * tileWidth;
-		int yPixel = y * tileHeight;
-		return clipSource(xPixel, yPixel, tileWidth, tileHeight);
+		int key = y * (source.getWidth(null) / tileWidth + 1) + x;
+		synchronized (tiles) {
+			Image tile = tiles.get(key);
+			if (tile == null) {
+				tile = clipSource(x * tileWidth, y * tileHeight, tileWidth, tileHeight);
+				tiles.put(key, tile);
+			}
+			return tile;
+		}
 	}
 
 	/**
@@ -66,4 +85,21 @@ public class Tilesheet {
 		int x = index % tilesWide;
 		return getTile(x, y);
 	}
+
+	public int getTileWidth() {
+		return tileWidth;
+	}
+
+	public int getTileHeight() {
+		return tileHeight;
+	}
+
+	/**
+	 * Gets how many tiles the source image holds.
+	 *
+	 * @return Number of whole tiles in the source.
+	 */
+	public int getTileCount() {
+		return (source.getWidth(null) / tileWidth) * (source.getHeight(null) / tileHeight);
+	}
 }
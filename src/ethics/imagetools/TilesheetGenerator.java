@@ -10,7 +10,10 @@ import java.util.ArrayList;
  * The purpose of this class is to generate a new tile sheet from smaller
  * sprites/tiles.
  * @author Jonathan Cooper
+ * @deprecated Lays every tile out in a single row and only supports one tile
+ * size. Use TextureAtlas instead.
  */
+@Deprecated
 public class TilesheetGenerator {
 	private int tileWidth;
 	private int tileHeight;